@@ -0,0 +1,42 @@
+package com.greycellofp.droiduiscrollview.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Children scattered over square content, the shared fixture of the benchmarks.
+ * Seeded, so that every run and every release lays out the same content.
+ */
+final class ContentLayout {
+    static final int VIEWPORT_WIDTH = 1080;
+    static final int VIEWPORT_HEIGHT = 1920;
+
+    private static final int MIN_CHILD_SIZE = 48;
+    private static final int MAX_CHILD_SIZE = 480;
+
+    final int contentSize;
+    final int childCount;
+    final int[] left;
+    final int[] top;
+    final int[] right;
+    final int[] bottom;
+
+    ContentLayout(int contentSize, int childCount) {
+        this.contentSize = contentSize;
+        this.childCount = childCount;
+        left = new int[childCount];
+        top = new int[childCount];
+        right = new int[childCount];
+        bottom = new int[childCount];
+
+        final Random random = new Random(childCount * 31L + contentSize);
+        final int maxChildSize = Math.min(MAX_CHILD_SIZE, contentSize);
+        for (int i = 0; i < childCount; i++) {
+            final int width = MIN_CHILD_SIZE + random.nextInt(maxChildSize - MIN_CHILD_SIZE + 1);
+            final int height = MIN_CHILD_SIZE + random.nextInt(maxChildSize - MIN_CHILD_SIZE + 1);
+            left[i] = random.nextInt(contentSize - width + 1);
+            top[i] = random.nextInt(contentSize - height + 1);
+            right[i] = left[i] + width;
+            bottom[i] = top[i] + height;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.greycellofp.droiduiscrollview.benchmarks;
+
+import com.greycellofp.droiduiscrollview.ScrollEngine;
+import com.greycellofp.droiduiscrollview.SplineScrollPhysics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole fling integrated frame by frame through the ScrollEngine, including
+ * the spring-back when it runs into the end of the content.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlingBenchmark {
+    private static final int FRAME_MILLIS = 16;
+    private static final float DENSITY = 3f;
+    private static final float SCROLL_FRICTION = 0.015f;
+
+    @Param({"2000", "20000", "200000"})
+    public int contentSize;
+
+    @Param({"2000", "8000", "24000"})
+    public int velocity;
+
+    private ScrollEngine mEngine;
+
+    @Setup
+    public void setUp() {
+        final SplineScrollPhysics physics = new SplineScrollPhysics(DENSITY);
+        physics.setFriction(SCROLL_FRICTION);
+        mEngine = new ScrollEngine(physics);
+        mEngine.setOverScrollDistances(0, 6 * (int) DENSITY);
+        mEngine.setViewport(ContentLayout.VIEWPORT_WIDTH, ContentLayout.VIEWPORT_HEIGHT,
+                contentSize, contentSize);
+    }
+
+    /**
+     * @return The number of frames the fling took.
+     */
+    @Benchmark
+    public int fling() {
+        final ScrollEngine engine = mEngine;
+        engine.abortAnimation();
+        engine.setScrollPosition(0, 0);
+
+        long time = 0;
+        int frames = 0;
+        engine.fling(velocity, velocity, time);
+        while (engine.computeScrollOffset(time += FRAME_MILLIS)) {
+            frames++;
+        }
+        return frames + engine.getScrollX() + engine.getScrollY();
+    }
+}
@@ -0,0 +1,80 @@
+package com.greycellofp.droiduiscrollview.benchmarks;
+
+import com.greycellofp.droiduiscrollview.ScrollMath;
+import com.greycellofp.droiduiscrollview.SpatialIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The focus search behind pageScroll/fullScroll: rebuilding the index of
+ * focusables after a layout, and picking the candidate for one page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FocusSearchBenchmark {
+    @Param({"2000", "20000", "200000"})
+    public int contentSize;
+
+    @Param({"10", "100", "1000"})
+    public int childCount;
+
+    private ContentLayout mLayout;
+    private final SpatialIndex mIndex = new SpatialIndex();
+    private int mPage;
+
+    @Setup
+    public void setUp() {
+        mLayout = new ContentLayout(contentSize, childCount);
+        buildIndex();
+    }
+
+    @Benchmark
+    public int buildIndex() {
+        final ContentLayout layout = mLayout;
+        mIndex.clear();
+        for (int i = 0; i < layout.childCount; i++) {
+            mIndex.add(layout.left[i], layout.top[i], layout.right[i], layout.bottom[i]);
+        }
+        mIndex.build();
+        return mIndex.size();
+    }
+
+    @Benchmark
+    public int pageScrollVertically() {
+        final int top = nextPage(ContentLayout.VIEWPORT_HEIGHT);
+        return ScrollMath.findFocusCandidateVertically(mIndex, null, false,
+                top, top + ContentLayout.VIEWPORT_HEIGHT);
+    }
+
+    @Benchmark
+    public int pageScrollHorizontally() {
+        final int left = nextPage(ContentLayout.VIEWPORT_WIDTH);
+        return ScrollMath.findFocusCandidateHorizontally(mIndex, null, true,
+                left, left + ContentLayout.VIEWPORT_WIDTH);
+    }
+
+    /**
+     * Walks the content one page at a time, wrapping around at its end.
+     */
+    private int nextPage(int pageSize) {
+        final int pages = Math.max(1, contentSize / pageSize);
+        mPage = (mPage + 1) % pages;
+        return mPage * pageSize;
+    }
+}
@@ -0,0 +1,74 @@
+package com.greycellofp.droiduiscrollview.benchmarks;
+
+import com.greycellofp.droiduiscrollview.ScrollMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The clamping and bring-into-view math run for scrollTo and for every focus
+ * change, once per child of the content.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScrollMathBenchmark {
+    private static final int FADING_EDGE = 32;
+
+    @Param({"2000", "20000", "200000"})
+    public int contentSize;
+
+    @Param({"10", "100", "1000"})
+    public int childCount;
+
+    private ContentLayout mLayout;
+    private int mScrollX;
+    private int mScrollY;
+
+    @Setup
+    public void setUp() {
+        mLayout = new ContentLayout(contentSize, childCount);
+        mScrollX = contentSize / 3;
+        mScrollY = contentSize / 3;
+    }
+
+    @Benchmark
+    public int clamp() {
+        final ContentLayout layout = mLayout;
+        int sum = 0;
+        for (int i = 0; i < layout.childCount; i++) {
+            sum += ScrollMath.clamp(layout.left[i], ContentLayout.VIEWPORT_WIDTH, layout.contentSize);
+            sum += ScrollMath.clamp(layout.top[i], ContentLayout.VIEWPORT_HEIGHT, layout.contentSize);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int computeScrollDeltaToGetRectOnScreen() {
+        final ContentLayout layout = mLayout;
+        int sum = 0;
+        for (int i = 0; i < layout.childCount; i++) {
+            sum += ScrollMath.computeScrollDeltaToGetRectOnScreen(layout.left[i], layout.right[i],
+                    mScrollX, ContentLayout.VIEWPORT_WIDTH, FADING_EDGE,
+                    layout.contentSize, layout.contentSize);
+            sum += ScrollMath.computeScrollDeltaToGetRectOnScreen(layout.top[i], layout.bottom[i],
+                    mScrollY, ContentLayout.VIEWPORT_HEIGHT, FADING_EDGE,
+                    layout.contentSize, layout.contentSize);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,63 @@
+package com.greycellofp.droiduiscrollview.benchmarks;
+
+import com.greycellofp.droiduiscrollview.VelocityEstimator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A drag's worth of samples fed to the VelocityEstimator followed by the
+ * estimate taken when the pointer goes up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VelocityEstimatorBenchmark {
+    private static final int SAMPLE_MILLIS = 8;
+    private static final int SAMPLE_COUNT = 60;
+
+    @Param({"0", "1"})
+    public int strategy;
+
+    private VelocityEstimator mEstimator;
+    private final float[] mXs = new float[SAMPLE_COUNT];
+    private final float[] mYs = new float[SAMPLE_COUNT];
+
+    @Setup
+    public void setUp() {
+        mEstimator = new VelocityEstimator(strategy);
+        // A slowing drag with a pixel of touch noise.
+        final Random random = new Random(SAMPLE_COUNT);
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            final float t = i * SAMPLE_MILLIS / 1000f;
+            mXs[i] = 3000 * t - 2000 * t * t + random.nextFloat();
+            mYs[i] = -1500 * t + random.nextFloat();
+        }
+    }
+
+    @Benchmark
+    public float drag() {
+        final VelocityEstimator estimator = mEstimator;
+        estimator.clear();
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            estimator.addSample(0, i * SAMPLE_MILLIS, mXs[i], mYs[i]);
+        }
+        estimator.computeVelocity(0, Float.MAX_VALUE);
+        return estimator.getXVelocity() + estimator.getYVelocity();
+    }
+}
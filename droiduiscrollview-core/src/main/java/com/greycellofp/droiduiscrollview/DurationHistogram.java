@@ -0,0 +1,101 @@
+package com.greycellofp.droiduiscrollview;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size histogram of durations. Bucket i counts the durations below
+ * {@link #getBucketUpperBoundNanos(int)} and at or above the previous bucket's
+ * bound, the last bucket counts everything longer. Recording never allocates.
+ */
+public class DurationHistogram {
+    /**
+     * Upper bound of the first bucket, the following ones double up to about two seconds.
+     */
+    private static final long FIRST_BUCKET_NANOS = 125000L;
+
+    public static final int BUCKET_COUNT = 16;
+
+    private final long[] mBuckets = new long[BUCKET_COUNT];
+    private long mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+
+    public void record(long durationNanos) {
+        int bucket = 0;
+        long bound = FIRST_BUCKET_NANOS;
+        while (bucket < BUCKET_COUNT - 1 && durationNanos >= bound) {
+            bucket++;
+            bound <<= 1;
+        }
+        mBuckets[bucket]++;
+        mCount++;
+        mTotalNanos += durationNanos;
+        if (durationNanos > mMaxNanos) {
+            mMaxNanos = durationNanos;
+        }
+    }
+
+    /**
+     * @return The exclusive upper bound of the given bucket, Long.MAX_VALUE for the last one.
+     */
+    public static long getBucketUpperBoundNanos(int bucket) {
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : FIRST_BUCKET_NANOS << bucket;
+    }
+
+    public long getBucketCount(int bucket) {
+        return mBuckets[bucket];
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getTotalNanos() {
+        return mTotalNanos;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    public long getMeanNanos() {
+        return mCount == 0 ? 0 : mTotalNanos / mCount;
+    }
+
+    /**
+     * @param percentile Between 0 and 100.
+     * @return The upper bound of the bucket holding the given percentile, capped to
+     *   the longest duration recorded.
+     */
+    public long getPercentileNanos(float percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(mCount * (percentile / 100f));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(getBucketUpperBoundNanos(i), mMaxNanos);
+            }
+        }
+        return mMaxNanos;
+    }
+
+    /**
+     * Overwrite the given histogram with the contents of this one.
+     */
+    public void copyTo(DurationHistogram other) {
+        System.arraycopy(mBuckets, 0, other.mBuckets, 0, BUCKET_COUNT);
+        other.mCount = mCount;
+        other.mTotalNanos = mTotalNanos;
+        other.mMaxNanos = mMaxNanos;
+    }
+
+    public void reset() {
+        Arrays.fill(mBuckets, 0);
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.greycellofp.droiduiscrollview;
+
+/**
+ * Least squares fit of x = a + b t + c t^2 to a handful of samples, taken with t
+ * = 0 at the sample of interest so that b is the velocity and 2c the
+ * acceleration there. Reused from fit to fit, nothing is allocated.
+ *
+ * <p>Times are scaled to [-1, 1] before fitting, so that telling degenerate
+ * samples apart doesn't depend on how closely they are spaced.</p>
+ */
+final class QuadraticFit {
+    /**
+     * Below this, relative to the scaled times, the normal equations are singular.
+     */
+    private static final double EPSILON = 1e-9;
+
+    private float mVelocity;
+    private float mAcceleration;
+
+    /**
+     * Fits the first count samples. Falls back to a straight line, with no
+     * acceleration, when there are fewer than three samples or they are
+     * degenerate.
+     *
+     * @return false if there's nothing to fit, the velocity is zero then.
+     */
+    boolean fit(float[] t, float[] x, int count) {
+        mVelocity = 0;
+        mAcceleration = 0;
+        double scale = 0;
+        for (int i = 0; i < count; i++) {
+            scale = Math.max(scale, Math.abs(t[i]));
+        }
+        if (scale == 0) {
+            return false;
+        }
+
+        double s0 = count, s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        double sx = 0, stx = 0, st2x = 0;
+        for (int i = 0; i < count; i++) {
+            final double ti = t[i] / scale;
+            final double ti2 = ti * ti;
+            s1 += ti;
+            s2 += ti2;
+            s3 += ti2 * ti;
+            s4 += ti2 * ti2;
+            sx += x[i];
+            stx += ti * x[i];
+            st2x += ti2 * x[i];
+        }
+
+        if (count >= 3) {
+            // Cramer's rule on the normal equations, solving for b and c only.
+            final double det = s0 * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s3 * s2) + s2 * (s1 * s3 - s2 * s2);
+            if (Math.abs(det) > EPSILON) {
+                final double detB = s0 * (stx * s4 - s3 * st2x) - sx * (s1 * s4 - s3 * s2)
+                        + s2 * (s1 * st2x - stx * s2);
+                final double detC = s0 * (s2 * st2x - stx * s3) - s1 * (s1 * st2x - stx * s2)
+                        + sx * (s1 * s3 - s2 * s2);
+                mVelocity = (float) (detB / det / scale);
+                mAcceleration = (float) (2 * detC / det / (scale * scale));
+                return true;
+            }
+        }
+        final double det = s0 * s2 - s1 * s1;
+        if (count < 2 || Math.abs(det) < EPSILON) {
+            return false;
+        }
+        mVelocity = (float) ((s0 * stx - s1 * sx) / det / scale);
+        return true;
+    }
+
+    float getVelocity() {
+        return mVelocity;
+    }
+
+    float getAcceleration() {
+        return mAcceleration;
+    }
+}
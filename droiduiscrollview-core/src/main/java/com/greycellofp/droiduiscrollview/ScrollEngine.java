@@ -0,0 +1,501 @@
+package com.greycellofp.droiduiscrollview;
+
+/**
+ * The drag, fling, spring-back and overscroll state machine behind
+ * DroidUIScrollView, free of any Android dependency.
+ *
+ * <p>The engine is fed touch samples and frame ticks and owns the resulting scroll
+ * position. Whoever hosts it applies that position through a {@link Callback} and
+ * reports the size of the viewport and content with
+ * {@link #setViewport(int, int, int, int)}. Positions are in pixels, velocities in
+ * pixels per second and times in milliseconds on the host's clock.</p>
+ */
+public class ScrollEngine {
+    /**
+     * Nothing is moving.
+     */
+    public static final int STATE_IDLE = 0;
+
+    /**
+     * The content follows a pointer.
+     */
+    public static final int STATE_DRAGGING = 1;
+
+    /**
+     * The physics are moving the content after a gesture: a fling or spring-back.
+     */
+    public static final int STATE_SETTLING = 2;
+
+    /**
+     * The content is moving to a position requested by the app, see
+     * {@link #smoothScrollBy(int, int, long)} and {@link #setHostAnimating(boolean)}.
+     */
+    public static final int STATE_ANIMATING = 3;
+
+    /*
+     * Same values as View#OVER_SCROLL_*.
+     */
+    public static final int OVER_SCROLL_ALWAYS = 0;
+    public static final int OVER_SCROLL_IF_CONTENT_SCROLLS = 1;
+    public static final int OVER_SCROLL_NEVER = 2;
+
+    public static final int EDGE_LEFT = 1;
+    public static final int EDGE_TOP = 2;
+    public static final int EDGE_RIGHT = 4;
+    public static final int EDGE_BOTTOM = 8;
+
+    private static final int DEFAULT_SMOOTH_SCROLL_DURATION = 250;
+
+    /**
+     * Receives the output of a {@link ScrollEngine}.
+     */
+    public interface Callback {
+        /**
+         * Move the content to the given scroll position.
+         */
+        void scrollTo(int scrollX, int scrollY);
+
+        /**
+         * A fling ran into the given edge while overscroll is allowed.
+         *
+         * @param edge     One of the EDGE_* constants.
+         * @param velocity The velocity at impact, in pixels per second.
+         */
+        void onEdgeAbsorb(int edge, int velocity);
+    }
+
+    private ScrollPhysics mPhysics;
+    private Callback mCallback;
+
+    private int mState = STATE_IDLE;
+    private boolean mHostAnimating;
+
+    private int mScrollX;
+    private int mScrollY;
+
+    private int mViewportWidth;
+    private int mViewportHeight;
+    private int mScrollRangeHorizontal;
+    private int mScrollRangeVertical;
+
+    private int mOverScrollMode = OVER_SCROLL_IF_CONTENT_SCROLLS;
+    private int mOverscrollDistance;
+    private int mOverflingDistance;
+
+    private int mTouchSlop;
+    private int mMinimumVelocity;
+    private int mMaximumVelocity = Integer.MAX_VALUE;
+
+    /*
+     * Kept as floats so that sub-pixel movement isn't lost between samples, only the
+     * whole pixels actually scrolled are consumed.
+     */
+    private float mLastMotionX;
+    private float mLastMotionY;
+
+    public ScrollEngine(ScrollPhysics physics) {
+        setPhysics(physics);
+    }
+
+    public void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    public ScrollPhysics getPhysics() {
+        return mPhysics;
+    }
+
+    /**
+     * Replace the physics, stopping any running animation where it is.
+     */
+    public void setPhysics(ScrollPhysics physics) {
+        if (physics == null) {
+            throw new IllegalArgumentException("ScrollPhysics may not be null");
+        }
+        if (mPhysics != null) {
+            mPhysics.abortAnimation();
+        }
+        mPhysics = physics;
+        if (mState == STATE_SETTLING || mState == STATE_ANIMATING) {
+            mState = STATE_IDLE;
+        }
+    }
+
+    /**
+     * @param touchSlop Distance a pointer may wander before a drag starts.
+     */
+    public void setTouchSlop(int touchSlop) {
+        mTouchSlop = touchSlop;
+    }
+
+    /**
+     * @param minimumVelocity Release velocity below which a drag springs back instead of flinging.
+     * @param maximumVelocity Release velocities are clamped to this.
+     */
+    public void setFlingVelocityRange(int minimumVelocity, int maximumVelocity) {
+        mMinimumVelocity = minimumVelocity;
+        mMaximumVelocity = maximumVelocity;
+    }
+
+    /**
+     * @param overscrollDistance How far a drag may pull past the edges.
+     * @param overflingDistance  How far a fling may travel past the edges.
+     */
+    public void setOverScrollDistances(int overscrollDistance, int overflingDistance) {
+        mOverscrollDistance = overscrollDistance;
+        mOverflingDistance = overflingDistance;
+    }
+
+    /**
+     * @param overScrollMode One of the OVER_SCROLL_* constants.
+     */
+    public void setOverScrollMode(int overScrollMode) {
+        mOverScrollMode = overScrollMode;
+    }
+
+    /**
+     * Set the size of the padded viewport and of the content scrolled inside it.
+     */
+    public void setViewport(int viewportWidth, int viewportHeight, int contentWidth, int contentHeight) {
+        mViewportWidth = viewportWidth;
+        mViewportHeight = viewportHeight;
+        mScrollRangeHorizontal = Math.max(0, contentWidth - viewportWidth);
+        mScrollRangeVertical = Math.max(0, contentHeight - viewportHeight);
+    }
+
+    /**
+     * Tell the engine the content was scrolled by someone else.
+     */
+    public void setScrollPosition(int scrollX, int scrollY) {
+        mScrollX = scrollX;
+        mScrollY = scrollY;
+    }
+
+    public int getScrollX() {
+        return mScrollX;
+    }
+
+    public int getScrollY() {
+        return mScrollY;
+    }
+
+    public int getScrollRangeHorizontal() {
+        return mScrollRangeHorizontal;
+    }
+
+    public int getScrollRangeVertical() {
+        return mScrollRangeVertical;
+    }
+
+    /**
+     * @return One of the STATE_* constants.
+     */
+    public int getState() {
+        return mState;
+    }
+
+    public boolean isDragging() {
+        return mState == STATE_DRAGGING;
+    }
+
+    /**
+     * A pointer went down. If an animation is running the content is caught and a
+     * drag starts right away, the animation itself is left running until
+     * {@link #abortAnimation()} is called.
+     *
+     * @return Whether a drag started.
+     */
+    public boolean onTouchDown(float x, float y) {
+        mLastMotionX = x;
+        mLastMotionY = y;
+        mState = mPhysics.isFinished() && !mHostAnimating ? STATE_IDLE : STATE_DRAGGING;
+        return mState == STATE_DRAGGING;
+    }
+
+    /**
+     * The pointer being tracked changed, continue the drag from the given position.
+     */
+    public void onPointerChanged(float x, float y) {
+        mLastMotionX = x;
+        mLastMotionY = y;
+    }
+
+    /**
+     * Starts a drag, without scrolling, once the pointer moved past the touch slop.
+     * This is the check done while deciding whether to intercept a gesture.
+     *
+     * @return Whether a drag is in progress.
+     */
+    public boolean checkTouchSlop(float x, float y) {
+        if (mState != STATE_DRAGGING
+                && (Math.abs(y - mLastMotionY) > mTouchSlop || Math.abs(x - mLastMotionX) > mTouchSlop)) {
+            mState = STATE_DRAGGING;
+            mLastMotionX = x;
+            mLastMotionY = y;
+        }
+        return mState == STATE_DRAGGING;
+    }
+
+    /**
+     * The tracked pointer moved. Starts a drag once past the touch slop and scrolls
+     * to follow the pointer while dragging.
+     *
+     * @return true if the drag ran into a scroll barrier, release velocity gathered
+     *   so far should be discarded.
+     */
+    public boolean onTouchMove(float x, float y) {
+        float deltaX = mLastMotionX - x;
+        float deltaY = mLastMotionY - y;
+        if (mState != STATE_DRAGGING) {
+            if (Math.abs(deltaY) > mTouchSlop) {
+                mState = STATE_DRAGGING;
+                deltaY += deltaY > 0 ? -mTouchSlop : mTouchSlop;
+            }
+            if (mState != STATE_DRAGGING && Math.abs(deltaX) > mTouchSlop) {
+                mState = STATE_DRAGGING;
+                deltaX += deltaX > 0 ? -mTouchSlop : mTouchSlop;
+            }
+            if (mState != STATE_DRAGGING) {
+                return false;
+            }
+        }
+
+        // Scroll to follow the pointer, whole pixels only.
+        final int scrollDeltaX = (int) deltaX;
+        final int scrollDeltaY = (int) deltaY;
+        mLastMotionX = x + (deltaX - scrollDeltaX);
+        mLastMotionY = y + (deltaY - scrollDeltaY);
+        return overScrollBy(scrollDeltaX, scrollDeltaY, mOverscrollDistance, mOverscrollDistance);
+    }
+
+    /**
+     * The pointer went up. Flings with the given pointer velocity, or springs back
+     * into range when it is too slow to fling.
+     */
+    public void onTouchUp(float velocityX, float velocityY, long timeMillis) {
+        if (mState != STATE_DRAGGING) {
+            return;
+        }
+        final int initialVelocityX = clampVelocity(velocityX);
+        final int initialVelocityY = clampVelocity(velocityY);
+        mState = STATE_IDLE;
+        if (Math.abs(initialVelocityY) > mMinimumVelocity || Math.abs(initialVelocityX) > mMinimumVelocity) {
+            flingIfPossible(-initialVelocityX, -initialVelocityY, timeMillis);
+        } else {
+            springBack(timeMillis);
+        }
+    }
+
+    /**
+     * The gesture was cancelled or taken over, spring back into range.
+     */
+    public void onTouchCancel(long timeMillis) {
+        mState = STATE_IDLE;
+        springBack(timeMillis);
+    }
+
+    /**
+     * Drop the drag in progress, if any, without springing back. A running
+     * animation carries on.
+     */
+    public void cancelDrag() {
+        if (mState == STATE_DRAGGING) {
+            mState = STATE_IDLE;
+            updateSettlingState(STATE_SETTLING);
+        }
+    }
+
+    /**
+     * Fling the content.
+     *
+     * @param velocityX The initial scroll velocity along X, positive values scroll
+     *                  towards the right of the content.
+     * @param velocityY The initial scroll velocity along Y, positive values scroll
+     *                  towards the bottom of the content.
+     */
+    public void fling(int velocityX, int velocityY, long timeMillis) {
+        mPhysics.fling(mScrollX, mScrollY, velocityX, velocityY, 0, mScrollRangeHorizontal,
+                0, mScrollRangeVertical, mViewportWidth / 2, mViewportHeight / 2, timeMillis);
+        updateSettlingState(STATE_SETTLING);
+    }
+
+    /**
+     * Animate the scroll position by the given amount, clamped to the scroll range.
+     */
+    public void smoothScrollBy(int dx, int dy, long timeMillis) {
+        dy = Math.max(0, Math.min(mScrollY + dy, mScrollRangeVertical)) - mScrollY;
+        dx = Math.max(0, Math.min(mScrollX + dx, mScrollRangeHorizontal)) - mScrollX;
+        mPhysics.startScroll(mScrollX, mScrollY, dx, dy, DEFAULT_SMOOTH_SCROLL_DURATION, timeMillis);
+        updateSettlingState(STATE_ANIMATING);
+    }
+
+    /**
+     * Spring back into range if the content is overscrolled.
+     *
+     * @return Whether an animation was started.
+     */
+    public boolean springBack(long timeMillis) {
+        final boolean started = mPhysics.springBack(mScrollX, mScrollY, 0, mScrollRangeHorizontal,
+                0, mScrollRangeVertical, timeMillis);
+        updateSettlingState(STATE_SETTLING);
+        return started;
+    }
+
+    /**
+     * Stop any running animation where it is.
+     */
+    public void abortAnimation() {
+        mPhysics.abortAnimation();
+        updateSettlingState(mState);
+    }
+
+    /**
+     * Report an animation the host runs itself, outside of the physics. The state
+     * reads {@link #STATE_ANIMATING} while it runs, and a touch down catches it
+     * like it would a fling.
+     */
+    public void setHostAnimating(boolean animating) {
+        mHostAnimating = animating;
+        if (animating) {
+            mPhysics.abortAnimation();
+            if (mState != STATE_DRAGGING) {
+                mState = STATE_ANIMATING;
+            }
+        } else {
+            updateSettlingState(mState);
+        }
+    }
+
+    /**
+     * @return Whether an animation is running.
+     */
+    public boolean isAnimating() {
+        return !mPhysics.isFinished();
+    }
+
+    /**
+     * Advance the running animation to the given frame time.
+     *
+     * @return true if the animation is still running and another frame is needed.
+     */
+    public boolean computeScrollOffset(long timeMillis) {
+        if (!mPhysics.computeScrollOffset(timeMillis)) {
+            updateSettlingState(mState);
+            return false;
+        }
+
+        final int oldX = mScrollX;
+        final int oldY = mScrollY;
+        final int x = mPhysics.getCurrX();
+        final int y = mPhysics.getCurrY();
+
+        if (oldX != x || oldY != y) {
+            final int verticalRange = mScrollRangeVertical;
+            final int horizontalRange = mScrollRangeHorizontal;
+
+            if (overScrollBy(x - oldX, y - oldY, mOverflingDistance, mOverflingDistance)) {
+                springBack(timeMillis);
+            }
+
+            if (canOverScroll(verticalRange > 0 || horizontalRange > 0) && mCallback != null) {
+                final int velocity = (int) mPhysics.getCurrVelocity();
+                if (y < 0 && oldY >= 0) {
+                    mCallback.onEdgeAbsorb(EDGE_TOP, velocity);
+                } else if (y > verticalRange && oldY <= verticalRange) {
+                    mCallback.onEdgeAbsorb(EDGE_BOTTOM, velocity);
+                }
+                if (x < 0 && oldX >= 0) {
+                    mCallback.onEdgeAbsorb(EDGE_LEFT, velocity);
+                } else if (x > horizontalRange && oldX <= horizontalRange) {
+                    mCallback.onEdgeAbsorb(EDGE_RIGHT, velocity);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void flingIfPossible(int velocityX, int velocityY, long timeMillis) {
+        final boolean canFlingVertical = (mScrollY > 0 || velocityY > 0) &&
+                (mScrollY < mScrollRangeVertical || velocityY < 0);
+        final boolean canFlingHorizontal = (mScrollX > 0 || velocityX > 0) &&
+                (mScrollX < mScrollRangeHorizontal || velocityX < 0);
+        if (canFlingVertical || canFlingHorizontal) {
+            fling(velocityX, velocityY, timeMillis);
+        } else {
+            springBack(timeMillis);
+        }
+    }
+
+    /**
+     * Scroll by the given deltas, allowing up to the given overscroll on the axes
+     * where overscroll is enabled. Mirrors View#overScrollBy.
+     *
+     * @return Whether either axis was clamped.
+     */
+    private boolean overScrollBy(int deltaX, int deltaY, int maxOverScrollX, int maxOverScrollY) {
+        if (!canOverScroll(mScrollRangeHorizontal > 0)) {
+            maxOverScrollX = 0;
+        }
+        if (!canOverScroll(mScrollRangeVertical > 0)) {
+            maxOverScrollY = 0;
+        }
+
+        int newScrollX = mScrollX + deltaX;
+        int newScrollY = mScrollY + deltaY;
+
+        final int left = -maxOverScrollX;
+        final int right = maxOverScrollX + mScrollRangeHorizontal;
+        final int top = -maxOverScrollY;
+        final int bottom = maxOverScrollY + mScrollRangeVertical;
+
+        boolean clampedX = false;
+        if (newScrollX > right) {
+            newScrollX = right;
+            clampedX = true;
+        } else if (newScrollX < left) {
+            newScrollX = left;
+            clampedX = true;
+        }
+
+        boolean clampedY = false;
+        if (newScrollY > bottom) {
+            newScrollY = bottom;
+            clampedY = true;
+        } else if (newScrollY < top) {
+            newScrollY = top;
+            clampedY = true;
+        }
+
+        if (newScrollX != mScrollX || newScrollY != mScrollY) {
+            mScrollX = newScrollX;
+            mScrollY = newScrollY;
+            if (mCallback != null) {
+                mCallback.scrollTo(newScrollX, newScrollY);
+            }
+        }
+        return clampedX || clampedY;
+    }
+
+    private boolean canOverScroll(boolean contentScrolls) {
+        return mOverScrollMode == OVER_SCROLL_ALWAYS
+                || (mOverScrollMode == OVER_SCROLL_IF_CONTENT_SCROLLS && contentScrolls);
+    }
+
+    private int clampVelocity(float velocity) {
+        return (int) Math.max(-mMaximumVelocity, Math.min(velocity, mMaximumVelocity));
+    }
+
+    /**
+     * @param running The state to be in if an animation is running.
+     */
+    private void updateSettlingState(int running) {
+        if (mState == STATE_DRAGGING) {
+            return;
+        }
+        if (mPhysics.isFinished()) {
+            mState = mHostAnimating ? STATE_ANIMATING : STATE_IDLE;
+        } else {
+            mState = running;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.greycellofp.droiduiscrollview;
+
+/**
+ * The geometry DroidUIScrollView runs on every scroll, focus change and layout,
+ * kept free of View so that it can be benchmarked and tested on a plain JVM.
+ * Everything here works on one axis at a time, in content coordinates.
+ */
+public final class ScrollMath {
+
+    /**
+     * Decides whether an indexed focusable may take focus.
+     */
+    public interface FocusFilter {
+        boolean isCandidate(int id);
+    }
+
+    private ScrollMath() {
+    }
+
+    /**
+     * Clamp a scroll position so the viewport stays over the content.
+     *
+     * @param n     The requested scroll position.
+     * @param my    The size of the viewport.
+     * @param child The size of the content.
+     * @return The scroll position to use.
+     */
+    public static int clamp(int n, int my, int child) {
+        if (my >= child || n < 0) {
+            /* my >= child is this case:
+             *                    |--------------- me ---------------|
+             *     |------ child ------|
+             * or
+             *     |--------------- me ---------------|
+             *            |------ child ------|
+             * or
+             *     |--------------- me ---------------|
+             *                                  |------ child ------|
+             *
+             * n < 0 is this case:
+             *     |------ me ------|
+             *                    |-------- child --------|
+             *     |-- mScrollX --|
+             */
+            return 0;
+        }
+        if ((my+n) > child) {
+            /* this case:
+             *                    |------ me ------|
+             *     |------ child ------|
+             *     |-- mScrollX --|
+             */
+            return child-my;
+        }
+        return n;
+    }
+
+    /**
+     * Compute the amount to scroll in order to get a range completely on the
+     * screen (or, if larger than the screen, at least the first screen size chunk
+     * of it).
+     *
+     * @param rectStart  Start of the range.
+     * @param rectEnd    End of the range.
+     * @param scroll     The current scroll position.
+     * @param size       The size of the viewport.
+     * @param fadingEdge The fading edge length, kept clear unless the range touches
+     *                   the content's edge.
+     * @param childSize  The size of the content.
+     * @param childEnd   The far edge of the content in the scroll view's coordinates.
+     * @return The scroll delta.
+     */
+    public static int computeScrollDeltaToGetRectOnScreen(int rectStart, int rectEnd, int scroll,
+                                                          int size, int fadingEdge,
+                                                          int childSize, int childEnd) {
+        int screenStart = scroll;
+        int screenEnd = screenStart + size;
+
+        // leave room for the leading fading edge as long as rect isn't at the very start
+        if (rectStart > 0) {
+            screenStart += fadingEdge;
+        }
+
+        // leave room for the trailing fading edge as long as rect isn't at the very end
+        if (rectEnd < childSize) {
+            screenEnd -= fadingEdge;
+        }
+
+        int scrollDelta = 0;
+
+        if (rectEnd > screenEnd && rectStart > screenStart) {
+            // need to move forward to get it in view: move just enough so
+            // that the entire rectangle is in view (or at least the first
+            // screen size chunk).
+
+            if (rectEnd - rectStart > size) {
+                // just enough to get screen size chunk on
+                scrollDelta += (rectStart - screenStart);
+            } else {
+                // get entire rect at the end of the screen
+                scrollDelta += (rectEnd - screenEnd);
+            }
+
+            // make sure we aren't scrolling beyond the end of our content
+            int distanceToEnd = childEnd - screenEnd;
+            scrollDelta = Math.min(scrollDelta, distanceToEnd);
+
+        } else if (rectStart < screenStart && rectEnd < screenEnd) {
+            // need to move back to get it in view: move just enough so that
+            // entire rectangle is in view (or at least the first screen
+            // size chunk of it).
+
+            if (rectEnd - rectStart > size) {
+                // screen size chunk
+                scrollDelta -= (screenEnd - rectEnd);
+            } else {
+                // entire rect at the start
+                scrollDelta -= (screenStart - rectStart);
+            }
+
+            // make sure we aren't scrolling any further than the start of our content
+            scrollDelta = Math.max(scrollDelta, -scroll);
+        }
+        return scrollDelta;
+    }
+
+    /**
+     * Finds the focusable to give focus to within the given vertical bounds.
+     *
+     * @param index    The focusables, in content coordinates.
+     * @param filter   Rechecks each focusable found, may be null to accept all.
+     * @param topFocus Prefer the candidate at the top of the bounds if true, at
+     *                 the bottom otherwise.
+     * @return The id of the candidate, or -1 if there is none.
+     */
+    public static int findFocusCandidateVertically(SpatialIndex index, FocusFilter filter,
+                                                   boolean topFocus, int top, int bottom) {
+        index.query(Integer.MIN_VALUE, top, Integer.MAX_VALUE, bottom);
+        return selectFocusCandidate(index, filter, true, topFocus, top, bottom);
+    }
+
+    /**
+     * Finds the focusable to give focus to within the given horizontal bounds.
+     *
+     * @param index     The focusables, in content coordinates.
+     * @param filter    Rechecks each focusable found, may be null to accept all.
+     * @param leftFocus Prefer the candidate at the left of the bounds if true, at
+     *                  the right otherwise.
+     * @return The id of the candidate, or -1 if there is none.
+     */
+    public static int findFocusCandidateHorizontally(SpatialIndex index, FocusFilter filter,
+                                                     boolean leftFocus, int left, int right) {
+        index.query(left, Integer.MIN_VALUE, right, Integer.MAX_VALUE);
+        return selectFocusCandidate(index, filter, false, leftFocus, left, right);
+    }
+
+    private static int selectFocusCandidate(SpatialIndex index, FocusFilter filter, boolean vertical,
+                                            boolean startFocus, int start, int end) {
+        int focusCandidate = -1;
+
+        /*
+         * A fully contained focusable is one where its start is after the bound's
+         * start, and its end is before the bound's end. A partially
+         * contained focusable is one where some part of it is within the
+         * bounds, but it also has some part that is not within bounds.  A fully contained
+         * focusable is preferred to a partially contained focusable.
+         */
+        boolean foundFullyContainedFocusable = false;
+
+        /*
+         * Only the focusables overlapping the bounds come back from the index.
+         */
+        final int count = index.getResultCount();
+        for (int i = 0; i < count; i++) {
+            final int view = index.getResult(i);
+            if (filter != null && !filter.isCandidate(view)) {
+                continue;
+            }
+            final int viewStart = vertical ? index.getTop(view) : index.getLeft(view);
+            final int viewEnd = vertical ? index.getBottom(view) : index.getRight(view);
+
+            if (start < viewEnd && viewStart < end) {
+                /*
+                 * the focusable is in the target area, it is a candidate for
+                 * focusing
+                 */
+
+                final boolean viewIsFullyContained = (start < viewStart) &&
+                        (viewEnd < end);
+
+                if (focusCandidate == -1) {
+                    /* No candidate, take this one */
+                    focusCandidate = view;
+                    foundFullyContainedFocusable = viewIsFullyContained;
+                } else {
+                    final int candidateStart = vertical
+                            ? index.getTop(focusCandidate) : index.getLeft(focusCandidate);
+                    final int candidateEnd = vertical
+                            ? index.getBottom(focusCandidate) : index.getRight(focusCandidate);
+                    final boolean viewIsCloserToBoundary =
+                            (startFocus && viewStart < candidateStart) ||
+                                    (!startFocus && viewEnd > candidateEnd);
+
+                    if (foundFullyContainedFocusable) {
+                        if (viewIsFullyContained && viewIsCloserToBoundary) {
+                            /*
+                             * We're dealing with only fully contained views, so
+                             * it has to be closer to the boundary to beat our
+                             * candidate
+                             */
+                            focusCandidate = view;
+                        }
+                    } else {
+                        if (viewIsFullyContained) {
+                            /* Any fully contained view beats a partially contained view */
+                            focusCandidate = view;
+                            foundFullyContainedFocusable = true;
+                        } else if (viewIsCloserToBoundary) {
+                            /*
+                             * Partially contained view beats another partially
+                             * contained view if it's closer
+                             */
+                            focusCandidate = view;
+                        }
+                    }
+                }
+            }
+        }
+
+        return focusCandidate;
+    }
+}
@@ -0,0 +1,72 @@
+package com.greycellofp.droiduiscrollview;
+
+/**
+ * Drives the animated part of scrolling: flings, programmatic smooth scrolls and
+ * springing back from overscroll. This is the contract DroidUIScrollView used to
+ * have with android.widget.OverScroller, except that time is passed in by the
+ * caller so implementations can run outside of Android.
+ *
+ * <p>All times are in milliseconds on the caller's clock, positions in pixels and
+ * velocities in pixels per second.</p>
+ *
+ * @see SplineScrollPhysics
+ */
+public interface ScrollPhysics {
+
+    /**
+     * @return Whether both axes have come to rest.
+     */
+    boolean isFinished();
+
+    /**
+     * Stops the animation on both axes, leaving the current position where it is.
+     */
+    void abortAnimation();
+
+    /**
+     * Advances the animation to the given time.
+     *
+     * @return true if the animation is still running, the new position is then
+     *   available from {@link #getCurrX()} and {@link #getCurrY()}.
+     */
+    boolean computeScrollOffset(long timeMillis);
+
+    int getCurrX();
+
+    int getCurrY();
+
+    /**
+     * @return The X position where the current animation is expected to end.
+     */
+    int getFinalX();
+
+    /**
+     * @return The Y position where the current animation is expected to end.
+     */
+    int getFinalY();
+
+    /**
+     * @return The magnitude of the current velocity in pixels per second.
+     */
+    float getCurrVelocity();
+
+    /**
+     * Start scrolling by providing a starting point and the distance to travel.
+     */
+    void startScroll(int startX, int startY, int dx, int dy, int duration, long timeMillis);
+
+    /**
+     * Start a fling. The fling decelerates to a stop, it may travel past the
+     * min/max bounds by up to overX/overY pixels before springing back to them.
+     */
+    void fling(int startX, int startY, int velocityX, int velocityY,
+               int minX, int maxX, int minY, int maxY, int overX, int overY, long timeMillis);
+
+    /**
+     * Spring back into the valid range when the start position is outside of it.
+     *
+     * @return true if an animation was started, false if the position was already valid.
+     */
+    boolean springBack(int startX, int startY, int minX, int maxX, int minY, int maxY,
+                       long timeMillis);
+}
@@ -0,0 +1,263 @@
+package com.greycellofp.droiduiscrollview;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over a set of rectangles that answers "which rectangles overlap
+ * this range" without looking at every rectangle.
+ *
+ * <p>Rectangles are added with {@link #add(int, int, int, int)}, which returns the id
+ * used to refer to them afterwards, and become queryable once {@link #build()} has
+ * been called. All storage is kept in primitive arrays that are reused across
+ * rebuilds, so rebuilding an index of the same size and querying it allocate
+ * nothing.</p>
+ */
+public class SpatialIndex {
+    private static final int MIN_CELL_SIZE = 16;
+
+    /**
+     * Upper bound on the number of grid cells per indexed rectangle, so that a few
+     * tiny rectangles spread over a huge area don't produce a huge grid.
+     */
+    private static final int MAX_CELLS_PER_ITEM = 4;
+
+    private int mCount;
+    private int[] mLeft = new int[16];
+    private int[] mTop = new int[16];
+    private int[] mRight = new int[16];
+    private int[] mBottom = new int[16];
+
+    private int mOriginX;
+    private int mOriginY;
+    private int mCellSize;
+    private int mColumns;
+    private int mRows;
+
+    /*
+     * Cell contents in compressed form: the ids in cell c are
+     * mCellItems[mCellStart[c]] .. mCellItems[mCellStart[c + 1] - 1].
+     */
+    private int[] mCellStart = new int[1];
+    private int[] mCellItems = new int[16];
+
+    /*
+     * Rectangles spanning several cells are seen once per cell by a query, the
+     * stamp lets each query report them only once.
+     */
+    private int[] mQueryStamp = new int[16];
+    private int mStamp;
+
+    private int[] mResults = new int[16];
+    private int mResultCount;
+
+    /**
+     * Removes every rectangle. The index must be rebuilt before it is queried again.
+     */
+    public void clear() {
+        mCount = 0;
+        mColumns = 0;
+        mRows = 0;
+        mResultCount = 0;
+    }
+
+    /**
+     * @return The id of the added rectangle, ids are handed out in insertion order starting at 0.
+     */
+    public int add(int left, int top, int right, int bottom) {
+        if (mCount == mLeft.length) {
+            final int capacity = mCount * 2;
+            mLeft = Arrays.copyOf(mLeft, capacity);
+            mTop = Arrays.copyOf(mTop, capacity);
+            mRight = Arrays.copyOf(mRight, capacity);
+            mBottom = Arrays.copyOf(mBottom, capacity);
+        }
+        mLeft[mCount] = left;
+        mTop[mCount] = top;
+        mRight[mCount] = right;
+        mBottom[mCount] = bottom;
+        return mCount++;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    public int getLeft(int id) {
+        return mLeft[id];
+    }
+
+    public int getTop(int id) {
+        return mTop[id];
+    }
+
+    public int getRight(int id) {
+        return mRight[id];
+    }
+
+    public int getBottom(int id) {
+        return mBottom[id];
+    }
+
+    /**
+     * Buckets the rectangles added since the last {@link #clear()}.
+     */
+    public void build() {
+        final int count = mCount;
+        if (count == 0) {
+            mColumns = 0;
+            mRows = 0;
+            return;
+        }
+
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        long extentSum = 0;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, mLeft[i]);
+            minY = Math.min(minY, mTop[i]);
+            maxX = Math.max(maxX, mRight[i]);
+            maxY = Math.max(maxY, mBottom[i]);
+            extentSum += Math.max(mRight[i] - mLeft[i], mBottom[i] - mTop[i]);
+        }
+
+        // Cells about the size of an average rectangle keep both the number of
+        // cells a rectangle lands in and the number of rectangles per cell small.
+        final long width = Math.max(1L, (long) maxX - minX);
+        final long height = Math.max(1L, (long) maxY - minY);
+        long cellSize = Math.max(MIN_CELL_SIZE, extentSum / count);
+        while (cellCount(width, cellSize) * cellCount(height, cellSize)
+                > (long) count * MAX_CELLS_PER_ITEM + 1) {
+            cellSize *= 2;
+        }
+
+        mOriginX = minX;
+        mOriginY = minY;
+        mCellSize = (int) Math.min(Integer.MAX_VALUE, cellSize);
+        mColumns = (int) cellCount(width, cellSize);
+        mRows = (int) cellCount(height, cellSize);
+        final int cells = mColumns * mRows;
+
+        if (mCellStart.length < cells + 1) {
+            mCellStart = new int[cells + 1];
+        } else {
+            Arrays.fill(mCellStart, 0, cells + 1, 0);
+        }
+
+        // First pass counts the entries per cell, the second one places them.
+        int entries = 0;
+        for (int i = 0; i < count; i++) {
+            final int firstColumn = column(mLeft[i]);
+            final int lastColumn = column(mRight[i] - 1);
+            final int firstRow = row(mTop[i]);
+            final int lastRow = row(mBottom[i] - 1);
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    mCellStart[row * mColumns + column + 1]++;
+                    entries++;
+                }
+            }
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            mCellStart[cell + 1] += mCellStart[cell];
+        }
+        if (mCellItems.length < entries) {
+            mCellItems = new int[Math.max(entries, mCellItems.length * 2)];
+        }
+        for (int i = 0; i < count; i++) {
+            final int firstColumn = column(mLeft[i]);
+            final int lastColumn = column(mRight[i] - 1);
+            final int firstRow = row(mTop[i]);
+            final int lastRow = row(mBottom[i] - 1);
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    // mCellStart[cell] doubles as the insertion cursor and is
+                    // restored by the shift below.
+                    mCellItems[mCellStart[row * mColumns + column]++] = i;
+                }
+            }
+        }
+        for (int cell = cells; cell > 0; cell--) {
+            mCellStart[cell] = mCellStart[cell - 1];
+        }
+        mCellStart[0] = 0;
+
+        if (mQueryStamp.length < count) {
+            mQueryStamp = new int[mLeft.length];
+        } else {
+            Arrays.fill(mQueryStamp, 0, count, 0);
+        }
+        mStamp = 0;
+    }
+
+    /**
+     * Collects the ids of the rectangles that overlap the given range, see
+     * {@link #getResultCount()} and {@link #getResult(int)}. Touching edges do
+     * not count as overlapping.
+     *
+     * @return The number of rectangles found.
+     */
+    public int query(int left, int top, int right, int bottom) {
+        mResultCount = 0;
+        if (mColumns == 0 || left >= right || top >= bottom) {
+            return 0;
+        }
+
+        if (++mStamp == 0) {
+            Arrays.fill(mQueryStamp, 0, mCount, 0);
+            mStamp = 1;
+        }
+        final int stamp = mStamp;
+
+        final int firstColumn = column(left);
+        final int lastColumn = column(right - 1);
+        final int firstRow = row(top);
+        final int lastRow = row(bottom - 1);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                final int cell = row * mColumns + column;
+                for (int entry = mCellStart[cell], end = mCellStart[cell + 1]; entry < end; entry++) {
+                    final int id = mCellItems[entry];
+                    if (mQueryStamp[id] == stamp) {
+                        continue;
+                    }
+                    mQueryStamp[id] = stamp;
+                    if (left < mRight[id] && mLeft[id] < right
+                            && top < mBottom[id] && mTop[id] < bottom) {
+                        if (mResultCount == mResults.length) {
+                            mResults = Arrays.copyOf(mResults, mResultCount * 2);
+                        }
+                        mResults[mResultCount++] = id;
+                    }
+                }
+            }
+        }
+        return mResultCount;
+    }
+
+    public int getResultCount() {
+        return mResultCount;
+    }
+
+    /**
+     * @return The id of the index'th rectangle found by the last {@link #query}.
+     */
+    public int getResult(int index) {
+        return mResults[index];
+    }
+
+    private int column(int x) {
+        final long column = ((long) x - mOriginX) / mCellSize;
+        return (int) Math.max(0, Math.min(mColumns - 1, column));
+    }
+
+    private int row(int y) {
+        final long row = ((long) y - mOriginY) / mCellSize;
+        return (int) Math.max(0, Math.min(mRows - 1, row));
+    }
+
+    private static long cellCount(long extent, long cellSize) {
+        return (extent + cellSize - 1) / cellSize;
+    }
+}
@@ -0,0 +1,432 @@
+package com.greycellofp.droiduiscrollview;
+
+/**
+ * Default {@link ScrollPhysics}. Flings follow the same deceleration spline as
+ * Android's OverScroller, read from lookup tables computed once per process,
+ * and overscroll is resolved by a critically damped spring so it settles without
+ * oscillating. The two axes are simulated independently and nothing is allocated
+ * after construction.
+ */
+public class SplineScrollPhysics implements ScrollPhysics {
+    private static final float GRAVITY_EARTH = 9.80665f;
+    private static final float INCHES_PER_METER = 39.37f;
+    private static final float DEFAULT_FRICTION = 0.015f;
+
+    private static final float DECELERATION_RATE = (float) (Math.log(0.78) / Math.log(0.9));
+    private static final float INFLEXION = 0.35f;
+    private static final float START_TENSION = 0.5f;
+    private static final float END_TENSION = 1.0f;
+    private static final float P1 = START_TENSION * INFLEXION;
+    private static final float P2 = 1.0f - END_TENSION * (1.0f - INFLEXION);
+
+    private static final int NB_SAMPLES = 100;
+    private static final float[] SPLINE_POSITION = new float[NB_SAMPLES + 1];
+    private static final float[] SPLINE_TIME = new float[NB_SAMPLES + 1];
+
+    /**
+     * Angular frequency, in radians per second, of the spring that pulls an
+     * overscrolled position back into range. About 300ms to settle.
+     */
+    private static final float DEFAULT_SPRING_FREQUENCY = 20f;
+
+    private static final float VISCOUS_FLUID_SCALE = 8.0f;
+    private static final float VISCOUS_FLUID_NORMALIZE = 1.0f / viscousFluid(1.0f);
+    private static final float VISCOUS_FLUID_OFFSET = 1.0f - VISCOUS_FLUID_NORMALIZE * viscousFluid(1.0f);
+
+    static {
+        float xMin = 0.0f;
+        float yMin = 0.0f;
+        for (int i = 0; i < NB_SAMPLES; i++) {
+            final float alpha = (float) i / NB_SAMPLES;
+
+            float xMax = 1.0f;
+            float x, tx, coef;
+            while (true) {
+                x = xMin + (xMax - xMin) / 2.0f;
+                coef = 3.0f * x * (1.0f - x);
+                tx = coef * ((1.0f - x) * P1 + x * P2) + x * x * x;
+                if (Math.abs(tx - alpha) < 1E-5) break;
+                if (tx > alpha) xMax = x;
+                else xMin = x;
+            }
+            SPLINE_POSITION[i] = coef * ((1.0f - x) * START_TENSION + x) + x * x * x;
+
+            float yMax = 1.0f;
+            float y, dy;
+            while (true) {
+                y = yMin + (yMax - yMin) / 2.0f;
+                coef = 3.0f * y * (1.0f - y);
+                dy = coef * ((1.0f - y) * START_TENSION + y) + y * y * y;
+                if (Math.abs(dy - alpha) < 1E-5) break;
+                if (dy > alpha) yMax = y;
+                else yMin = y;
+            }
+            SPLINE_TIME[i] = coef * ((1.0f - y) * P1 + y * P2) + y * y * y;
+        }
+        SPLINE_POSITION[NB_SAMPLES] = SPLINE_TIME[NB_SAMPLES] = 1.0f;
+    }
+
+    private final Axis mAxisX;
+    private final Axis mAxisY;
+
+    /**
+     * @param density The display density, as in DisplayMetrics#density. Fling
+     *                distances are computed in physical units and scaled by it.
+     */
+    public SplineScrollPhysics(float density) {
+        final float ppi = density * 160.0f;
+        final float physicalCoeff = GRAVITY_EARTH * INCHES_PER_METER * ppi * 0.84f;
+        mAxisX = new Axis(physicalCoeff);
+        mAxisY = new Axis(physicalCoeff);
+    }
+
+    /**
+     * The amount of friction applied to flings, 0.015 by default like
+     * ViewConfiguration#getScrollFriction().
+     */
+    public final void setFriction(float friction) {
+        mAxisX.mFriction = friction;
+        mAxisY.mFriction = friction;
+    }
+
+    /**
+     * The angular frequency, in radians per second, of the spring used to come back
+     * from overscroll. Higher values settle faster.
+     */
+    public final void setSpringFrequency(float frequency) {
+        mAxisX.mSpringFrequency = frequency;
+        mAxisY.mSpringFrequency = frequency;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return mAxisX.mFinished && mAxisY.mFinished;
+    }
+
+    @Override
+    public void abortAnimation() {
+        mAxisX.finish();
+        mAxisY.finish();
+    }
+
+    @Override
+    public boolean computeScrollOffset(long timeMillis) {
+        if (isFinished()) {
+            return false;
+        }
+        mAxisX.update(timeMillis);
+        mAxisY.update(timeMillis);
+        return true;
+    }
+
+    @Override
+    public int getCurrX() {
+        return mAxisX.mCurrentPosition;
+    }
+
+    @Override
+    public int getCurrY() {
+        return mAxisY.mCurrentPosition;
+    }
+
+    @Override
+    public int getFinalX() {
+        return mAxisX.mFinal;
+    }
+
+    @Override
+    public int getFinalY() {
+        return mAxisY.mFinal;
+    }
+
+    @Override
+    public float getCurrVelocity() {
+        return (float) Math.hypot(mAxisX.mCurrVelocity, mAxisY.mCurrVelocity);
+    }
+
+    @Override
+    public void startScroll(int startX, int startY, int dx, int dy, int duration, long timeMillis) {
+        mAxisX.startScroll(startX, dx, duration, timeMillis);
+        mAxisY.startScroll(startY, dy, duration, timeMillis);
+    }
+
+    @Override
+    public void fling(int startX, int startY, int velocityX, int velocityY,
+                      int minX, int maxX, int minY, int maxY, int overX, int overY,
+                      long timeMillis) {
+        mAxisX.fling(startX, velocityX, minX, maxX, overX, timeMillis);
+        mAxisY.fling(startY, velocityY, minY, maxY, overY, timeMillis);
+    }
+
+    @Override
+    public boolean springBack(int startX, int startY, int minX, int maxX, int minY, int maxY,
+                              long timeMillis) {
+        // Both axes must be started, don't short circuit.
+        final boolean springX = mAxisX.springBack(startX, minX, maxX, timeMillis);
+        final boolean springY = mAxisY.springBack(startY, minY, maxY, timeMillis);
+        return springX || springY;
+    }
+
+    private static float viscousFluid(float x) {
+        x *= VISCOUS_FLUID_SCALE;
+        if (x < 1.0f) {
+            x -= (1.0f - (float) Math.exp(-x));
+        } else {
+            final float start = 0.36787944117f;   // 1/e == exp(-1)
+            x = 1.0f - (float) Math.exp(1.0f - x);
+            x = start + x * (1.0f - start);
+        }
+        return x;
+    }
+
+    /**
+     * Motion along one axis.
+     */
+    static final class Axis {
+        private static final int MODE_SCROLL = 0;
+        private static final int MODE_SPLINE = 1;
+        private static final int MODE_SPRING = 2;
+
+        /**
+         * Below these the spring is considered at rest.
+         */
+        private static final float SPRING_REST_DISTANCE = 0.5f;
+        private static final float SPRING_REST_VELOCITY = 10f;
+
+        private final float mPhysicalCoeff;
+        float mFriction = DEFAULT_FRICTION;
+        float mSpringFrequency = DEFAULT_SPRING_FREQUENCY;
+
+        boolean mFinished = true;
+        private int mMode;
+
+        private int mStart;
+        int mCurrentPosition;
+        int mFinal;
+        float mCurrVelocity;
+        private long mStartTime;
+        private int mDuration;
+
+        /* Fling */
+        private int mSplineDuration;
+        private int mSplineDistance;
+        private int mOver;
+
+        /* Spring, displacement relative to mFinal */
+        private float mSpringDisplacement;
+        private float mSpringVelocity;
+        private float mSpringOmega;
+
+        Axis(float physicalCoeff) {
+            mPhysicalCoeff = physicalCoeff;
+        }
+
+        void finish() {
+            mFinished = true;
+            mCurrVelocity = 0;
+        }
+
+        void startScroll(int start, int distance, int duration, long time) {
+            mMode = MODE_SCROLL;
+            mFinished = distance == 0;
+            mStart = start;
+            mCurrentPosition = start;
+            mFinal = start + distance;
+            mStartTime = time;
+            mDuration = duration;
+            mCurrVelocity = 0;
+        }
+
+        boolean springBack(int start, int min, int max, long time) {
+            mStart = start;
+            mCurrentPosition = start;
+            mFinal = start;
+            mCurrVelocity = 0;
+            mFinished = true;
+            if (start < min) {
+                startSpring(start, min, 0, mSpringFrequency, time);
+            } else if (start > max) {
+                startSpring(start, max, 0, mSpringFrequency, time);
+            }
+            return !mFinished;
+        }
+
+        void fling(int start, int velocity, int min, int max, int over, long time) {
+            mOver = over;
+            mFinished = false;
+            mCurrVelocity = velocity;
+            mStart = start;
+            mCurrentPosition = start;
+            mStartTime = time;
+
+            if (start > max || start < min) {
+                // Already out of range, the spring takes over with the fling's velocity.
+                startSpring(start, start > max ? max : min, velocity, mSpringFrequency, time);
+                return;
+            }
+
+            mMode = MODE_SPLINE;
+            double totalDistance = 0.0;
+            mSplineDuration = 0;
+            if (velocity != 0) {
+                mSplineDuration = getSplineFlingDuration(velocity);
+                totalDistance = getSplineFlingDistance(velocity);
+            }
+            mDuration = mSplineDuration;
+            mSplineDistance = (int) (totalDistance * Math.signum(velocity));
+            mFinal = start + mSplineDistance;
+
+            // Clamp to a valid final position, the fling is cut where it meets the edge.
+            if (mFinal < min) {
+                adjustDuration(mStart, mFinal, min);
+                mFinal = min;
+            }
+            if (mFinal > max) {
+                adjustDuration(mStart, mFinal, max);
+                mFinal = max;
+            }
+            if (mDuration <= 0) {
+                // Already at the edge the fling heads for, bounce off it right away
+                // like OverScroller does.
+                startOverfling(velocity, time);
+            }
+        }
+
+        void update(long time) {
+            if (mFinished) {
+                return;
+            }
+            final long currentTime = time - mStartTime;
+
+            switch (mMode) {
+                case MODE_SCROLL: {
+                    if (currentTime >= mDuration) {
+                        mCurrentPosition = mFinal;
+                        finish();
+                        return;
+                    }
+                    float x = (float) currentTime / mDuration;
+                    final float interpolated = VISCOUS_FLUID_NORMALIZE * viscousFluid(x);
+                    x = interpolated > 0 ? interpolated + VISCOUS_FLUID_OFFSET : interpolated;
+                    mCurrentPosition = mStart + Math.round(x * (mFinal - mStart));
+                    break;
+                }
+                case MODE_SPLINE: {
+                    final float t = (float) currentTime / mSplineDuration;
+                    final int index = (int) (NB_SAMPLES * t);
+                    float distanceCoef = 1.f;
+                    float velocityCoef = 0.f;
+                    if (index < NB_SAMPLES) {
+                        final float tInf = (float) index / NB_SAMPLES;
+                        final float tSup = (float) (index + 1) / NB_SAMPLES;
+                        final float dInf = SPLINE_POSITION[index];
+                        final float dSup = SPLINE_POSITION[index + 1];
+                        velocityCoef = (dSup - dInf) / (tSup - tInf);
+                        distanceCoef = dInf + (t - tInf) * velocityCoef;
+                    }
+                    mCurrVelocity = velocityCoef * mSplineDistance / mSplineDuration * 1000.0f;
+
+                    if (currentTime >= mDuration) {
+                        mCurrentPosition = mFinal;
+                        onSplineEnd(time);
+                        return;
+                    }
+                    mCurrentPosition = mStart + Math.round(distanceCoef * mSplineDistance);
+                    break;
+                }
+                case MODE_SPRING: {
+                    // Critically damped: x(t) = (x0 + (v0 + w * x0) * t) * e^(-w * t)
+                    final float seconds = currentTime / 1000f;
+                    final float omega = mSpringOmega;
+                    final float x0 = mSpringDisplacement;
+                    final float v0 = mSpringVelocity;
+                    final float decay = (float) Math.exp(-omega * seconds);
+                    final float b = v0 + omega * x0;
+                    final float displacement = (x0 + b * seconds) * decay;
+                    mCurrVelocity = (v0 - omega * b * seconds) * decay;
+
+                    if (Math.abs(displacement) < SPRING_REST_DISTANCE
+                            && Math.abs(mCurrVelocity) < SPRING_REST_VELOCITY) {
+                        mCurrentPosition = mFinal;
+                        finish();
+                        return;
+                    }
+                    mCurrentPosition = mFinal + Math.round(displacement);
+                    break;
+                }
+            }
+        }
+
+        /**
+         * The spline either ran its course or was cut at an edge. In the latter case
+         * overshoot by up to mOver pixels and settle back on the edge.
+         */
+        private void onSplineEnd(long time) {
+            if (mDuration < mSplineDuration) {
+                startOverfling(mCurrVelocity, time);
+            } else {
+                finish();
+            }
+        }
+
+        /**
+         * Overshoots the edge at mFinal with the given velocity, by up to mOver
+         * pixels, and settles back on it.
+         */
+        private void startOverfling(float velocity, long time) {
+            if (mOver > 0 && velocity != 0) {
+                // Peak displacement of a critically damped spring starting at rest
+                // position with velocity v is v / (w * e), pick w to peak at mOver.
+                final float omega = (float) (Math.abs(velocity) / (Math.E * mOver));
+                startSpring(mFinal, mFinal, velocity, Math.max(omega, mSpringFrequency), time);
+            } else {
+                finish();
+            }
+        }
+
+        private void startSpring(int start, int rest, float velocity, float omega, long time) {
+            mMode = MODE_SPRING;
+            mFinished = false;
+            mStart = start;
+            mCurrentPosition = start;
+            mFinal = rest;
+            mStartTime = time;
+            mSpringDisplacement = start - rest;
+            mSpringVelocity = velocity;
+            mSpringOmega = omega;
+            mCurrVelocity = velocity;
+        }
+
+        private void adjustDuration(int start, int oldFinal, int newFinal) {
+            final int oldDistance = oldFinal - start;
+            final int newDistance = newFinal - start;
+            final float x = Math.abs((float) newDistance / oldDistance);
+            final int index = (int) (NB_SAMPLES * x);
+            if (index < NB_SAMPLES) {
+                final float xInf = (float) index / NB_SAMPLES;
+                final float xSup = (float) (index + 1) / NB_SAMPLES;
+                final float tInf = SPLINE_TIME[index];
+                final float tSup = SPLINE_TIME[index + 1];
+                final float timeCoef = tInf + (x - xInf) / (xSup - xInf) * (tSup - tInf);
+                mDuration = (int) (mDuration * timeCoef);
+            }
+        }
+
+        private double getSplineDeceleration(int velocity) {
+            return Math.log(INFLEXION * Math.abs(velocity) / (mFriction * mPhysicalCoeff));
+        }
+
+        private double getSplineFlingDistance(int velocity) {
+            final double l = getSplineDeceleration(velocity);
+            final double decelMinusOne = DECELERATION_RATE - 1.0;
+            return mFriction * mPhysicalCoeff * Math.exp(DECELERATION_RATE / decelMinusOne * l);
+        }
+
+        /* Returns the duration, expressed in milliseconds */
+        private int getSplineFlingDuration(int velocity) {
+            final double l = getSplineDeceleration(velocity);
+            final double decelMinusOne = DECELERATION_RATE - 1.0;
+            return (int) (1000.0 * Math.exp(l / decelMinusOne));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.greycellofp.droiduiscrollview;
+
+/**
+ * Predicts where a dragging pointer will be a short time after its latest
+ * sample, from the velocity and acceleration of its recent movement, so that
+ * content can be drawn where the finger is by the time the frame is shown
+ * rather than where it was.
+ *
+ * <p>The prediction is bounded so that it doesn't overshoot: a decelerating
+ * pointer is predicted to stop rather than turn back, the offset is capped to
+ * {@link #setMaxDistance(float)}, and nothing is predicted for a pointer that is
+ * barely moving or whose samples are stale. Times are in milliseconds and
+ * distances in pixels.</p>
+ */
+public class TouchPredictor {
+    public static final long DEFAULT_PREDICTION_MILLIS = 16;
+
+    private static final int HISTORY_SIZE = 8;
+
+    /**
+     * Only the recent movement says where the pointer is heading.
+     */
+    private static final long HORIZON_MILLIS = 50;
+
+    /**
+     * A gap this long between two samples means the pointer stopped in between.
+     */
+    private static final long ASSUME_STOPPED_MILLIS = 40;
+
+    /**
+     * Below this speed, in pixels per second, prediction would only add jitter.
+     */
+    private static final float MIN_VELOCITY = 50f;
+
+    private long mPredictionMillis = DEFAULT_PREDICTION_MILLIS;
+    private float mMaxDistance = Float.MAX_VALUE;
+
+    private final long[] mTimes = new long[HISTORY_SIZE];
+    private final float[] mXs = new float[HISTORY_SIZE];
+    private final float[] mYs = new float[HISTORY_SIZE];
+    private int mIndex;
+    private int mCount;
+
+    private final float[] mSampleTimes = new float[HISTORY_SIZE];
+    private final float[] mSampleValues = new float[HISTORY_SIZE];
+    private final QuadraticFit mFit = new QuadraticFit();
+
+    private float mOffsetX;
+    private float mOffsetY;
+
+    public long getPredictionMillis() {
+        return mPredictionMillis;
+    }
+
+    /**
+     * Set how far past the latest sample to predict, roughly the time from a touch
+     * being reported to the frame showing it on the target device.
+     */
+    public void setPredictionMillis(long predictionMillis) {
+        if (predictionMillis < 0) {
+            throw new IllegalArgumentException("Can't have a negative prediction time");
+        }
+        mPredictionMillis = predictionMillis;
+    }
+
+    public float getMaxDistance() {
+        return mMaxDistance;
+    }
+
+    /**
+     * Cap the distance between the latest sample and the predicted position.
+     */
+    public void setMaxDistance(float maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Can't have a negative distance");
+        }
+        mMaxDistance = maxDistance;
+    }
+
+    /**
+     * Forget the samples, such as when a new pointer is followed.
+     */
+    public void reset() {
+        mCount = 0;
+        mOffsetX = 0;
+        mOffsetY = 0;
+    }
+
+    /**
+     * Record where the pointer was at the given time. Samples must come in time order.
+     */
+    public void addSample(long timeMillis, float x, float y) {
+        if (mCount > 0 && timeMillis - mTimes[mIndex] > ASSUME_STOPPED_MILLIS) {
+            // Moving again after a pause, what came before doesn't count.
+            mCount = 0;
+        }
+        mIndex = (mIndex + 1) % HISTORY_SIZE;
+        mTimes[mIndex] = timeMillis;
+        mXs[mIndex] = x;
+        mYs[mIndex] = y;
+        if (mCount < HISTORY_SIZE) {
+            mCount++;
+        }
+    }
+
+    /**
+     * Predict the pointer's position {@link #getPredictionMillis()} after the
+     * latest sample, read back as an offset from that sample with
+     * {@link #getOffsetX()} and {@link #getOffsetY()}.
+     *
+     * @return Whether anything was predicted, the offset is zero otherwise.
+     */
+    public boolean predict() {
+        mOffsetX = 0;
+        mOffsetY = 0;
+        if (mCount < 3 || mPredictionMillis == 0) {
+            return false;
+        }
+
+        final float dt = mPredictionMillis / 1000f;
+        final float offsetX = predictAxis(mXs, dt);
+        final float offsetY = predictAxis(mYs, dt);
+        final float distance = (float) Math.hypot(offsetX, offsetY);
+        if (distance == 0) {
+            return false;
+        }
+        final float scale = distance > mMaxDistance ? mMaxDistance / distance : 1f;
+        mOffsetX = offsetX * scale;
+        mOffsetY = offsetY * scale;
+        return true;
+    }
+
+    public float getOffsetX() {
+        return mOffsetX;
+    }
+
+    public float getOffsetY() {
+        return mOffsetY;
+    }
+
+    /**
+     * @return How far the pointer moves along the axis held in values in the
+     * given number of seconds.
+     */
+    private float predictAxis(float[] values, float dt) {
+        final long latestTime = mTimes[mIndex];
+        int count = 0;
+        for (int i = 0; i < mCount; i++) {
+            final int index = (mIndex - i + HISTORY_SIZE) % HISTORY_SIZE;
+            if (latestTime - mTimes[index] > HORIZON_MILLIS) {
+                break;
+            }
+            count++;
+        }
+        for (int i = 0; i < count; i++) {
+            final int index = (mIndex - (count - 1 - i) + HISTORY_SIZE) % HISTORY_SIZE;
+            mSampleTimes[i] = (mTimes[index] - latestTime) / 1000f;
+            mSampleValues[i] = values[index];
+        }
+        if (count < 3 || !mFit.fit(mSampleTimes, mSampleValues, count)) {
+            return 0;
+        }
+
+        final float velocity = mFit.getVelocity();
+        if (Math.abs(velocity) < MIN_VELOCITY) {
+            return 0;
+        }
+        final float acceleration = mFit.getAcceleration();
+        if ((velocity + acceleration * dt) * velocity <= 0) {
+            // Slowing down enough to stop within dt, stop there rather than turn back.
+            return -velocity * velocity / (2 * acceleration);
+        }
+        return velocity * dt + 0.5f * acceleration * dt * dt;
+    }
+}
@@ -0,0 +1,104 @@
+package com.greycellofp.droiduiscrollview;
+
+/**
+ * Turns the raw samples of a pointer into its position at a frame's sample time,
+ * so that a drag moves the content by evenly spaced amounts frame after frame
+ * whatever the rate the touch panel reports at.
+ *
+ * <p>Feed it every sample of the pointer, the historical ones of a batched event
+ * included, then ask for the position at the frame time with
+ * {@link #resample(long)}. The position is interpolated between the two latest
+ * samples, or extrapolated a little way past the latest one when the frame is
+ * ahead of the touch panel. Times are in milliseconds on the same clock as the
+ * samples.</p>
+ */
+public class TouchResampler {
+    /**
+     * How far behind the frame time the position is taken, so that the latest
+     * sample is usually past it and the position can be interpolated.
+     */
+    public static final long RESAMPLE_LATENCY_MILLIS = 5;
+
+    /*
+     * Samples closer or further apart than this are too noisy or too stale to resample.
+     */
+    private static final long MIN_DELTA_MILLIS = 2;
+    private static final long MAX_DELTA_MILLIS = 20;
+
+    /**
+     * The furthest the position is extrapolated past the latest sample.
+     */
+    private static final long MAX_PREDICTION_MILLIS = 8;
+
+    private int mCount;
+    private long mPreviousTime;
+    private float mPreviousX;
+    private float mPreviousY;
+    private long mLatestTime;
+    private float mLatestX;
+    private float mLatestY;
+
+    private float mX;
+    private float mY;
+
+    /**
+     * Forget the samples, such as when a new pointer is followed.
+     */
+    public void reset() {
+        mCount = 0;
+    }
+
+    public void addSample(long timeMillis, float x, float y) {
+        if (mCount > 0 && timeMillis <= mLatestTime) {
+            // Same time as the latest sample, it supersedes it.
+            mLatestX = x;
+            mLatestY = y;
+            return;
+        }
+        mPreviousTime = mLatestTime;
+        mPreviousX = mLatestX;
+        mPreviousY = mLatestY;
+        mLatestTime = timeMillis;
+        mLatestX = x;
+        mLatestY = y;
+        if (mCount < 2) {
+            mCount++;
+        }
+    }
+
+    /**
+     * Compute the position for the frame at the given time, read it back with
+     * {@link #getX()} and {@link #getY()}. That's the latest sample when there
+     * isn't enough to resample from.
+     *
+     * @return Whether the position was resampled.
+     */
+    public boolean resample(long frameTimeMillis) {
+        mX = mLatestX;
+        mY = mLatestY;
+        if (mCount < 2) {
+            return false;
+        }
+        final long delta = mLatestTime - mPreviousTime;
+        if (delta < MIN_DELTA_MILLIS || delta > MAX_DELTA_MILLIS) {
+            return false;
+        }
+
+        long sampleTime = frameTimeMillis - RESAMPLE_LATENCY_MILLIS;
+        // Predict no further than half the sampling interval, or the cap.
+        sampleTime = Math.min(sampleTime, mLatestTime + Math.min(delta / 2, MAX_PREDICTION_MILLIS));
+        sampleTime = Math.max(sampleTime, mPreviousTime);
+        final float alpha = (float) (sampleTime - mPreviousTime) / delta;
+        mX = mPreviousX + (mLatestX - mPreviousX) * alpha;
+        mY = mPreviousY + (mLatestY - mPreviousY) * alpha;
+        return true;
+    }
+
+    public float getX() {
+        return mX;
+    }
+
+    public float getY() {
+        return mY;
+    }
+}
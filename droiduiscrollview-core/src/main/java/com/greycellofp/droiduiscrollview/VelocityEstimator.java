@@ -0,0 +1,223 @@
+package com.greycellofp.droiduiscrollview;
+
+/**
+ * Estimates the velocity of pointers from their recent positions, in place of
+ * android.view.VelocityTracker and free of any Android dependency.
+ *
+ * <p>Each pointer keeps its own ring buffer of samples, so a pointer going up
+ * doesn't cost the others their history, which is what lets a fling keep its
+ * velocity after a multi-finger transition. The buffers are preallocated and
+ * nothing is allocated while estimating. Times are in milliseconds, positions
+ * in pixels and velocities in pixels per second.</p>
+ */
+public class VelocityEstimator {
+    /**
+     * Fit a second degree polynomial to the samples by least squares.
+     */
+    public static final int STRATEGY_LSQ2 = 0;
+
+    /**
+     * Derive the velocity from the kinetic energy the samples impart, which
+     * reacts less to a single noisy sample than a polynomial fit.
+     */
+    public static final int STRATEGY_IMPULSE = 1;
+
+    /**
+     * Pointer ids go from 0 to 31, same as MotionEvent's.
+     */
+    public static final int MAX_POINTER_ID = 31;
+
+    private static final int HISTORY_SIZE = 20;
+
+    /**
+     * Samples older than this, relative to the latest one, are ignored.
+     */
+    private static final long HORIZON_MILLIS = 100;
+
+    /**
+     * A gap this long between two samples means the pointer stopped in between.
+     */
+    private static final long ASSUME_STOPPED_MILLIS = 40;
+
+    private int mStrategy;
+
+    /*
+     * Pointer p's samples live at [p * HISTORY_SIZE, (p + 1) * HISTORY_SIZE),
+     * mIndex[p] is the latest and mCount[p] how many are valid.
+     */
+    private final long[] mTimes = new long[(MAX_POINTER_ID + 1) * HISTORY_SIZE];
+    private final float[] mXs = new float[(MAX_POINTER_ID + 1) * HISTORY_SIZE];
+    private final float[] mYs = new float[(MAX_POINTER_ID + 1) * HISTORY_SIZE];
+    private final int[] mIndex = new int[MAX_POINTER_ID + 1];
+    private final int[] mCount = new int[MAX_POINTER_ID + 1];
+
+    /*
+     * The samples of one estimate, oldest first, relative to the latest.
+     */
+    private final float[] mSampleTimes = new float[HISTORY_SIZE];
+    private final float[] mSampleValues = new float[HISTORY_SIZE];
+
+    private final QuadraticFit mFit = new QuadraticFit();
+
+    private float mXVelocity;
+    private float mYVelocity;
+
+    public VelocityEstimator() {
+        this(STRATEGY_LSQ2);
+    }
+
+    public VelocityEstimator(int strategy) {
+        setStrategy(strategy);
+    }
+
+    public int getStrategy() {
+        return mStrategy;
+    }
+
+    /**
+     * @param strategy One of the STRATEGY_* constants.
+     */
+    public void setStrategy(int strategy) {
+        if (strategy != STRATEGY_LSQ2 && strategy != STRATEGY_IMPULSE) {
+            throw new IllegalArgumentException("Unknown strategy " + strategy);
+        }
+        mStrategy = strategy;
+    }
+
+    /**
+     * Record where a pointer was at the given time. Samples of a pointer must come
+     * in time order.
+     */
+    public void addSample(int pointerId, long timeMillis, float x, float y) {
+        checkPointerId(pointerId);
+        final int count = mCount[pointerId];
+        final int base = pointerId * HISTORY_SIZE;
+        int index = mIndex[pointerId];
+        if (count > 0 && timeMillis - mTimes[base + index] > ASSUME_STOPPED_MILLIS) {
+            // Moving again after a pause, what came before doesn't count.
+            mCount[pointerId] = 0;
+        }
+        index = (index + 1) % HISTORY_SIZE;
+        mTimes[base + index] = timeMillis;
+        mXs[base + index] = x;
+        mYs[base + index] = y;
+        mIndex[pointerId] = index;
+        if (mCount[pointerId] < HISTORY_SIZE) {
+            mCount[pointerId]++;
+        }
+    }
+
+    /**
+     * Forget the samples of one pointer, such as when it goes up.
+     */
+    public void clearPointer(int pointerId) {
+        checkPointerId(pointerId);
+        mCount[pointerId] = 0;
+    }
+
+    /**
+     * Forget every sample.
+     */
+    public void clear() {
+        for (int i = 0; i <= MAX_POINTER_ID; i++) {
+            mCount[i] = 0;
+        }
+        mXVelocity = 0;
+        mYVelocity = 0;
+    }
+
+    /**
+     * Estimate the velocity of a pointer at its latest sample, read it back with
+     * {@link #getXVelocity()} and {@link #getYVelocity()}.
+     *
+     * @param maxVelocity The magnitude each axis is clamped to.
+     */
+    public void computeVelocity(int pointerId, float maxVelocity) {
+        checkPointerId(pointerId);
+        mXVelocity = clampVelocity(estimate(pointerId, mXs), maxVelocity);
+        mYVelocity = clampVelocity(estimate(pointerId, mYs), maxVelocity);
+    }
+
+    public float getXVelocity() {
+        return mXVelocity;
+    }
+
+    public float getYVelocity() {
+        return mYVelocity;
+    }
+
+    private static void checkPointerId(int pointerId) {
+        if (pointerId < 0 || pointerId > MAX_POINTER_ID) {
+            throw new IllegalArgumentException("Invalid pointer id " + pointerId);
+        }
+    }
+
+    private static float clampVelocity(float velocity, float maxVelocity) {
+        return Math.max(-maxVelocity, Math.min(velocity, maxVelocity));
+    }
+
+    /**
+     * @return The velocity along the axis held in values, in pixels per second.
+     */
+    private float estimate(int pointerId, float[] values) {
+        final int base = pointerId * HISTORY_SIZE;
+        final int latest = mIndex[pointerId];
+        final long latestTime = mTimes[base + latest];
+
+        // Gather the samples within the horizon, oldest first.
+        int count = 0;
+        for (int i = 0; i < mCount[pointerId]; i++) {
+            final int index = base + (latest - i + HISTORY_SIZE) % HISTORY_SIZE;
+            final long age = latestTime - mTimes[index];
+            if (age > HORIZON_MILLIS) {
+                break;
+            }
+            count++;
+        }
+        for (int i = 0; i < count; i++) {
+            final int index = base + (latest - (count - 1 - i) + HISTORY_SIZE) % HISTORY_SIZE;
+            mSampleTimes[i] = (mTimes[index] - latestTime) / 1000f;
+            mSampleValues[i] = values[index];
+        }
+
+        if (count < 2) {
+            return 0;
+        }
+        return mStrategy == STRATEGY_IMPULSE
+                ? impulse(mSampleTimes, mSampleValues, count)
+                : leastSquares(mSampleTimes, mSampleValues, count);
+    }
+
+    private float leastSquares(float[] t, float[] x, int count) {
+        mFit.fit(t, x, count);
+        return mFit.getVelocity();
+    }
+
+    /**
+     * Sums the work each movement does on a unit mass and turns the resulting
+     * kinetic energy back into a velocity.
+     */
+    private static float impulse(float[] t, float[] x, int count) {
+        float work = 0;
+        boolean first = true;
+        for (int i = 1; i < count; i++) {
+            final float dt = t[i] - t[i - 1];
+            if (dt <= 0) {
+                continue;
+            }
+            final float previous = kineticEnergyToVelocity(work);
+            final float current = (x[i] - x[i - 1]) / dt;
+            work += (current - previous) * Math.abs(current);
+            if (first) {
+                // The first movement started from rest, only half its energy counts.
+                work *= 0.5f;
+                first = false;
+            }
+        }
+        return kineticEnergyToVelocity(work);
+    }
+
+    private static float kineticEnergyToVelocity(float work) {
+        return Math.signum(work) * (float) Math.sqrt(2 * Math.abs(work));
+    }
+}
@@ -0,0 +1,161 @@
+package com.greycellofp.droiduiscrollview;
+
+/**
+ * The geometry of a scroll view at one point in time: the padded viewport and the
+ * content scrolled inside it, along with the scroll ranges they imply.
+ *
+ * <p>Instances are immutable. The host builds one when its layout or zoom changes,
+ * so that every other path reads the same precomputed values instead of adding up
+ * sizes and paddings again. The scroll position isn't part of it, scrolling
+ * doesn't change the geometry and must not cost an instance per frame. Positions
+ * are in the host's coordinates, in pixels.</p>
+ */
+public final class Viewport {
+    /**
+     * No viewport and no content, what a host has before its first layout.
+     */
+    public static final Viewport EMPTY = new Viewport(0, 0, 0, 0, 0, 0, 0, 0);
+
+    private final int mLeft;
+    private final int mTop;
+    private final int mWidth;
+    private final int mHeight;
+
+    private final int mContentLeft;
+    private final int mContentTop;
+    private final int mContentWidth;
+    private final int mContentHeight;
+
+    private final int mScrollRangeHorizontal;
+    private final int mScrollRangeVertical;
+
+    /**
+     * @param left          The left padding, where the viewport starts.
+     * @param top           The top padding, where the viewport starts.
+     * @param width         The width of the viewport, inside the padding.
+     * @param height        The height of the viewport, inside the padding.
+     * @param contentLeft   Where the content is laid out.
+     * @param contentTop    Where the content is laid out.
+     * @param contentWidth  The width the content takes on screen.
+     * @param contentHeight The height the content takes on screen.
+     */
+    public Viewport(int left, int top, int width, int height,
+                    int contentLeft, int contentTop, int contentWidth, int contentHeight) {
+        if (width < 0 || height < 0 || contentWidth < 0 || contentHeight < 0) {
+            throw new IllegalArgumentException("Can't have a negative size");
+        }
+        mLeft = left;
+        mTop = top;
+        mWidth = width;
+        mHeight = height;
+        mContentLeft = contentLeft;
+        mContentTop = contentTop;
+        mContentWidth = contentWidth;
+        mContentHeight = contentHeight;
+        mScrollRangeHorizontal = Math.max(0, contentWidth - width);
+        mScrollRangeVertical = Math.max(0, contentHeight - height);
+    }
+
+    public int getLeft() {
+        return mLeft;
+    }
+
+    public int getTop() {
+        return mTop;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getContentLeft() {
+        return mContentLeft;
+    }
+
+    public int getContentTop() {
+        return mContentTop;
+    }
+
+    public int getContentRight() {
+        return mContentLeft + mContentWidth;
+    }
+
+    public int getContentBottom() {
+        return mContentTop + mContentHeight;
+    }
+
+    public int getContentWidth() {
+        return mContentWidth;
+    }
+
+    public int getContentHeight() {
+        return mContentHeight;
+    }
+
+    public int getScrollRangeHorizontal() {
+        return mScrollRangeHorizontal;
+    }
+
+    public int getScrollRangeVertical() {
+        return mScrollRangeVertical;
+    }
+
+    /**
+     * @return Whether the content is larger than the viewport along either axis.
+     */
+    public boolean canScroll() {
+        return mScrollRangeHorizontal > 0 || mScrollRangeVertical > 0;
+    }
+
+    /**
+     * @return The given horizontal scroll position, brought within the scroll range.
+     */
+    public int clampScrollX(int scrollX) {
+        return Math.max(0, Math.min(scrollX, mScrollRangeHorizontal));
+    }
+
+    /**
+     * @return The given vertical scroll position, brought within the scroll range.
+     */
+    public int clampScrollY(int scrollY) {
+        return Math.max(0, Math.min(scrollY, mScrollRangeVertical));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Viewport)) {
+            return false;
+        }
+        final Viewport other = (Viewport) o;
+        return mLeft == other.mLeft && mTop == other.mTop
+                && mWidth == other.mWidth && mHeight == other.mHeight
+                && mContentLeft == other.mContentLeft && mContentTop == other.mContentTop
+                && mContentWidth == other.mContentWidth && mContentHeight == other.mContentHeight;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mLeft;
+        result = 31 * result + mTop;
+        result = 31 * result + mWidth;
+        result = 31 * result + mHeight;
+        result = 31 * result + mContentLeft;
+        result = 31 * result + mContentTop;
+        result = 31 * result + mContentWidth;
+        result = 31 * result + mContentHeight;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Viewport{" + mLeft + ", " + mTop + " " + mWidth + "x" + mHeight
+                + ", content " + mContentLeft + ", " + mContentTop + " " + mContentWidth + "x" + mContentHeight + "}";
+    }
+}
@@ -0,0 +1,85 @@
+package com.greycellofp.droiduiscrollview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DurationHistogramTest {
+    private static final long MILLIS = 1000000L;
+
+    private DurationHistogram mHistogram;
+
+    @Before
+    public void setUp() {
+        mHistogram = new DurationHistogram();
+    }
+
+    @Test
+    public void emptyHistogram() {
+        assertEquals(0, mHistogram.getCount());
+        assertEquals(0, mHistogram.getMeanNanos());
+        assertEquals(0, mHistogram.getPercentileNanos(50));
+    }
+
+    @Test
+    public void bucketsDouble() {
+        for (int i = 1; i < DurationHistogram.BUCKET_COUNT - 1; i++) {
+            assertEquals(2 * DurationHistogram.getBucketUpperBoundNanos(i - 1),
+                    DurationHistogram.getBucketUpperBoundNanos(i));
+        }
+        assertEquals(Long.MAX_VALUE, DurationHistogram.getBucketUpperBoundNanos(DurationHistogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void recordsIntoBuckets() {
+        final long firstBound = DurationHistogram.getBucketUpperBoundNanos(0);
+        mHistogram.record(0);
+        mHistogram.record(firstBound - 1);
+        mHistogram.record(firstBound);
+        mHistogram.record(Long.MAX_VALUE / 2);
+        assertEquals(2, mHistogram.getBucketCount(0));
+        assertEquals(1, mHistogram.getBucketCount(1));
+        assertEquals(1, mHistogram.getBucketCount(DurationHistogram.BUCKET_COUNT - 1));
+        assertEquals(4, mHistogram.getCount());
+        assertEquals(Long.MAX_VALUE / 2, mHistogram.getMaxNanos());
+    }
+
+    @Test
+    public void meanAndTotal() {
+        mHistogram.record(2 * MILLIS);
+        mHistogram.record(4 * MILLIS);
+        assertEquals(6 * MILLIS, mHistogram.getTotalNanos());
+        assertEquals(3 * MILLIS, mHistogram.getMeanNanos());
+    }
+
+    @Test
+    public void percentileIsBucketBound() {
+        for (int i = 0; i < 99; i++) {
+            mHistogram.record(MILLIS);
+        }
+        mHistogram.record(50 * MILLIS);
+
+        final long p50 = mHistogram.getPercentileNanos(50);
+        assertTrue(p50 > MILLIS && p50 <= 2 * MILLIS);
+        assertEquals(p50, mHistogram.getPercentileNanos(99));
+        // The last bucket is capped to the longest duration seen.
+        assertEquals(50 * MILLIS, mHistogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void copyAndReset() {
+        mHistogram.record(3 * MILLIS);
+        final DurationHistogram copy = new DurationHistogram();
+        copy.record(MILLIS);
+        mHistogram.copyTo(copy);
+        assertEquals(1, copy.getCount());
+        assertEquals(3 * MILLIS, copy.getMaxNanos());
+
+        mHistogram.reset();
+        assertEquals(0, mHistogram.getCount());
+        assertEquals(0, mHistogram.getMaxNanos());
+        assertEquals(1, copy.getCount());
+    }
+}
@@ -0,0 +1,70 @@
+package com.greycellofp.droiduiscrollview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QuadraticFitTest {
+    private QuadraticFit mFit;
+
+    @Before
+    public void setUp() {
+        mFit = new QuadraticFit();
+    }
+
+    @Test
+    public void fitsAParabola() {
+        // x = 5 + 300 t + 0.5 * 2000 t^2, sampled every 8ms up to t = 0.
+        final float[] t = new float[6];
+        final float[] x = new float[6];
+        for (int i = 0; i < t.length; i++) {
+            t[i] = (i - 5) * 0.008f;
+            x[i] = 5 + 300 * t[i] + 1000 * t[i] * t[i];
+        }
+        assertTrue(mFit.fit(t, x, t.length));
+        assertEquals(300, mFit.getVelocity(), 0.5f);
+        assertEquals(2000, mFit.getAcceleration(), 5f);
+    }
+
+    @Test
+    public void closelySpacedSamplesStillFit() {
+        // 4ms apart, the raw normal equations of this are tiny.
+        final float[] t = {-0.012f, -0.008f, -0.004f, 0f};
+        final float[] x = new float[t.length];
+        for (int i = 0; i < t.length; i++) {
+            x[i] = 1000 * t[i] + 5000 * t[i] * t[i];
+        }
+        assertTrue(mFit.fit(t, x, t.length));
+        assertEquals(1000, mFit.getVelocity(), 1f);
+        assertEquals(10000, mFit.getAcceleration(), 50f);
+    }
+
+    @Test
+    public void twoSamplesFitALine() {
+        final float[] t = {-0.01f, 0f};
+        final float[] x = {0f, 5f};
+        assertTrue(mFit.fit(t, x, 2));
+        assertEquals(500, mFit.getVelocity(), 0.01f);
+        assertEquals(0, mFit.getAcceleration(), 0f);
+    }
+
+    @Test
+    public void repeatedTimesFallBackToALine() {
+        final float[] t = {-0.01f, -0.01f, 0f};
+        final float[] x = {0f, 0f, 10f};
+        assertTrue(mFit.fit(t, x, 3));
+        assertEquals(1000, mFit.getVelocity(), 0.01f);
+        assertEquals(0, mFit.getAcceleration(), 0f);
+    }
+
+    @Test
+    public void nothingToFit() {
+        assertFalse(mFit.fit(new float[]{0f}, new float[]{3f}, 1));
+        assertEquals(0, mFit.getVelocity(), 0f);
+        assertFalse(mFit.fit(new float[]{0f, 0f, 0f}, new float[]{1f, 2f, 3f}, 3));
+        assertEquals(0, mFit.getVelocity(), 0f);
+    }
+}
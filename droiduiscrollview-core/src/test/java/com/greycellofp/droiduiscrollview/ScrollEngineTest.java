@@ -0,0 +1,306 @@
+package com.greycellofp.droiduiscrollview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScrollEngineTest {
+    private static final int TOUCH_SLOP = 8;
+    private static final int FRAME_MILLIS = 16;
+
+    private ScrollEngine mEngine;
+    private RecordingCallback mCallback;
+
+    @Before
+    public void setUp() {
+        mEngine = new ScrollEngine(new SplineScrollPhysics(1f));
+        mCallback = new RecordingCallback();
+        mEngine.setCallback(mCallback);
+        mEngine.setTouchSlop(TOUCH_SLOP);
+        mEngine.setFlingVelocityRange(50, 8000);
+        mEngine.setOverScrollDistances(40, 40);
+        mEngine.setViewport(100, 100, 100, 1000);
+    }
+
+    @Test
+    public void dragStartsPastTouchSlop() {
+        assertFalse(mEngine.onTouchDown(50, 500));
+        assertEquals(ScrollEngine.STATE_IDLE, mEngine.getState());
+
+        mEngine.onTouchMove(50, 500 - TOUCH_SLOP);
+        assertEquals(ScrollEngine.STATE_IDLE, mEngine.getState());
+        assertEquals(0, mEngine.getScrollY());
+        assertEquals(0, mCallback.mScrollCount);
+
+        // The slop itself isn't scrolled, only what's past it.
+        mEngine.onTouchMove(50, 480);
+        assertTrue(mEngine.isDragging());
+        assertEquals(20 - TOUCH_SLOP, mEngine.getScrollY());
+
+        mEngine.onTouchMove(50, 470);
+        assertEquals(30 - TOUCH_SLOP, mEngine.getScrollY());
+        assertEquals(30 - TOUCH_SLOP, mCallback.mScrollY);
+    }
+
+    @Test
+    public void dragKeepsSubPixelMovement() {
+        mEngine.setScrollPosition(0, 100);
+        mEngine.onTouchDown(50, 500);
+        mEngine.onTouchMove(50, 480);
+        final int start = mEngine.getScrollY();
+        for (int i = 1; i <= 10; i++) {
+            mEngine.onTouchMove(50, 480 - i * 0.5f);
+        }
+        assertEquals(start + 5, mEngine.getScrollY());
+    }
+
+    @Test
+    public void checkTouchSlopDoesNotScroll() {
+        mEngine.onTouchDown(50, 500);
+        assertFalse(mEngine.checkTouchSlop(50, 500 - TOUCH_SLOP));
+        assertTrue(mEngine.checkTouchSlop(50, 480));
+        assertEquals(0, mEngine.getScrollY());
+
+        // The drag continues from where the slop was crossed.
+        mEngine.onTouchMove(50, 470);
+        assertEquals(10, mEngine.getScrollY());
+    }
+
+    @Test
+    public void dragOverscrollsUpToTheDistance() {
+        mEngine.onTouchDown(50, 100);
+        mEngine.onTouchMove(50, 300);
+        assertEquals(-40, mEngine.getScrollY());
+    }
+
+    @Test
+    public void dragDoesNotOverscrollWhenNever() {
+        mEngine.setOverScrollMode(ScrollEngine.OVER_SCROLL_NEVER);
+        mEngine.onTouchDown(50, 100);
+        assertTrue(mEngine.onTouchMove(50, 300));
+        assertEquals(0, mEngine.getScrollY());
+    }
+
+    @Test
+    public void releaseFlings() {
+        mEngine.setScrollPosition(0, 400);
+        drag(500, 450);
+        final int released = mEngine.getScrollY();
+
+        mEngine.onTouchUp(0, -3000, 0);
+        assertEquals(ScrollEngine.STATE_SETTLING, mEngine.getState());
+        assertTrue(mEngine.isAnimating());
+
+        runToEnd(0);
+        assertTrue(mEngine.getScrollY() > released);
+        assertTrue(mEngine.getScrollY() <= 900);
+        assertEquals(ScrollEngine.STATE_IDLE, mEngine.getState());
+        assertFalse(mEngine.isAnimating());
+    }
+
+    @Test
+    public void flingVelocityIsClamped() {
+        mEngine.setScrollPosition(0, 0);
+        mEngine.setViewport(100, 100, 100, 1000000);
+        drag(500, 450);
+        mEngine.onTouchUp(0, -8000, 0);
+        runToEnd(0);
+        final int clamped = mEngine.getScrollY();
+
+        mEngine.setScrollPosition(0, 0);
+        drag(500, 450);
+        mEngine.onTouchUp(0, -80000, 0);
+        runToEnd(0);
+        assertEquals(clamped, mEngine.getScrollY());
+    }
+
+    @Test
+    public void slowReleaseSpringsBack() {
+        mEngine.onTouchDown(50, 100);
+        mEngine.onTouchMove(50, 130);
+        assertTrue(mEngine.getScrollY() < 0);
+
+        mEngine.onTouchUp(0, 0, 0);
+        assertEquals(ScrollEngine.STATE_SETTLING, mEngine.getState());
+        runToEnd(0);
+        assertEquals(0, mEngine.getScrollY());
+        assertEquals(ScrollEngine.STATE_IDLE, mEngine.getState());
+    }
+
+    @Test
+    public void springBackInRangeDoesNothing() {
+        mEngine.setScrollPosition(0, 300);
+        assertFalse(mEngine.springBack(0));
+        assertEquals(ScrollEngine.STATE_IDLE, mEngine.getState());
+    }
+
+    @Test
+    public void flingIntoEdgeIsAbsorbed() {
+        mEngine.setScrollPosition(0, 880);
+        mEngine.fling(0, 4000, 0);
+
+        int maxScrollY = 0;
+        long time = 0;
+        while (mEngine.computeScrollOffset(time)) {
+            maxScrollY = Math.max(maxScrollY, mEngine.getScrollY());
+            time += FRAME_MILLIS;
+        }
+        assertEquals(ScrollEngine.EDGE_BOTTOM, mCallback.mAbsorbedEdge);
+        assertTrue(mCallback.mAbsorbedVelocity > 0);
+        assertTrue(maxScrollY > 900);
+        assertTrue(maxScrollY <= 940);
+        assertEquals(900, mEngine.getScrollY());
+    }
+
+    @Test
+    public void flingOutwardFromEdgeBounces() {
+        mEngine.setScrollPosition(0, 900);
+        mEngine.fling(0, 4000, 0);
+        assertTrue(mEngine.isAnimating());
+
+        int maxScrollY = 0;
+        long time = 0;
+        while (mEngine.computeScrollOffset(time)) {
+            maxScrollY = Math.max(maxScrollY, mEngine.getScrollY());
+            time += FRAME_MILLIS;
+        }
+        assertEquals(ScrollEngine.EDGE_BOTTOM, mCallback.mAbsorbedEdge);
+        assertTrue(maxScrollY > 900);
+        assertEquals(900, mEngine.getScrollY());
+    }
+
+    @Test
+    public void flingIsNotAbsorbedWhenOverScrollNever() {
+        mEngine.setOverScrollMode(ScrollEngine.OVER_SCROLL_NEVER);
+        mEngine.setScrollPosition(0, 880);
+        mEngine.fling(0, 4000, 0);
+
+        long time = 0;
+        while (mEngine.computeScrollOffset(time)) {
+            assertTrue(mEngine.getScrollY() <= 900);
+            time += FRAME_MILLIS;
+        }
+        assertEquals(0, mCallback.mAbsorbedEdge);
+        assertEquals(900, mEngine.getScrollY());
+    }
+
+    @Test
+    public void touchDownCatchesFling() {
+        mEngine.setScrollPosition(0, 400);
+        mEngine.fling(0, 3000, 0);
+        mEngine.computeScrollOffset(FRAME_MILLIS);
+
+        assertTrue(mEngine.onTouchDown(50, 500));
+        assertTrue(mEngine.isDragging());
+        mEngine.abortAnimation();
+        assertTrue(mEngine.isDragging());
+        assertFalse(mEngine.isAnimating());
+    }
+
+    @Test
+    public void smoothScrollIsClampedToRange() {
+        mEngine.setScrollPosition(0, 800);
+        mEngine.smoothScrollBy(0, 500, 0);
+        assertEquals(ScrollEngine.STATE_ANIMATING, mEngine.getState());
+        runToEnd(0);
+        assertEquals(900, mEngine.getScrollY());
+        assertEquals(ScrollEngine.STATE_IDLE, mEngine.getState());
+    }
+
+    @Test
+    public void hostAnimationReadsAsAnimating() {
+        mEngine.setHostAnimating(true);
+        assertEquals(ScrollEngine.STATE_ANIMATING, mEngine.getState());
+        assertFalse(mEngine.isAnimating());
+
+        mEngine.setHostAnimating(false);
+        assertEquals(ScrollEngine.STATE_IDLE, mEngine.getState());
+    }
+
+    @Test
+    public void hostAnimationStopsPhysics() {
+        mEngine.setScrollPosition(0, 400);
+        mEngine.fling(0, 3000, 0);
+        mEngine.setHostAnimating(true);
+        assertFalse(mEngine.isAnimating());
+        assertEquals(ScrollEngine.STATE_ANIMATING, mEngine.getState());
+    }
+
+    @Test
+    public void touchDownCatchesHostAnimation() {
+        mEngine.setHostAnimating(true);
+        assertTrue(mEngine.onTouchDown(50, 500));
+        assertTrue(mEngine.isDragging());
+
+        // The host stopping its animation doesn't end the drag.
+        mEngine.setHostAnimating(false);
+        assertTrue(mEngine.isDragging());
+
+        mEngine.cancelDrag();
+        assertEquals(ScrollEngine.STATE_IDLE, mEngine.getState());
+    }
+
+    @Test
+    public void cancelDragLeavesAnimationRunning() {
+        mEngine.setScrollPosition(0, 400);
+        mEngine.fling(0, 3000, 0);
+        mEngine.onTouchDown(50, 500);
+
+        mEngine.cancelDrag();
+        assertEquals(ScrollEngine.STATE_SETTLING, mEngine.getState());
+        assertTrue(mEngine.isAnimating());
+    }
+
+    @Test
+    public void cancelSpringsBack() {
+        mEngine.onTouchDown(50, 100);
+        mEngine.onTouchMove(50, 130);
+        mEngine.onTouchCancel(0);
+        runToEnd(0);
+        assertEquals(0, mEngine.getScrollY());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullPhysicsIsRejected() {
+        mEngine.setPhysics(null);
+    }
+
+    private void drag(float fromY, float toY) {
+        mEngine.onTouchDown(50, fromY);
+        mEngine.onTouchMove(50, toY);
+    }
+
+    private void runToEnd(long startMillis) {
+        long time = startMillis;
+        while (mEngine.computeScrollOffset(time)) {
+            time += FRAME_MILLIS;
+            if (time - startMillis > 10000) {
+                throw new AssertionError("Animation didn't finish");
+            }
+        }
+    }
+
+    private static class RecordingCallback implements ScrollEngine.Callback {
+        int mScrollCount;
+        int mScrollX;
+        int mScrollY;
+        int mAbsorbedEdge;
+        int mAbsorbedVelocity;
+
+        @Override
+        public void scrollTo(int scrollX, int scrollY) {
+            mScrollCount++;
+            mScrollX = scrollX;
+            mScrollY = scrollY;
+        }
+
+        @Override
+        public void onEdgeAbsorb(int edge, int velocity) {
+            mAbsorbedEdge = edge;
+            mAbsorbedVelocity = velocity;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.greycellofp.droiduiscrollview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SpatialIndexTest {
+    private SpatialIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mIndex = new SpatialIndex();
+    }
+
+    @Test
+    public void idsFollowInsertionOrder() {
+        assertEquals(0, mIndex.add(0, 0, 10, 10));
+        assertEquals(1, mIndex.add(20, 30, 40, 50));
+        assertEquals(2, mIndex.size());
+        assertEquals(20, mIndex.getLeft(1));
+        assertEquals(30, mIndex.getTop(1));
+        assertEquals(40, mIndex.getRight(1));
+        assertEquals(50, mIndex.getBottom(1));
+    }
+
+    @Test
+    public void emptyIndexFindsNothing() {
+        mIndex.build();
+        assertEquals(0, mIndex.query(-1000, -1000, 1000, 1000));
+    }
+
+    @Test
+    public void unbuiltIndexFindsNothing() {
+        mIndex.add(0, 0, 10, 10);
+        assertEquals(0, mIndex.query(0, 0, 10, 10));
+    }
+
+    @Test
+    public void touchingEdgesDoNotOverlap() {
+        mIndex.add(0, 0, 100, 100);
+        mIndex.build();
+        assertEquals(0, mIndex.query(100, 0, 200, 100));
+        assertEquals(0, mIndex.query(0, -50, 100, 0));
+        assertEquals(1, mIndex.query(99, 99, 200, 200));
+    }
+
+    @Test
+    public void emptyQueryFindsNothing() {
+        mIndex.add(0, 0, 100, 100);
+        mIndex.build();
+        assertEquals(0, mIndex.query(50, 50, 50, 60));
+    }
+
+    @Test
+    public void spanningRectangleIsReportedOnce() {
+        for (int i = 0; i < 10; i++) {
+            mIndex.add(i * 20, 0, i * 20 + 20, 20);
+        }
+        final int wide = mIndex.add(0, 0, 200, 20);
+        mIndex.build();
+        mIndex.query(0, 0, 200, 20);
+        assertEquals(11, mIndex.getResultCount());
+        int seen = 0;
+        for (int i = 0; i < mIndex.getResultCount(); i++) {
+            if (mIndex.getResult(i) == wide) {
+                seen++;
+            }
+        }
+        assertEquals(1, seen);
+    }
+
+    @Test
+    public void matchesBruteForce() {
+        final Random random = new Random(42);
+        final int count = 500;
+        for (int i = 0; i < count; i++) {
+            final int left = random.nextInt(10000) - 5000;
+            final int top = random.nextInt(10000) - 5000;
+            mIndex.add(left, top, left + 1 + random.nextInt(300), top + 1 + random.nextInt(300));
+        }
+        mIndex.build();
+
+        for (int q = 0; q < 200; q++) {
+            final int left = random.nextInt(12000) - 6000;
+            final int top = random.nextInt(12000) - 6000;
+            final int right = left + random.nextInt(2000);
+            final int bottom = top + random.nextInt(2000);
+            assertArrayEquals(bruteForce(left, top, right, bottom), results(left, top, right, bottom));
+        }
+    }
+
+    @Test
+    public void farApartRectanglesDoNotOverflow() {
+        mIndex.add(Integer.MIN_VALUE / 2, Integer.MIN_VALUE / 2, Integer.MIN_VALUE / 2 + 10, Integer.MIN_VALUE / 2 + 10);
+        mIndex.add(Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2 + 10, Integer.MAX_VALUE / 2 + 10);
+        mIndex.build();
+        assertEquals(1, mIndex.query(Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2,
+                Integer.MAX_VALUE / 2 + 1, Integer.MAX_VALUE / 2 + 1));
+        assertEquals(1, mIndex.getResult(0));
+    }
+
+    @Test
+    public void rebuildAfterClear() {
+        mIndex.add(0, 0, 10, 10);
+        mIndex.build();
+        mIndex.clear();
+        assertEquals(0, mIndex.size());
+        assertEquals(0, mIndex.query(0, 0, 10, 10));
+
+        assertEquals(0, mIndex.add(100, 100, 110, 110));
+        mIndex.build();
+        assertEquals(0, mIndex.query(0, 0, 10, 10));
+        assertEquals(1, mIndex.query(100, 100, 110, 110));
+    }
+
+    private int[] results(int left, int top, int right, int bottom) {
+        final int[] found = new int[mIndex.query(left, top, right, bottom)];
+        for (int i = 0; i < found.length; i++) {
+            found[i] = mIndex.getResult(i);
+        }
+        Arrays.sort(found);
+        return found;
+    }
+
+    private int[] bruteForce(int left, int top, int right, int bottom) {
+        int[] found = new int[mIndex.size()];
+        int count = 0;
+        for (int id = 0; id < mIndex.size(); id++) {
+            if (left < mIndex.getRight(id) && mIndex.getLeft(id) < right
+                    && top < mIndex.getBottom(id) && mIndex.getTop(id) < bottom) {
+                found[count++] = id;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+}
@@ -0,0 +1,142 @@
+package com.greycellofp.droiduiscrollview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SplineScrollPhysicsTest {
+    private static final int FRAME_MILLIS = 16;
+
+    private SplineScrollPhysics mPhysics;
+
+    @Before
+    public void setUp() {
+        mPhysics = new SplineScrollPhysics(2f);
+    }
+
+    @Test
+    public void finishedUntilStarted() {
+        assertTrue(mPhysics.isFinished());
+        assertFalse(mPhysics.computeScrollOffset(0));
+    }
+
+    @Test
+    public void startScrollReachesTarget() {
+        mPhysics.startScroll(10, 20, 100, -20, 250, 1000);
+        assertFalse(mPhysics.isFinished());
+        assertEquals(110, mPhysics.getFinalX());
+        assertEquals(0, mPhysics.getFinalY());
+
+        mPhysics.computeScrollOffset(1125);
+        assertTrue(mPhysics.getCurrX() > 10 && mPhysics.getCurrX() < 110);
+
+        mPhysics.computeScrollOffset(1250);
+        assertEquals(110, mPhysics.getCurrX());
+        assertEquals(0, mPhysics.getCurrY());
+        assertTrue(mPhysics.isFinished());
+    }
+
+    @Test
+    public void flingDeceleratesMonotonically() {
+        mPhysics.fling(0, 0, 0, 4000, 0, 0, 0, 100000, 0, 0, 0);
+        final int finalY = mPhysics.getFinalY();
+        assertTrue(finalY > 0);
+
+        int previous = 0;
+        int previousStep = Integer.MAX_VALUE;
+        long time = FRAME_MILLIS;
+        while (mPhysics.computeScrollOffset(time)) {
+            final int step = mPhysics.getCurrY() - previous;
+            assertTrue(step >= 0);
+            // Allow a pixel of rounding between frames.
+            assertTrue(step - 1 <= previousStep);
+            previous = mPhysics.getCurrY();
+            previousStep = step;
+            time += FRAME_MILLIS;
+        }
+        assertEquals(finalY, mPhysics.getCurrY());
+    }
+
+    @Test
+    public void frictionShortensFlings() {
+        mPhysics.fling(0, 0, 0, 4000, 0, 0, 0, 100000, 0, 0, 0);
+        final int distance = mPhysics.getFinalY();
+        mPhysics.setFriction(0.03f);
+        mPhysics.fling(0, 0, 0, 4000, 0, 0, 0, 100000, 0, 0, 0);
+        assertTrue(mPhysics.getFinalY() < distance);
+    }
+
+    @Test
+    public void flingIsCutAtTheEdgeAndOverflings() {
+        mPhysics.fling(0, 0, 0, 4000, 0, 0, 0, 50, 0, 30, 0);
+        assertEquals(50, mPhysics.getFinalY());
+
+        int max = 0;
+        long time = 0;
+        while (mPhysics.computeScrollOffset(time)) {
+            max = Math.max(max, mPhysics.getCurrY());
+            time += FRAME_MILLIS;
+        }
+        assertTrue(max > 50);
+        assertTrue(max <= 80);
+        assertEquals(50, mPhysics.getCurrY());
+    }
+
+    @Test
+    public void flingOutwardFromEdgeBounces() {
+        mPhysics.fling(0, 50, 0, 4000, 0, 0, 0, 50, 0, 30, 0);
+        assertFalse(mPhysics.isFinished());
+
+        int max = 0;
+        long time = 0;
+        while (mPhysics.computeScrollOffset(time)) {
+            max = Math.max(max, mPhysics.getCurrY());
+            time += FRAME_MILLIS;
+        }
+        assertTrue(max > 50);
+        assertTrue(max <= 80);
+        assertEquals(50, mPhysics.getCurrY());
+    }
+
+    @Test
+    public void flingOutwardFromEdgeWithoutOverflingStops() {
+        mPhysics.fling(0, 50, 0, 4000, 0, 0, 0, 50, 0, 0, 0);
+        assertTrue(mPhysics.isFinished());
+        assertEquals(50, mPhysics.getCurrY());
+    }
+
+    @Test
+    public void springBackSettlesWithoutOscillating() {
+        assertTrue(mPhysics.springBack(0, -60, 0, 0, 0, 100, 0));
+        int previous = -60;
+        long time = 0;
+        while (mPhysics.computeScrollOffset(time)) {
+            assertTrue(mPhysics.getCurrY() >= previous);
+            assertTrue(mPhysics.getCurrY() <= 0);
+            previous = mPhysics.getCurrY();
+            time += FRAME_MILLIS;
+        }
+        assertEquals(0, mPhysics.getCurrY());
+        assertTrue(time < 1000);
+    }
+
+    @Test
+    public void springBackInRangeIsANoop() {
+        assertFalse(mPhysics.springBack(10, 10, 0, 100, 0, 100, 0));
+        assertTrue(mPhysics.isFinished());
+    }
+
+    @Test
+    public void abortStopsWhereItIs() {
+        mPhysics.fling(0, 0, 0, 4000, 0, 0, 0, 100000, 0, 0, 0);
+        mPhysics.computeScrollOffset(50);
+        final int y = mPhysics.getCurrY();
+        mPhysics.abortAnimation();
+        assertTrue(mPhysics.isFinished());
+        assertEquals(y, mPhysics.getCurrY());
+        assertEquals(0, mPhysics.getCurrVelocity(), 0);
+    }
+}
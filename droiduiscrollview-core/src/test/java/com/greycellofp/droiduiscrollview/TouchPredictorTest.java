@@ -0,0 +1,102 @@
+package com.greycellofp.droiduiscrollview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TouchPredictorTest {
+    private TouchPredictor mPredictor;
+
+    @Before
+    public void setUp() {
+        mPredictor = new TouchPredictor();
+    }
+
+    @Test
+    public void needsThreeSamples() {
+        mPredictor.addSample(0, 0, 0);
+        mPredictor.addSample(8, 8, 0);
+        assertFalse(mPredictor.predict());
+        assertEquals(0, mPredictor.getOffsetX(), 0);
+    }
+
+    @Test
+    public void constantVelocityIsExtrapolated() {
+        for (int i = 0; i < 5; i++) {
+            // 1000px/s along x, 16ms ahead is 16px.
+            mPredictor.addSample(i * 8, i * 8f, 100);
+        }
+        assertTrue(mPredictor.predict());
+        assertEquals(16, mPredictor.getOffsetX(), 0.1f);
+        assertEquals(0, mPredictor.getOffsetY(), 0.1f);
+    }
+
+    @Test
+    public void offsetIsCapped() {
+        mPredictor.setMaxDistance(5);
+        for (int i = 0; i < 5; i++) {
+            mPredictor.addSample(i * 8, i * 8f, i * 8f);
+        }
+        assertTrue(mPredictor.predict());
+        final float distance = (float) Math.hypot(mPredictor.getOffsetX(), mPredictor.getOffsetY());
+        assertEquals(5, distance, 0.01f);
+        assertEquals(mPredictor.getOffsetX(), mPredictor.getOffsetY(), 0.01f);
+    }
+
+    @Test
+    public void deceleratingPointerStopsRatherThanTurnsBack() {
+        // Moving at 500px/s and decelerating at 50000px/s^2, stops within 10ms.
+        for (int i = -4; i <= 0; i++) {
+            final float t = i * 0.004f;
+            mPredictor.addSample(100 + i * 4, 500 * t - 25000 * t * t, 0);
+        }
+        assertTrue(mPredictor.predict());
+        assertTrue(mPredictor.getOffsetX() > 0);
+        assertEquals(2.5f, mPredictor.getOffsetX(), 0.2f);
+    }
+
+    @Test
+    public void slowPointerIsNotPredicted() {
+        for (int i = 0; i < 5; i++) {
+            mPredictor.addSample(i * 8, i * 0.2f, 0);
+        }
+        assertFalse(mPredictor.predict());
+    }
+
+    @Test
+    public void pauseForgetsEarlierMovement() {
+        for (int i = 0; i < 5; i++) {
+            mPredictor.addSample(i * 8, i * 8f, 0);
+        }
+        mPredictor.addSample(200, 40, 0);
+        assertFalse(mPredictor.predict());
+    }
+
+    @Test
+    public void zeroPredictionTimePredictsNothing() {
+        mPredictor.setPredictionMillis(0);
+        for (int i = 0; i < 5; i++) {
+            mPredictor.addSample(i * 8, i * 8f, 0);
+        }
+        assertFalse(mPredictor.predict());
+    }
+
+    @Test
+    public void resetClearsTheOffset() {
+        for (int i = 0; i < 5; i++) {
+            mPredictor.addSample(i * 8, i * 8f, 0);
+        }
+        mPredictor.predict();
+        mPredictor.reset();
+        assertEquals(0, mPredictor.getOffsetX(), 0);
+        assertFalse(mPredictor.predict());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeDistanceIsRejected() {
+        mPredictor.setMaxDistance(-1);
+    }
+}
@@ -0,0 +1,74 @@
+package com.greycellofp.droiduiscrollview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TouchResamplerTest {
+    private TouchResampler mResampler;
+
+    @Before
+    public void setUp() {
+        mResampler = new TouchResampler();
+    }
+
+    @Test
+    public void singleSampleIsNotResampled() {
+        mResampler.addSample(100, 10, 20);
+        assertFalse(mResampler.resample(116));
+        assertEquals(10, mResampler.getX(), 0);
+        assertEquals(20, mResampler.getY(), 0);
+    }
+
+    @Test
+    public void interpolatesBehindTheFrame() {
+        mResampler.addSample(100, 0, 0);
+        mResampler.addSample(110, 100, 50);
+        // Sampled at 110 - 5 + 10 = 105, halfway between the samples.
+        assertTrue(mResampler.resample(110));
+        assertEquals(50, mResampler.getX(), 0.01f);
+        assertEquals(25, mResampler.getY(), 0.01f);
+    }
+
+    @Test
+    public void extrapolationIsBounded() {
+        mResampler.addSample(100, 0, 0);
+        mResampler.addSample(110, 100, 0);
+        // Far ahead of the latest sample, predicted at most half an interval.
+        assertTrue(mResampler.resample(200));
+        assertEquals(150, mResampler.getX(), 0.01f);
+    }
+
+    @Test
+    public void neverBeforeThePreviousSample() {
+        mResampler.addSample(100, 0, 0);
+        mResampler.addSample(110, 100, 0);
+        assertTrue(mResampler.resample(50));
+        assertEquals(0, mResampler.getX(), 0);
+    }
+
+    @Test
+    public void staleOrNoisySamplesAreNotResampled() {
+        mResampler.addSample(100, 0, 0);
+        mResampler.addSample(150, 100, 0);
+        assertFalse(mResampler.resample(150));
+        assertEquals(100, mResampler.getX(), 0);
+
+        mResampler.reset();
+        mResampler.addSample(100, 0, 0);
+        mResampler.addSample(101, 100, 0);
+        assertFalse(mResampler.resample(101));
+    }
+
+    @Test
+    public void sampleAtSameTimeSupersedes() {
+        mResampler.addSample(100, 0, 0);
+        mResampler.addSample(110, 100, 0);
+        mResampler.addSample(110, 120, 0);
+        assertTrue(mResampler.resample(110));
+        assertEquals(60, mResampler.getX(), 0.01f);
+    }
+}
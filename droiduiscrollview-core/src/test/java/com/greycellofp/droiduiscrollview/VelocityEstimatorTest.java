@@ -0,0 +1,82 @@
+package com.greycellofp.droiduiscrollview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class VelocityEstimatorTest {
+    private static final float MAX_VELOCITY = 100000f;
+
+    @Test
+    public void constantVelocity() {
+        for (int strategy : new int[]{VelocityEstimator.STRATEGY_LSQ2, VelocityEstimator.STRATEGY_IMPULSE}) {
+            final VelocityEstimator estimator = new VelocityEstimator(strategy);
+            for (int i = 0; i <= 10; i++) {
+                // 1000px/s along x, -500px/s along y.
+                estimator.addSample(0, i * 8, i * 8f, 400 - i * 4f);
+            }
+            estimator.computeVelocity(0, MAX_VELOCITY);
+            assertEquals(1000, estimator.getXVelocity(), 20);
+            assertEquals(-500, estimator.getYVelocity(), 20);
+        }
+    }
+
+    @Test
+    public void velocityIsClamped() {
+        final VelocityEstimator estimator = new VelocityEstimator();
+        for (int i = 0; i <= 5; i++) {
+            estimator.addSample(0, i * 8, i * 80f, 0);
+        }
+        estimator.computeVelocity(0, 2000);
+        assertEquals(2000, estimator.getXVelocity(), 0);
+    }
+
+    @Test
+    public void pauseForgetsEarlierMovement() {
+        final VelocityEstimator estimator = new VelocityEstimator();
+        for (int i = 0; i <= 5; i++) {
+            estimator.addSample(0, i * 8, i * 40f, 0);
+        }
+        // Stopped for a while, then a single sample: no velocity left.
+        estimator.addSample(0, 200, 200, 0);
+        estimator.computeVelocity(0, MAX_VELOCITY);
+        assertEquals(0, estimator.getXVelocity(), 0);
+    }
+
+    @Test
+    public void pointersAreTrackedSeparately() {
+        final VelocityEstimator estimator = new VelocityEstimator();
+        for (int i = 0; i <= 5; i++) {
+            estimator.addSample(0, i * 8, i * 8f, 0);
+            estimator.addSample(3, i * 8, 0, i * 16f);
+        }
+        estimator.clearPointer(0);
+        estimator.computeVelocity(0, MAX_VELOCITY);
+        assertEquals(0, estimator.getXVelocity(), 0);
+        estimator.computeVelocity(3, MAX_VELOCITY);
+        assertEquals(2000, estimator.getYVelocity(), 20);
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        final VelocityEstimator estimator = new VelocityEstimator();
+        for (int i = 0; i <= 5; i++) {
+            estimator.addSample(1, i * 8, i * 8f, 0);
+        }
+        estimator.computeVelocity(1, MAX_VELOCITY);
+        estimator.clear();
+        assertEquals(0, estimator.getXVelocity(), 0);
+        estimator.computeVelocity(1, MAX_VELOCITY);
+        assertEquals(0, estimator.getXVelocity(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownStrategyIsRejected() {
+        new VelocityEstimator(42);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPointerIdIsRejected() {
+        new VelocityEstimator().addSample(VelocityEstimator.MAX_POINTER_ID + 1, 0, 0, 0);
+    }
+}
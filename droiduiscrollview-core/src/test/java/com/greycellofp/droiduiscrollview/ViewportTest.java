@@ -0,0 +1,47 @@
+package com.greycellofp.droiduiscrollview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ViewportTest {
+    private final Viewport mViewport = new Viewport(10, 20, 100, 200, 10, 20, 300, 150);
+
+    @Test
+    public void scrollRangesComeFromTheSizes() {
+        assertEquals(200, mViewport.getScrollRangeHorizontal());
+        assertEquals(0, mViewport.getScrollRangeVertical());
+        assertTrue(mViewport.canScroll());
+        assertFalse(Viewport.EMPTY.canScroll());
+    }
+
+    @Test
+    public void contentEdges() {
+        assertEquals(310, mViewport.getContentRight());
+        assertEquals(170, mViewport.getContentBottom());
+    }
+
+    @Test
+    public void clampsToScrollRange() {
+        assertEquals(0, mViewport.clampScrollX(-5));
+        assertEquals(150, mViewport.clampScrollX(150));
+        assertEquals(200, mViewport.clampScrollX(500));
+        assertEquals(0, mViewport.clampScrollY(50));
+    }
+
+    @Test
+    public void equality() {
+        final Viewport same = new Viewport(10, 20, 100, 200, 10, 20, 300, 150);
+        assertEquals(mViewport, same);
+        assertEquals(mViewport.hashCode(), same.hashCode());
+        assertNotEquals(mViewport, new Viewport(10, 20, 100, 200, 10, 20, 300, 151));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeSizeIsRejected() {
+        new Viewport(0, 0, -1, 0, 0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,412 @@
+package com.greycellofp.droiduiscrollview;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.Arrays;
+
+/**
+ * Content for a {@link DroidUIScrollView} made of many absolutely positioned
+ * children. Only the children near the scroll view's viewport are drawn, the
+ * others are culled using a {@link SpatialIndex} rebuilt on every layout.
+ *
+ * <p>The same index routes touches: a gesture goes straight to the topmost
+ * child under the pointer that takes its ACTION_DOWN, instead of testing every
+ * child in turn. The child then receives the whole gesture, further pointers
+ * included, unless this layout intercepts it.</p>
+ *
+ * <p>Culling and hit-testing go by the laid out bounds of the children, a child
+ * that is translated or scaled outside of them may be culled while partly
+ * visible and misses touches outside its laid out bounds.</p>
+ */
+public class CanvasLayout extends ViewGroup implements ViewportAware, LevelOfDetailAware {
+    private final SpatialIndex mIndex = new SpatialIndex();
+
+    private boolean mCullingEnabled = true;
+
+    /*
+     * The viewport as last reported, empty until the first report.
+     */
+    private int mViewportLeft;
+    private int mViewportTop;
+    private int mViewportRight;
+    private int mViewportBottom;
+
+    /*
+     * The region covered by the last draw. Scrolling within it doesn't need a redraw,
+     * the recorded drawing already has everything that can come into view.
+     */
+    private int mDrawnLeft;
+    private int mDrawnTop;
+    private int mDrawnRight;
+    private int mDrawnBottom;
+
+    private int[] mDrawOrder = new int[16];
+
+    private boolean mHitTestIndexEnabled = true;
+    private View mTouchTarget;
+    private boolean mRoutingGesture;
+    private boolean mInterceptedGesture;
+    private boolean mDisallowIntercept;
+    private int mLastDrawnChildCount;
+    private int mLastCulledChildCount;
+    private long mTotalCulledChildCount;
+
+    public CanvasLayout(Context context) {
+        super(context);
+    }
+
+    public CanvasLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public CanvasLayout(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    /**
+     * @return Whether children outside the viewport are skipped when drawing.
+     */
+    public boolean isCullingEnabled() {
+        return mCullingEnabled;
+    }
+
+    public void setCullingEnabled(boolean cullingEnabled) {
+        if (cullingEnabled != mCullingEnabled) {
+            mCullingEnabled = cullingEnabled;
+            invalidate();
+        }
+    }
+
+    /**
+     * @return Whether touches are routed with the spatial index.
+     */
+    public boolean isHitTestIndexEnabled() {
+        return mHitTestIndexEnabled;
+    }
+
+    /**
+     * Set whether touches are routed with the spatial index, or with the default
+     * ViewGroup dispatch which tests every child. Takes effect with the next gesture.
+     */
+    public void setHitTestIndexEnabled(boolean hitTestIndexEnabled) {
+        mHitTestIndexEnabled = hitTestIndexEnabled;
+    }
+
+    /**
+     * @return The topmost visible child whose bounds contain the given point, in this
+     *   view's coordinates, or null.
+     */
+    public View findChildAt(int x, int y) {
+        final int found = queryChildrenAt(x, y);
+        for (int i = found - 1; i >= 0; i--) {
+            final View child = getChildAt(mDrawOrder[i]);
+            if (child.getVisibility() == VISIBLE) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collects the children containing the point into mDrawOrder, in child order.
+     *
+     * @return The number of children found.
+     */
+    private int queryChildrenAt(int x, int y) {
+        final int px = x + getScrollX();
+        final int py = y + getScrollY();
+        final int found = mIndex.query(px, py, px + 1, py + 1);
+        if (mDrawOrder.length < found) {
+            mDrawOrder = new int[Math.max(found, mDrawOrder.length * 2)];
+        }
+        for (int i = 0; i < found; i++) {
+            mDrawOrder[i] = mIndex.getResult(i);
+        }
+        Arrays.sort(mDrawOrder, 0, found);
+        return found;
+    }
+
+    private boolean isIndexCurrent() {
+        // Children added or removed since the last layout aren't indexed yet.
+        return !isLayoutRequested() && mIndex.size() == getChildCount();
+    }
+
+    @Override
+    public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+        mDisallowIntercept = disallowIntercept;
+        super.requestDisallowInterceptTouchEvent(disallowIntercept);
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        final int action = ev.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            if (mTouchTarget != null) {
+                cancelTouchTarget(ev);
+            }
+            mRoutingGesture = mHitTestIndexEnabled && isIndexCurrent();
+            mInterceptedGesture = false;
+            mDisallowIntercept = false;
+        }
+        if (!mRoutingGesture) {
+            return super.dispatchTouchEvent(ev);
+        }
+
+        boolean handled = false;
+        if (!mInterceptedGesture && !mDisallowIntercept
+                && (action == MotionEvent.ACTION_DOWN || mTouchTarget != null)
+                && onInterceptTouchEvent(ev)) {
+            mInterceptedGesture = true;
+            if (mTouchTarget != null) {
+                // Taken away from the child, which sees the gesture end here.
+                cancelTouchTarget(ev);
+                handled = true;
+            }
+        }
+
+        if (!handled) {
+            if (!mInterceptedGesture && action == MotionEvent.ACTION_DOWN) {
+                mTouchTarget = findTouchTarget(ev);
+            }
+            if (mInterceptedGesture || mTouchTarget == null) {
+                handled = onTouchEvent(ev);
+            } else {
+                handled = dispatchToTarget(ev, mTouchTarget);
+            }
+        }
+
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            mTouchTarget = null;
+            mRoutingGesture = false;
+            mDisallowIntercept = false;
+        }
+        return handled;
+    }
+
+    /**
+     * Offers the ACTION_DOWN to the children under it, topmost first.
+     *
+     * @return The child that took it, or null.
+     */
+    private View findTouchTarget(MotionEvent ev) {
+        final int found = queryChildrenAt((int) ev.getX(), (int) ev.getY());
+        for (int i = found - 1; i >= 0; i--) {
+            final View child = getChildAt(mDrawOrder[i]);
+            if ((child.getVisibility() == VISIBLE || child.getAnimation() != null)
+                    && dispatchToTarget(ev, child)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private boolean dispatchToTarget(MotionEvent ev, View child) {
+        final float offsetX = getScrollX() - child.getLeft();
+        final float offsetY = getScrollY() - child.getTop();
+        ev.offsetLocation(offsetX, offsetY);
+        final boolean handled = child.dispatchTouchEvent(ev);
+        ev.offsetLocation(-offsetX, -offsetY);
+        return handled;
+    }
+
+    private void cancelTouchTarget(MotionEvent ev) {
+        final int action = ev.getAction();
+        ev.setAction(MotionEvent.ACTION_CANCEL);
+        dispatchToTarget(ev, mTouchTarget);
+        ev.setAction(action);
+        mTouchTarget = null;
+    }
+
+    /**
+     * @return The number of children drawn by the last draw.
+     */
+    public int getLastDrawnChildCount() {
+        return mLastDrawnChildCount;
+    }
+
+    /**
+     * @return The number of children skipped by the last draw.
+     */
+    public int getLastCulledChildCount() {
+        return mLastCulledChildCount;
+    }
+
+    /**
+     * @return The number of children skipped by every draw so far.
+     */
+    public long getTotalCulledChildCount() {
+        return mTotalCulledChildCount;
+    }
+
+    @Override
+    public void onViewportChanged(int left, int top, int right, int bottom) {
+        mViewportLeft = left;
+        mViewportTop = top;
+        mViewportRight = right;
+        mViewportBottom = bottom;
+        if (mCullingEnabled && (left < mDrawnLeft || top < mDrawnTop
+                || right > mDrawnRight || bottom > mDrawnBottom)) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Passes the level of detail on to the children that implement
+     * {@link LevelOfDetailAware}.
+     */
+    @Override
+    public void onLevelOfDetailChanged(int level) {
+        final int count = getChildCount();
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+            if (child instanceof LevelOfDetailAware) {
+                ((LevelOfDetailAware) child).onLevelOfDetailChanged(level);
+            }
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int maxRight = 0;
+        int maxBottom = 0;
+        final int count = getChildCount();
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+            measureChild(child, widthMeasureSpec, heightMeasureSpec);
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            maxRight = Math.max(maxRight, lp.x + child.getMeasuredWidth());
+            maxBottom = Math.max(maxBottom, lp.y + child.getMeasuredHeight());
+        }
+        maxRight += getPaddingLeft() + getPaddingRight();
+        maxBottom += getPaddingTop() + getPaddingBottom();
+        maxRight = Math.max(maxRight, getSuggestedMinimumWidth());
+        maxBottom = Math.max(maxBottom, getSuggestedMinimumHeight());
+        setMeasuredDimension(resolveSize(maxRight, widthMeasureSpec),
+                resolveSize(maxBottom, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        mIndex.clear();
+        final int count = getChildCount();
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            final int left = getPaddingLeft() + lp.x;
+            final int top = getPaddingTop() + lp.y;
+            if (child.getVisibility() != GONE) {
+                child.layout(left, top, left + child.getMeasuredWidth(), top + child.getMeasuredHeight());
+            }
+            // Ids follow the child order, the draw order is recovered by sorting them.
+            mIndex.add(child.getLeft(), child.getTop(), child.getRight(), child.getBottom());
+        }
+        mIndex.build();
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        final int childCount = getChildCount();
+        if (!mCullingEnabled || !isIndexCurrent()
+                || mViewportRight <= mViewportLeft || mViewportBottom <= mViewportTop) {
+            mLastDrawnChildCount = childCount;
+            mLastCulledChildCount = 0;
+            mDrawnLeft = Integer.MIN_VALUE;
+            mDrawnTop = Integer.MIN_VALUE;
+            mDrawnRight = Integer.MAX_VALUE;
+            mDrawnBottom = Integer.MAX_VALUE;
+            super.dispatchDraw(canvas);
+            return;
+        }
+
+        // Draw half a viewport beyond each edge, so that short scrolls can reuse
+        // the recorded drawing.
+        final int marginX = (mViewportRight - mViewportLeft) / 2;
+        final int marginY = (mViewportBottom - mViewportTop) / 2;
+        mDrawnLeft = mViewportLeft - marginX;
+        mDrawnTop = mViewportTop - marginY;
+        mDrawnRight = mViewportRight + marginX;
+        mDrawnBottom = mViewportBottom + marginY;
+
+        final int found = mIndex.query(mDrawnLeft, mDrawnTop, mDrawnRight, mDrawnBottom);
+        if (mDrawOrder.length < found) {
+            mDrawOrder = new int[Math.max(found, mDrawOrder.length * 2)];
+        }
+        for (int i = 0; i < found; i++) {
+            mDrawOrder[i] = mIndex.getResult(i);
+        }
+        Arrays.sort(mDrawOrder, 0, found);
+
+        final long drawingTime = getDrawingTime();
+        int drawn = 0;
+        for (int i = 0; i < found; i++) {
+            final View child = getChildAt(mDrawOrder[i]);
+            if (child.getVisibility() == VISIBLE || child.getAnimation() != null) {
+                drawChild(canvas, child, drawingTime);
+                drawn++;
+            }
+        }
+        mLastDrawnChildCount = drawn;
+        mLastCulledChildCount = childCount - found;
+        mTotalCulledChildCount += mLastCulledChildCount;
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof LayoutParams;
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT, 0, 0);
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new LayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected ViewGroup.LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+        return new LayoutParams(p);
+    }
+
+    @Override
+    public boolean shouldDelayChildPressedState() {
+        return false;
+    }
+
+    /**
+     * Positions a child of a CanvasLayout at x, y from the layout's padded top left.
+     */
+    public static class LayoutParams extends ViewGroup.LayoutParams {
+        public int x;
+        public int y;
+
+        public LayoutParams(int width, int height, int x, int y) {
+            super(width, height);
+            this.x = x;
+            this.y = y;
+        }
+
+        public LayoutParams(Context c, AttributeSet attrs) {
+            super(c, attrs);
+            TypedArray a = c.obtainStyledAttributes(attrs, R.styleable.CanvasLayout_Layout);
+            x = a.getDimensionPixelOffset(R.styleable.CanvasLayout_Layout_layout_canvasX, 0);
+            y = a.getDimensionPixelOffset(R.styleable.CanvasLayout_Layout_layout_canvasY, 0);
+            a.recycle();
+        }
+
+        public LayoutParams(ViewGroup.LayoutParams source) {
+            super(source);
+        }
+    }
+}
@@ -1,35 +1,43 @@
 package com.greycellofp.droiduiscrollview;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.database.DataSetObserver;
 import android.graphics.Canvas;
+import android.graphics.Point;
 import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.util.TypedValue;
+import android.view.Choreographer;
 import android.view.FocusFinder;
+import android.view.GestureDetector;
 import android.view.InputDevice;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
-import android.view.VelocityTracker;
+import android.view.ScaleGestureDetector;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewDebug;
 import android.view.ViewGroup;
 import android.view.ViewParent;
+import android.view.WindowManager;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityNodeProvider;
 import android.view.animation.AnimationUtils;
 import android.widget.EdgeEffect;
 import android.widget.FrameLayout;
-import android.widget.OverScroller;
 
-import java.util.List;
+import java.util.ArrayList;
 
 /**
  * Created by pawan.kumar1 on 19/01/15.
@@ -37,47 +45,192 @@ import java.util.List;
 public class DroidUIScrollView extends FrameLayout {
     private static final String TAG = DroidUIScrollView.class.getSimpleName();
 
-    private static final int ANIMATED_SCROLL_GAP = 250;
-
     private static final float MAX_SCROLL_FACTOR = 0.5f;
 
-    private long mLastScroll;
+    private static final int ZOOM_ANIMATION_DURATION = 250;
+    private static final float DOUBLE_TAP_ZOOM_FACTOR = 2f;
+    private static final float DEFAULT_MAX_ZOOM = 4f;
+
+    private static final int DEFAULT_LAYER_DEMOTE_DELAY = 500;
+
+    private static final float DEFAULT_MAX_TOUCH_PREDICTION_DP = 32f;
+
+    /**
+     * Holding an arrow key speeds the scroll up by one arrow jump every this many
+     * milliseconds, up to MAX_KEY_REPEAT_ACCELERATION jumps a frame.
+     */
+    private static final int KEY_REPEAT_ACCELERATION_MILLIS = 1000;
+    private static final float MAX_KEY_REPEAT_ACCELERATION = 3f;
+
+    /**
+     * How far a wheel notch scrolls when the theme doesn't say, same as the
+     * framework's default list item height.
+     */
+    private static final float DEFAULT_SCROLL_FACTOR_DP = 64f;
+
+    /**
+     * In virtual coordinates, the window of tiles is moved once the viewport comes
+     * this close to its edge, in pixels.
+     */
+    private static final int ORIGIN_REBASE_MARGIN = TileContainer.VIRTUAL_WINDOW_SIZE / 4;
+
+    /**
+     * The default layer memory cap, in screens worth of ARGB_8888 pixels.
+     */
+    private static final int DEFAULT_MAX_LAYER_SCREENS = 4;
+
+    /**
+     * Nothing is moving.
+     */
+    public static final int SCROLL_STATE_IDLE = ScrollEngine.STATE_IDLE;
+
+    /**
+     * The user is dragging the content.
+     */
+    public static final int SCROLL_STATE_DRAGGING = ScrollEngine.STATE_DRAGGING;
+
+    /**
+     * The content is flinging or springing back after a gesture.
+     */
+    public static final int SCROLL_STATE_SETTLING = ScrollEngine.STATE_SETTLING;
+
+    /**
+     * The content is moving to a position set through smoothScrollBy/smoothScrollTo.
+     */
+    public static final int SCROLL_STATE_ANIMATING = ScrollEngine.STATE_ANIMATING;
 
     private final Rect mTempRect = new Rect();
-    private OverScroller mScroller;
+    private final Rect mInvalidatedRect = new Rect();
+    private ScrollEngine mEngine;
+    private ScrollAnimator mScrollAnimator;
+    private ScrollMetrics mMetrics;
+
+    private boolean mZoomEnabled;
+    private float mZoom = 1f;
+    private float mMinZoom = 1f;
+    private float mMaxZoom = DEFAULT_MAX_ZOOM;
+    private int mLevelOfDetail;
+    private ScaleGestureDetector mScaleDetector;
+    private GestureDetector mDoubleTapDetector;
+    private float mLastFocusX;
+    private float mLastFocusY;
+
+    private boolean mZoomAnimating;
+    private long mZoomAnimationStart;
+    private float mZoomAnimationFrom;
+    private float mZoomAnimationTo;
+    private float mZoomAnimationFocusX;
+    private float mZoomAnimationFocusY;
+
+    private OnScrollChangeListener mOnScrollChangeListener;
+    private boolean mScrollChangeDispatchPosted;
+    private int mDispatchedScrollX;
+    private int mDispatchedScrollY;
+    private int mDispatchedScrollState;
+    private Prefetcher mPrefetcher;
+    private PrefetchScheduler mPrefetchScheduler;
     private EdgeEffect mEdgeGlowTop;
     private EdgeEffect mEdgeGlowBottom;
     private EdgeEffect mEdgeGlowLeft;
     private EdgeEffect mEdgeGlowRight;
 
-    private int mLastMotionX;
-    private int mLastMotionY;
-
     private boolean mIsLayoutDirty = true;
 
     private View mChildToScrollTo = null;
 
-    private boolean mIsBeingDragged = false;
+    /**
+     * Focusable descendants, in content coordinates, for the focus searches of
+     * pageScroll/fullScroll. Rebuilt lazily after layout or focusability changes.
+     */
+    private final SpatialIndex mFocusIndex = new SpatialIndex();
+    private final ArrayList<View> mFocusables = new ArrayList<View>();
+    private boolean mFocusIndexDirty = true;
+    private final ScrollMath.FocusFilter mFocusFilter = new ScrollMath.FocusFilter() {
+        @Override
+        public boolean isCandidate(int id) {
+            return isFocusCandidate(mFocusables.get(id));
+        }
+    };
+
+    /**
+     * Velocity of every pointer of the gesture, sampled while mTrackingVelocity.
+     */
+    private final VelocityEstimator mVelocityEstimator = new VelocityEstimator();
+    private boolean mTrackingVelocity;
+
+    /**
+     * Positions of the active pointer at the frame times, when enabled.
+     */
+    private final TouchResampler mTouchResampler = new TouchResampler();
+    private boolean mTouchResamplingEnabled;
+
+    /*
+     * While resampling, a drag is applied at the start of the next frame rather
+     * than as moves come in. Pending is cleared when the pointer changes, so that
+     * a frame doesn't follow a pointer whose samples were just dropped.
+     */
+    private boolean mResampledDragPending;
+    private boolean mResampledDragPosted;
+    /*
+     * A Choreographer.FrameCallback on Jelly Bean and up, kept as an Object so that
+     * this class still loads on older releases.
+     */
+    private Object mResampledDragCallback;
+    private final Runnable mResampledDragRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyResampledDrag(AnimationUtils.currentAnimationTimeMillis());
+        }
+    };
 
-    private VelocityTracker mVelocityTracker;
+    /**
+     * Extrapolates drags to the time they are shown at, when enabled.
+     */
+    private final TouchPredictor mTouchPredictor = new TouchPredictor();
+    private boolean mTouchPredictionEnabled;
+    /*
+     * How far ahead of the scroll position the content is drawn, from the touch
+     * prediction. The scroll position itself follows the real touch.
+     */
+    private int mPredictedOffsetX;
+    private int mPredictedOffsetY;
 
     @ViewDebug.ExportedProperty(category = "layout")
     private boolean mFillViewport;
 
-    private boolean mSmoothScrollingEnabled = true;
+    /**
+     * The last fillViewport measurement, reused while neither the incoming specs
+     * nor the child change.
+     */
+    private boolean mFillMeasureValid;
+    private int mFillWidthMeasureSpec;
+    private int mFillHeightMeasureSpec;
+    private int mFillPaddingWidth;
+    private int mFillPaddingHeight;
+    private int mFillMeasuredWidthAndState;
+    private int mFillMeasuredHeightAndState;
 
-    private int mTouchSlop;
-    private int mMinimumVelocity;
-    private int mMaximumVelocity;
+    private boolean mSmoothScrollingEnabled = true;
 
-    private int mOverscrollDistance;
-    private int mOverflingDistance;
+    /**
+     * Repeats of a held arrow key, waiting to be handled at the next frame.
+     */
+    private int mKeyRepeatDirection;
+    private int mPendingKeyRepeats;
+    private long mKeyRepeatHeldMillis;
+    private boolean mKeyRepeatPosted;
 
     /**
      * Used during scrolling to retrieve the new offset within the window.
      */
     private final int[] mScrollOffset = new int[2];
     private final int[] mScrollConsumed = new int[2];
+
+    /**
+     * The geometry as of the last layout or zoom change, read by everything else
+     * instead of recomputing it. The scroll position is read from the view itself.
+     */
+    private Viewport mViewport = Viewport.EMPTY;
     private int mNestedYOffset;
 
     private int mNestedXOffset;
@@ -85,6 +238,14 @@ public class DroidUIScrollView extends FrameLayout {
     protected float mVerticalScrollFactor;
     protected float mHorizontalScrollFactor;
 
+    /**
+     * Wheel and trackpad scrolling received since the last frame, in pixels,
+     * with the fraction left over from previous frames.
+     */
+    private float mPendingWheelX;
+    private float mPendingWheelY;
+    private boolean mWheelScrollPosted;
+
     /**
      * ID of the active pointer. This is used to retain consistency during
      * drags/flings if multiple pointers are used.
@@ -94,6 +255,55 @@ public class DroidUIScrollView extends FrameLayout {
     private static final int INVALID_POINTER = -1;
 
     private SavedState mSavedState;
+    private final float[] mAnchorPoint = new float[2];
+
+    /**
+     * Tiled mode: the adapter supplying the tiles and the child laying them out.
+     */
+    private TileAdapter mTileAdapter;
+    private TileContainer mTileContainer;
+    private int mTileMargin;
+
+    /**
+     * Bitmap snapshots of the content blitted while scrolling, null unless enabled.
+     */
+    private SnapshotCache mSnapshotCache;
+    private boolean mSnapshotPreparePosted;
+    private int mSnapshotScrollState = SCROLL_STATE_IDLE;
+
+    /**
+     * Layer promotion: the child given a hardware layer while scrolling, if any.
+     */
+    private boolean mLayerPromotionEnabled;
+    private int mLayerDemoteDelay = DEFAULT_LAYER_DEMOTE_DELAY;
+    private long mMaxLayerBytes = -1;
+    private View mPromotedChild;
+    private boolean mLayerDemotePosted;
+
+    /**
+     * Tiles exposed to accessibility services as virtual nodes. The provider is a
+     * TileAccessibilityNodeProvider, kept as an Object so that this class still
+     * loads before Jelly Bean.
+     */
+    private boolean mTileAccessibilityEnabled;
+    private Object mTileAccessibilityProvider;
+
+    /**
+     * Virtual coordinates: the tile container only spans a window of the grid,
+     * moved along with the viewport.
+     */
+    private boolean mVirtualCoordinatesEnabled;
+    private boolean mOriginRebasePosted;
+
+    private final DataSetObserver mTileObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            if (mTileContainer != null) {
+                mTileContainer.onDataSetChanged();
+            }
+            resetTileAccessibility();
+        }
+    };
 
     public DroidUIScrollView(Context context) {
         this(context, null);
@@ -112,6 +322,7 @@ public class DroidUIScrollView extends FrameLayout {
                 attrs, R.styleable.DroidUIScrollView, defStyleAttr, defStyleAttr);
 
         setFillViewport(a.getBoolean(R.styleable.DroidUIScrollView_fillViewport, false));
+        setTileMargin(a.getDimensionPixelSize(R.styleable.DroidUIScrollView_tileMargin, 0));
         a.recycle();
     }
 
@@ -121,95 +332,1239 @@ public class DroidUIScrollView extends FrameLayout {
     }
 
     private void initScrollView() {
-        mScroller = new OverScroller(getContext());
+        final SplineScrollPhysics physics =
+                new SplineScrollPhysics(getResources().getDisplayMetrics().density);
+        physics.setFriction(ViewConfiguration.getScrollFriction());
         setFocusable(true);
         setDescendantFocusability(FOCUS_AFTER_DESCENDANTS);
         setWillNotDraw(false);
         final ViewConfiguration configuration = ViewConfiguration.get(getContext());
-        mTouchSlop = configuration.getScaledTouchSlop();
-        mMinimumVelocity = configuration.getScaledMinimumFlingVelocity();
-        mMaximumVelocity = configuration.getScaledMaximumFlingVelocity();
-        mOverscrollDistance = configuration.getScaledOverscrollDistance();
-        mOverflingDistance = configuration.getScaledOverflingDistance();
+        mTouchPredictor.setMaxDistance(DEFAULT_MAX_TOUCH_PREDICTION_DP
+                * getResources().getDisplayMetrics().density);
+        mEngine = new ScrollEngine(physics);
+        mEngine.setTouchSlop(configuration.getScaledTouchSlop());
+        mEngine.setFlingVelocityRange(configuration.getScaledMinimumFlingVelocity(),
+                configuration.getScaledMaximumFlingVelocity());
+        mEngine.setOverScrollDistances(configuration.getScaledOverscrollDistance(),
+                configuration.getScaledOverflingDistance());
+        mEngine.setOverScrollMode(getOverScrollMode());
+        mEngine.setScrollPosition(getScrollX(), getScrollY());
+        mEngine.setCallback(mEngineCallback);
+        mPrefetchScheduler = new PrefetchScheduler(this, mPrefetchDispatcher);
+        mScrollAnimator = new ScrollAnimator(this);
+        resolveScrollFactors();
+    }
+
+    /**
+     * Applies the positions produced by the engine to this view.
+     */
+    private final ScrollEngine.Callback mEngineCallback = new ScrollEngine.Callback() {
+        @Override
+        public void scrollTo(int scrollX, int scrollY) {
+            onOverScrolled(scrollX, scrollY, false, false);
+        }
+
+        @Override
+        public void onEdgeAbsorb(int edge, int velocity) {
+            final EdgeEffect glow;
+            switch (edge) {
+                case ScrollEngine.EDGE_TOP:
+                    glow = mEdgeGlowTop;
+                    break;
+                case ScrollEngine.EDGE_BOTTOM:
+                    glow = mEdgeGlowBottom;
+                    break;
+                case ScrollEngine.EDGE_LEFT:
+                    glow = mEdgeGlowLeft;
+                    break;
+                default:
+                    glow = mEdgeGlowRight;
+                    break;
+            }
+            if (glow != null) {
+                glow.onAbsorb(velocity);
+            }
+        }
+    };
+
+    @Override
+    public void addView(View child) {
+        if (getChildCount() > 0) {
+            throw new IllegalStateException("ScrollView can host only one direct child");
+        }
+
+        super.addView(child);
+    }
+
+    @Override
+    public void addView(View child, int index) {
+        if (getChildCount() > 0) {
+            throw new IllegalStateException("ScrollView can host only one direct child");
+        }
+
+        super.addView(child, index);
+    }
+
+    @Override
+    public void addView(View child, ViewGroup.LayoutParams params) {
+        if (getChildCount() > 0) {
+            throw new IllegalStateException("ScrollView can host only one direct child");
+        }
+
+        super.addView(child, params);
+    }
+
+    @Override
+    public void addView(View child, int index, ViewGroup.LayoutParams params) {
+        if (getChildCount() > 0) {
+            throw new IllegalStateException("ScrollView can host only one direct child");
+        }
+
+        super.addView(child, index, params);
+    }
+
+    /**
+     * @return Returns true this ScrollView can be scrolled
+     */
+    private boolean canScroll() {
+        return mViewport.canScroll();
+    }
+
+    /**
+     * Indicates whether this DroidUIScrollView's content is stretched to fill the viewport.
+     *
+     * @return True if the content fills the viewport, false otherwise.
+     *
+     * @attr ref android.R.styleable#DroidUIScrollView_fillViewport
+     */
+    public boolean isFillViewport() {
+        return mFillViewport;
+    }
+
+    /**
+     * Indicates this DroidUIScrollView whether it should stretch its content to fill
+     * the viewport or not.
+     *
+     * @param fillViewport True to stretch the content to the viewport's
+     *        boundaries, false otherwise.
+     *
+     * @attr ref R.styleable#DroidUIScrollView_fillViewport
+     */
+    public void setFillViewport(boolean fillViewport) {
+        if (fillViewport != mFillViewport) {
+            mFillViewport = fillViewport;
+            requestLayout();
+        }
+    }
+
+    /**
+     * Switches this DroidUIScrollView to tiled mode. The content becomes the grid of
+     * tiles supplied by the adapter, only the tiles intersecting the viewport (grown
+     * by {@link #getTileMargin()}) are attached and the rest are recycled.
+     *
+     * @param adapter The adapter supplying the tiles, or null to leave tiled mode.
+     * @throws IllegalStateException If a child other than the tiles is present,
+     *         remove it before switching to tiled mode.
+     */
+    public void setTileAdapter(TileAdapter adapter) {
+        if (adapter != null && mTileContainer == null && getChildCount() > 0) {
+            throw new IllegalStateException("ScrollView can't show tiles while it hosts a child");
+        }
+        if (mTileAdapter != null) {
+            mTileAdapter.unregisterDataSetObserver(mTileObserver);
+        }
+        mTileAdapter = adapter;
+        resetTileAccessibility();
+
+        if (adapter == null) {
+            if (mTileContainer != null) {
+                mTileContainer.setAdapter(null);
+                removeView(mTileContainer);
+                mTileContainer = null;
+            }
+            return;
+        }
+
+        if (mTileContainer == null) {
+            mTileContainer = new TileContainer(getContext());
+            super.addView(mTileContainer, -1, new LayoutParams(LayoutParams.WRAP_CONTENT,
+                    LayoutParams.WRAP_CONTENT));
+        }
+        adapter.registerDataSetObserver(mTileObserver);
+        mTileContainer.setVirtual(mVirtualCoordinatesEnabled);
+        mTileContainer.setAdapter(adapter);
+    }
+
+    /**
+     * @return The adapter supplying the tiles, or null when not in tiled mode.
+     */
+    public TileAdapter getTileAdapter() {
+        return mTileAdapter;
+    }
+
+    /**
+     * @return The distance, in pixels, around the viewport within which tiles are kept attached.
+     */
+    public int getTileMargin() {
+        return mTileMargin;
+    }
+
+    /**
+     * Set how far, in pixels, outside the viewport tiles are attached ahead of
+     * being scrolled into view.
+     *
+     * @param tileMargin The margin around the viewport in pixels.
+     *
+     * @attr ref R.styleable#DroidUIScrollView_tileMargin
+     */
+    public void setTileMargin(int tileMargin) {
+        if (tileMargin != mTileMargin) {
+            mTileMargin = tileMargin;
+            updateVisibleTiles();
+        }
+    }
+
+    /**
+     * @return Whether tiled mode scrolls in virtual coordinates.
+     */
+    public boolean isVirtualCoordinatesEnabled() {
+        return mVirtualCoordinatesEnabled;
+    }
+
+    /**
+     * Scroll tiled mode in virtual coordinates, for grids too large for a single
+     * view to span. Only a window of about two million pixels of the grid is laid
+     * out, and it is moved along with the viewport whenever the scroll comes to rest
+     * or a drag nears its edge, so that layout and drawing only ever deal with small
+     * coordinates. The position over the whole grid is read with
+     * {@link #getVirtualScrollX()} and {@link #getVirtualScrollY()} and set with
+     * {@link #scrollToVirtual(long, long)}, while getScrollX()/getScrollY() are
+     * relative to the window. Best set before the adapter, changing it resets the
+     * window.
+     */
+    public void setVirtualCoordinatesEnabled(boolean enabled) {
+        mVirtualCoordinatesEnabled = enabled;
+        if (mTileContainer != null) {
+            mTileContainer.setVirtual(enabled);
+        }
+    }
+
+    private boolean isVirtualCoordinatesActive() {
+        return mVirtualCoordinatesEnabled && mTileContainer != null && mTileAdapter != null;
+    }
+
+    /**
+     * @return The horizontal scroll position over the whole content, the same as
+     * getScrollX() unless in virtual coordinates.
+     */
+    public long getVirtualScrollX() {
+        return getOriginScrollX() + getScrollX();
+    }
+
+    /**
+     * @return The vertical scroll position over the whole content, the same as
+     * getScrollY() unless in virtual coordinates.
+     */
+    public long getVirtualScrollY() {
+        return getOriginScrollY() + getScrollY();
+    }
+
+    /**
+     * @return How far the content scrolls horizontally, in virtual coordinates.
+     */
+    public long getVirtualScrollRangeHorizontal() {
+        if (!isVirtualCoordinatesActive()) {
+            return mViewport.getScrollRangeHorizontal();
+        }
+        final long contentWidth = Math.round(
+                mTileAdapter.getColumnCount() * (double) mTileAdapter.getTileWidth() * mZoom);
+        return Math.max(0, contentWidth - mViewport.getWidth());
+    }
+
+    /**
+     * @return How far the content scrolls vertically, in virtual coordinates.
+     */
+    public long getVirtualScrollRangeVertical() {
+        if (!isVirtualCoordinatesActive()) {
+            return mViewport.getScrollRangeVertical();
+        }
+        final long contentHeight = Math.round(
+                mTileAdapter.getRowCount() * (double) mTileAdapter.getTileHeight() * mZoom);
+        return Math.max(0, contentHeight - mViewport.getHeight());
+    }
+
+    /**
+     * Scroll to the given position over the whole content, clamped to the scroll
+     * range. Like {@link #scrollTo(int, int)} outside of virtual coordinates, in
+     * virtual coordinates it also stops any fling or animation.
+     */
+    public void scrollToVirtual(long x, long y) {
+        x = Math.max(0, Math.min(x, getVirtualScrollRangeHorizontal()));
+        y = Math.max(0, Math.min(y, getVirtualScrollRangeVertical()));
+        if (!isVirtualCoordinatesActive()) {
+            scrollTo((int) x, (int) y);
+            return;
+        }
+        // Their positions are relative to the window, which may move.
+        mEngine.abortAnimation();
+        mScrollAnimator.cancel();
+        rebaseOrigin(x, y);
+        scrollTo((int) (x - getOriginScrollX()), (int) (y - getOriginScrollY()));
+    }
+
+    /**
+     * @return Where the window of tiles starts, in virtual coordinates.
+     */
+    private long getOriginScrollX() {
+        if (!isVirtualCoordinatesActive()) {
+            return 0;
+        }
+        return Math.round(mTileContainer.getOriginColumn() * (double) mTileAdapter.getTileWidth() * mZoom);
+    }
+
+    private long getOriginScrollY() {
+        if (!isVirtualCoordinatesActive()) {
+            return 0;
+        }
+        return Math.round(mTileContainer.getOriginRow() * (double) mTileAdapter.getTileHeight() * mZoom);
+    }
+
+    /**
+     * Moves the window of tiles so that it is centered on a viewport at the given
+     * virtual position, as far as the grid allows. The scroll position is left for
+     * the caller to adjust.
+     *
+     * @return Whether the window moved.
+     */
+    private boolean rebaseOrigin(long virtualX, long virtualY) {
+        final int tileWidth = mTileAdapter.getTileWidth();
+        final int tileHeight = mTileAdapter.getTileHeight();
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            return false;
+        }
+        final int windowColumns = mTileContainer.getWindowColumnCount();
+        final int windowRows = mTileContainer.getWindowRowCount();
+        final int centerColumn = (int) ((virtualX + getWidth() / 2) / (tileWidth * (double) mZoom));
+        final int centerRow = (int) ((virtualY + getHeight() / 2) / (tileHeight * (double) mZoom));
+        final int column = Math.max(0, Math.min(centerColumn - windowColumns / 2,
+                mTileAdapter.getColumnCount() - windowColumns));
+        final int row = Math.max(0, Math.min(centerRow - windowRows / 2,
+                mTileAdapter.getRowCount() - windowRows));
+        if (column == mTileContainer.getOriginColumn() && row == mTileContainer.getOriginRow()) {
+            return false;
+        }
+        mTileContainer.setOrigin(row, column);
+        mFocusIndexDirty = true;
+        if (mSnapshotCache != null) {
+            mSnapshotCache.invalidateAll();
+        }
+        return true;
+    }
+
+    private void scheduleOriginRebase() {
+        if (mOriginRebasePosted || !isVirtualCoordinatesActive()) {
+            return;
+        }
+        mOriginRebasePosted = true;
+        post(mRebaseOrigin);
+    }
+
+    /**
+     * Moves the window of tiles once the viewport nears its edge. Not done while
+     * flinging or animating, whose positions are relative to the window, but once
+     * they come to rest; the margin is far more than a fling covers.
+     */
+    private final Runnable mRebaseOrigin = new Runnable() {
+        @Override
+        public void run() {
+            mOriginRebasePosted = false;
+            if (!isVirtualCoordinatesActive()) {
+                return;
+            }
+            final int state = mEngine.getState();
+            if (state != SCROLL_STATE_IDLE && state != SCROLL_STATE_DRAGGING) {
+                return;
+            }
+            final int scrollX = getScrollX();
+            final int scrollY = getScrollY();
+            if (scrollX >= ORIGIN_REBASE_MARGIN
+                    && mViewport.getScrollRangeHorizontal() - scrollX >= ORIGIN_REBASE_MARGIN
+                    && scrollY >= ORIGIN_REBASE_MARGIN
+                    && mViewport.getScrollRangeVertical() - scrollY >= ORIGIN_REBASE_MARGIN) {
+                return;
+            }
+            final long x = getVirtualScrollX();
+            final long y = getVirtualScrollY();
+            if (rebaseOrigin(x, y)) {
+                // Same place, new window. A drag carries on from here.
+                scrollTo((int) (x - getOriginScrollX()), (int) (y - getOriginScrollY()));
+            }
+        }
+    };
+
+    /**
+     * @return Whether the tiles are exposed to accessibility services as virtual nodes.
+     */
+    public boolean isTileAccessibilityEnabled() {
+        return mTileAccessibilityEnabled;
+    }
+
+    /**
+     * Expose the tiles of tiled mode to accessibility services as virtual nodes,
+     * built from the adapter's grid and {@link TileAdapter#getTileContentDescription}
+     * rather than from the tile views. Only the tiles within
+     * {@link #getTileMargin()} of the viewport are listed, and the attached tile
+     * views are hidden from accessibility. Touch exploration lands on the tile
+     * under the finger. Has no effect before Jelly Bean or outside tiled mode.
+     */
+    public void setTileAccessibilityEnabled(boolean enabled) {
+        mTileAccessibilityEnabled = enabled;
+        resetTileAccessibility();
+    }
+
+    private boolean isTileAccessibilityActive() {
+        return mTileAccessibilityEnabled && mTileAdapter != null && mTileContainer != null
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                // Virtual view ids are ints.
+                && (long) mTileAdapter.getRowCount() * mTileAdapter.getColumnCount() <= Integer.MAX_VALUE;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void resetTileAccessibility() {
+        if (mTileAccessibilityProvider != null) {
+            ((TileAccessibilityNodeProvider) mTileAccessibilityProvider).reset();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public AccessibilityNodeProvider getAccessibilityNodeProvider() {
+        if (!isTileAccessibilityActive()) {
+            return super.getAccessibilityNodeProvider();
+        }
+        if (mTileAccessibilityProvider == null) {
+            mTileAccessibilityProvider = new TileAccessibilityNodeProvider(this);
+        }
+        return (AccessibilityNodeProvider) mTileAccessibilityProvider;
+    }
+
+    @Override
+    public void addChildrenForAccessibility(ArrayList<View> childrenForAccessibility) {
+        if (isTileAccessibilityActive()) {
+            // The tiles are virtual nodes instead.
+            return;
+        }
+        super.addChildrenForAccessibility(childrenForAccessibility);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        if (isTileAccessibilityActive() && mTileAccessibilityProvider != null
+                && ((TileAccessibilityNodeProvider) mTileAccessibilityProvider).dispatchHoverEvent(event)) {
+            return true;
+        }
+        return super.dispatchHoverEvent(event);
+    }
+
+    /**
+     * Puts the tiles within the tile margin of the viewport into outRange, as the
+     * inclusive ranges of columns (left, right) and rows (top, bottom).
+     *
+     * @return false when there is no tile there.
+     */
+    boolean getTileWindow(Rect outRange) {
+        if (mTileContainer == null || mTileAdapter == null) {
+            return false;
+        }
+        final int tileWidth = mTileAdapter.getTileWidth();
+        final int tileHeight = mTileAdapter.getTileHeight();
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            return false;
+        }
+        final int left = (int) ((getScrollX() - mTileContainer.getLeft()) / mZoom) - mTileMargin;
+        final int top = (int) ((getScrollY() - mTileContainer.getTop()) / mZoom) - mTileMargin;
+        final int right = left + (int) Math.ceil(getWidth() / mZoom) + 2 * mTileMargin;
+        final int bottom = top + (int) Math.ceil(getHeight() / mZoom) + 2 * mTileMargin;
+        final int originColumn = mTileContainer.getOriginColumn();
+        final int originRow = mTileContainer.getOriginRow();
+        outRange.set(originColumn + Math.max(0, left / tileWidth),
+                originRow + Math.max(0, top / tileHeight),
+                originColumn + Math.min(mTileContainer.getWindowColumnCount() - 1, (right - 1) / tileWidth),
+                originRow + Math.min(mTileContainer.getWindowRowCount() - 1, (bottom - 1) / tileHeight));
+        return outRange.left <= outRange.right && outRange.top <= outRange.bottom;
+    }
+
+    /**
+     * Puts the bounds of a tile, as drawn, into outRect in this view's coordinates.
+     *
+     * @return false when not in tiled mode.
+     */
+    boolean getTileBounds(int row, int column, Rect outRect) {
+        if (mTileContainer == null || mTileAdapter == null) {
+            return false;
+        }
+        final int tileWidth = mTileAdapter.getTileWidth();
+        final int tileHeight = mTileAdapter.getTileHeight();
+        final int left = mTileContainer.getLeft() - getScrollX();
+        final int top = mTileContainer.getTop() - getScrollY();
+        // Relative to the window, which is all that's laid out in virtual mode.
+        column -= mTileContainer.getOriginColumn();
+        row -= mTileContainer.getOriginRow();
+        outRect.set(left + (int) Math.round(column * (double) tileWidth * mZoom),
+                top + (int) Math.round(row * (double) tileHeight * mZoom),
+                left + (int) Math.round((column + 1) * (double) tileWidth * mZoom),
+                top + (int) Math.round((row + 1) * (double) tileHeight * mZoom));
+        return true;
+    }
+
+    /**
+     * Puts the column and row of the tile under the given point, in this view's
+     * coordinates, into outTile's x and y.
+     *
+     * @return false when there is no tile there.
+     */
+    boolean findTileAt(float x, float y, Point outTile) {
+        if (mTileContainer == null || mTileAdapter == null) {
+            return false;
+        }
+        final int tileWidth = mTileAdapter.getTileWidth();
+        final int tileHeight = mTileAdapter.getTileHeight();
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            return false;
+        }
+        final float contentX = (x + getScrollX() - mTileContainer.getLeft()) / mZoom;
+        final float contentY = (y + getScrollY() - mTileContainer.getTop()) / mZoom;
+        if (contentX < 0 || contentY < 0) {
+            return false;
+        }
+        final int column = mTileContainer.getOriginColumn() + (int) (contentX / tileWidth);
+        final int row = mTileContainer.getOriginRow() + (int) (contentY / tileHeight);
+        if (column >= mTileAdapter.getColumnCount() || row >= mTileAdapter.getRowCount()) {
+            return false;
+        }
+        outTile.set(column, row);
+        return true;
+    }
+
+    /**
+     * Scrolls just enough to bring a tile on screen.
+     */
+    void scrollTileOnScreen(int row, int column) {
+        if (getTileBounds(row, column, mTempRect)) {
+            mTempRect.offset(getScrollX(), getScrollY());
+            scrollToChildRect(mTempRect, false);
+        }
+    }
+
+    private void updateVisibleTiles() {
+        if (mTileContainer == null) {
+            return;
+        }
+        final int left = (int) ((getScrollX() - mTileContainer.getLeft()) / mZoom) - mTileMargin;
+        final int top = (int) ((getScrollY() - mTileContainer.getTop()) / mZoom) - mTileMargin;
+        final int width = (int) Math.ceil(getWidth() / mZoom);
+        final int height = (int) Math.ceil(getHeight() / mZoom);
+        if (mTileContainer.updateVisibleTiles(left, top,
+                left + width + 2 * mTileMargin, top + height + 2 * mTileMargin)) {
+            // Tiles come and go without a layout pass.
+            mFocusIndexDirty = true;
+        }
+    }
+
+    /**
+     * Tells a {@link ViewportAware} child which part of it is on screen.
+     */
+    private void dispatchViewportChanged() {
+        if (getChildCount() == 0) {
+            return;
+        }
+        final View child = getChildAt(0);
+        if (child instanceof ViewportAware) {
+            final int left = (int) ((getScrollX() - child.getLeft()) / mZoom);
+            final int top = (int) ((getScrollY() - child.getTop()) / mZoom);
+            ((ViewportAware) child).onViewportChanged(left, top,
+                    left + (int) Math.ceil(getWidth() / mZoom), top + (int) Math.ceil(getHeight() / mZoom));
+        }
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        scheduleOriginRebase();
+        if (mEngine != null) {
+            mEngine.setScrollPosition(l, t);
+        }
+        updateVisibleTiles();
+        dispatchViewportChanged();
+        scheduleScrollChangeDispatch();
+    }
+
+    /**
+     * @return One of the SCROLL_STATE_* constants.
+     */
+    public int getScrollState() {
+        return mEngine.getState();
+    }
+
+    /**
+     * Register a callback to be invoked once per frame in which the scroll
+     * position or the scroll state changed.
+     *
+     * @param listener The callback, or null to remove the current one.
+     */
+    public void setOnScrollChangeListener(OnScrollChangeListener listener) {
+        mOnScrollChangeListener = listener;
+        if (listener != null) {
+            mDispatchedScrollX = getScrollX();
+            mDispatchedScrollY = getScrollY();
+            mDispatchedScrollState = mEngine.getState();
+        }
+    }
+
+    /**
+     * Called wherever the engine may have changed state.
+     */
+    private void onScrollStateMaybeChanged() {
+        final int state = mEngine.getState();
+        if (mMetrics != null) {
+            mMetrics.onScrollStateChanged(state);
+        }
+        if (mSnapshotCache != null && state != mSnapshotScrollState) {
+            mSnapshotScrollState = state;
+            if (state == SCROLL_STATE_IDLE) {
+                scheduleSnapshotPrepare();
+            }
+        }
+        if (state == SCROLL_STATE_IDLE) {
+            scheduleOriginRebase();
+        }
+        if (mLayerPromotionEnabled) {
+            updateLayerPromotion(state);
+        }
+        if (state != mDispatchedScrollState) {
+            scheduleScrollChangeDispatch();
+        }
+    }
+
+    /**
+     * @return Whether the child is given a hardware layer while scrolling.
+     */
+    public boolean isLayerPromotionEnabled() {
+        return mLayerPromotionEnabled;
+    }
+
+    /**
+     * Give the child a hardware layer when a drag or scroll animation starts, and
+     * take it away once the view has been idle for {@link #getLayerDemoteDelay()}.
+     * Children which already have a layer of their own, or whose layer would
+     * exceed {@link #getMaxLayerBytes()}, are left alone. Promotion is skipped
+     * while the snapshot cache is enabled, since the child isn't drawn while
+     * scrolling then.
+     */
+    public void setLayerPromotionEnabled(boolean enabled) {
+        mLayerPromotionEnabled = enabled;
+        if (enabled) {
+            updateLayerPromotion(mEngine.getState());
+        } else {
+            demoteLayer();
+        }
+    }
+
+    /**
+     * @return How long, in milliseconds, the layer is kept after scrolling stops.
+     */
+    public int getLayerDemoteDelay() {
+        return mLayerDemoteDelay;
+    }
+
+    /**
+     * Set how long, in milliseconds, the child keeps its layer after scrolling
+     * stops. Keeping it a little while makes a quick follow-up fling cheap.
+     */
+    public void setLayerDemoteDelay(int delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Can't have a negative layer demote delay");
+        }
+        mLayerDemoteDelay = delay;
+    }
+
+    /**
+     * @return The largest layer, in bytes, the child is promoted to.
+     */
+    public long getMaxLayerBytes() {
+        if (mMaxLayerBytes < 0) {
+            final DisplayMetrics metrics = getResources().getDisplayMetrics();
+            return (long) metrics.widthPixels * metrics.heightPixels * 4 * DEFAULT_MAX_LAYER_SCREENS;
+        }
+        return mMaxLayerBytes;
+    }
+
+    /**
+     * Cap the memory of the layer the child is promoted to, counting 4 bytes per
+     * pixel. Larger children are drawn without a layer. Defaults to four screens.
+     */
+    public void setMaxLayerBytes(long maxLayerBytes) {
+        mMaxLayerBytes = maxLayerBytes;
+    }
+
+    private void updateLayerPromotion(int state) {
+        if (state == SCROLL_STATE_IDLE) {
+            if (mPromotedChild != null && !mLayerDemotePosted) {
+                mLayerDemotePosted = true;
+                postDelayed(mDemoteLayer, mLayerDemoteDelay);
+            }
+            return;
+        }
+        if (mLayerDemotePosted) {
+            removeCallbacks(mDemoteLayer);
+            mLayerDemotePosted = false;
+        }
+        if (mPromotedChild != null || mSnapshotCache != null || getChildCount() == 0
+                || !isHardwareAccelerated()) {
+            return;
+        }
+        final View child = getChildAt(0);
+        if (child.getLayerType() != LAYER_TYPE_NONE
+                || (long) child.getWidth() * child.getHeight() * 4 > getMaxLayerBytes()) {
+            return;
+        }
+        child.setLayerType(LAYER_TYPE_HARDWARE, null);
+        mPromotedChild = child;
+    }
+
+    private void demoteLayer() {
+        if (mLayerDemotePosted) {
+            removeCallbacks(mDemoteLayer);
+            mLayerDemotePosted = false;
+        }
+        if (mPromotedChild != null) {
+            // Only undo our own promotion.
+            if (mPromotedChild.getLayerType() == LAYER_TYPE_HARDWARE) {
+                mPromotedChild.setLayerType(LAYER_TYPE_NONE, null);
+            }
+            mPromotedChild = null;
+        }
+    }
+
+    private final Runnable mDemoteLayer = new Runnable() {
+        @Override
+        public void run() {
+            mLayerDemotePosted = false;
+            if (mEngine.getState() == SCROLL_STATE_IDLE) {
+                demoteLayer();
+            }
+        }
+    };
+
+    private void scheduleScrollChangeDispatch() {
+        if (mOnScrollChangeListener == null || mScrollChangeDispatchPosted) {
+            return;
+        }
+        mScrollChangeDispatchPosted = true;
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+            postOnAnimation(mDispatchScrollChange);
+        }else{
+            ViewCompat.postOnAnimation(this, mDispatchScrollChange);
+        }
+    }
+
+    /**
+     * Reports every change made since the last dispatch at once, at the start of the next frame.
+     */
+    private final Runnable mDispatchScrollChange = new Runnable() {
+        @Override
+        public void run() {
+            mScrollChangeDispatchPosted = false;
+            final OnScrollChangeListener listener = mOnScrollChangeListener;
+            if (listener == null) {
+                return;
+            }
+            final int scrollX = getScrollX();
+            final int scrollY = getScrollY();
+            final int state = mEngine.getState();
+            if (scrollX == mDispatchedScrollX && scrollY == mDispatchedScrollY
+                    && state == mDispatchedScrollState) {
+                return;
+            }
+            final int oldScrollX = mDispatchedScrollX;
+            final int oldScrollY = mDispatchedScrollY;
+            mDispatchedScrollX = scrollX;
+            mDispatchedScrollY = scrollY;
+            mDispatchedScrollState = state;
+            listener.onScrollChange(DroidUIScrollView.this, scrollX, scrollY, oldScrollX, oldScrollY, state);
+        }
+    };
+
+    /**
+     * @return The physics driving flings, smooth scrolls and spring-back.
+     */
+    public ScrollPhysics getScrollPhysics() {
+        return mEngine.getPhysics();
+    }
+
+    /**
+     * Set the physics driving flings, smooth scrolls and spring-back. Any running
+     * animation is stopped where it is.
+     *
+     * @param physics The physics to use, see {@link SplineScrollPhysics} and
+     *                {@link OverScrollerPhysics}.
+     */
+    public void setScrollPhysics(ScrollPhysics physics) {
+        mEngine.setPhysics(physics);
+    }
+
+    /**
+     * @return Whether pinch and double-tap zoom are enabled.
+     */
+    public boolean isZoomEnabled() {
+        return mZoomEnabled;
+    }
+
+    /**
+     * Enable pinch and double-tap zoom. The child is scaled about its top left
+     * corner and the scroll ranges follow its scaled size. Content implementing
+     * {@link LevelOfDetailAware} is told when the zoom crosses a power of two, tiles
+     * are rebound at the new {@link TileAdapter#getLevelOfDetail()}.
+     */
+    public void setZoomEnabled(boolean zoomEnabled) {
+        mZoomEnabled = zoomEnabled;
+        if (zoomEnabled && mScaleDetector == null) {
+            mScaleDetector = new ScaleGestureDetector(getContext(), mScaleListener);
+            mDoubleTapDetector = new GestureDetector(getContext(), mDoubleTapListener);
+        }
+    }
+
+    public float getZoom() {
+        return mZoom;
+    }
+
+    public float getMinZoom() {
+        return mMinZoom;
+    }
+
+    public float getMaxZoom() {
+        return mMaxZoom;
+    }
+
+    /**
+     * Set the range the zoom is kept in, the current zoom is clamped to it.
+     */
+    public void setZoomRange(float minZoom, float maxZoom) {
+        if (minZoom <= 0 || maxZoom < minZoom) {
+            throw new IllegalArgumentException("Invalid zoom range " + minZoom + " - " + maxZoom);
+        }
+        mMinZoom = minZoom;
+        mMaxZoom = maxZoom;
+        setZoom(mZoom);
+    }
+
+    /**
+     * Zoom about the center of the viewport.
+     */
+    public void setZoom(float zoom) {
+        setZoom(zoom, getWidth() / 2f, getHeight() / 2f);
+    }
+
+    /**
+     * Zoom about the given point, in this view's coordinates, which keeps showing
+     * the same content.
+     */
+    public void setZoom(float zoom, float focusX, float focusY) {
+        mZoomAnimating = false;
+        applyZoom(zoom, focusX, focusY);
+    }
+
+    /**
+     * Like {@link #setZoom(float, float, float)}, but animated.
+     */
+    public void smoothZoomTo(float zoom, float focusX, float focusY) {
+        mZoomAnimationFrom = mZoom;
+        mZoomAnimationTo = Math.max(mMinZoom, Math.min(zoom, mMaxZoom));
+        mZoomAnimationFocusX = focusX;
+        mZoomAnimationFocusY = focusY;
+        mZoomAnimationStart = AnimationUtils.currentAnimationTimeMillis();
+        mZoomAnimating = true;
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+            postInvalidateOnAnimation();
+        }else{
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+    }
+
+    /**
+     * @return The level of detail for the current zoom, see {@link LevelOfDetailAware}.
+     */
+    public int getLevelOfDetail() {
+        return mLevelOfDetail;
+    }
+
+    private void stepZoomAnimation() {
+        final long elapsed = AnimationUtils.currentAnimationTimeMillis() - mZoomAnimationStart;
+        float t = Math.min(1f, elapsed / (float) ZOOM_ANIMATION_DURATION);
+        // Decelerate into the target zoom.
+        t = 1f - (1f - t) * (1f - t);
+        applyZoom(mZoomAnimationFrom + (mZoomAnimationTo - mZoomAnimationFrom) * t,
+                mZoomAnimationFocusX, mZoomAnimationFocusY);
+        if (t >= 1f) {
+            mZoomAnimating = false;
+        } else if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+            postInvalidateOnAnimation();
+        }else{
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+    }
+
+    private void applyZoom(float zoom, float focusX, float focusY) {
+        zoom = Math.max(mMinZoom, Math.min(zoom, mMaxZoom));
+        if (zoom == mZoom) {
+            return;
+        }
+        if (getChildCount() == 0) {
+            mZoom = zoom;
+            updateLevelOfDetail();
+            return;
+        }
+
+        final View child = getChildAt(0);
+        // The content point under the focus, which stays put.
+        final float contentX = (getScrollX() + focusX - child.getLeft()) / mZoom;
+        final float contentY = (getScrollY() + focusY - child.getTop()) / mZoom;
+
+        mZoom = zoom;
+        // Focus rects are in zoomed coordinates.
+        mFocusIndexDirty = true;
+        if (mSnapshotCache != null) {
+            mSnapshotCache.invalidateAll();
+        }
+        child.setPivotX(0);
+        child.setPivotY(0);
+        child.setScaleX(zoom);
+        child.setScaleY(zoom);
+        updateViewport();
+
+        final int x = Math.round(child.getLeft() + contentX * zoom - focusX);
+        final int y = Math.round(child.getTop() + contentY * zoom - focusY);
+        scrollTo(mViewport.clampScrollX(x), mViewport.clampScrollY(y));
+        // The scroll may not have changed while the visible part of the child did.
+        updateVisibleTiles();
+        dispatchViewportChanged();
+        updateLevelOfDetail();
+        awakenScrollBars();
+        invalidate();
+    }
+
+    private void updateLevelOfDetail() {
+        final int level = (int) Math.floor(Math.log(mZoom) / Math.log(2));
+        if (level == mLevelOfDetail) {
+            return;
+        }
+        mLevelOfDetail = level;
+        if (getChildCount() > 0 && getChildAt(0) instanceof LevelOfDetailAware) {
+            ((LevelOfDetailAware) getChildAt(0)).onLevelOfDetailChanged(level);
+        }
+    }
+
+    private final ScaleGestureDetector.OnScaleGestureListener mScaleListener =
+            new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+        @Override
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            if (!mZoomEnabled || getChildCount() == 0) {
+                return false;
+            }
+            mZoomAnimating = false;
+            mEngine.abortAnimation();
+            mScrollAnimator.cancel();
+            mLastFocusX = detector.getFocusX();
+            mLastFocusY = detector.getFocusY();
+            return true;
+        }
+
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            final float focusX = detector.getFocusX();
+            final float focusY = detector.getFocusY();
+            applyZoom(mZoom * detector.getScaleFactor(), focusX, focusY);
+            // Moving both fingers pans.
+            final int dx = Math.round(mLastFocusX - focusX);
+            final int dy = Math.round(mLastFocusY - focusY);
+            if (dx != 0 || dy != 0) {
+                scrollTo(mViewport.clampScrollX(getScrollX() + dx), mViewport.clampScrollY(getScrollY() + dy));
+            }
+            mLastFocusX = focusX;
+            mLastFocusY = focusY;
+            return true;
+        }
+    };
+
+    private final GestureDetector.SimpleOnGestureListener mDoubleTapListener =
+            new GestureDetector.SimpleOnGestureListener() {
+        @Override
+        public boolean onDoubleTap(MotionEvent e) {
+            if (!mZoomEnabled || getChildCount() == 0) {
+                return false;
+            }
+            // Step in by powers of two, then back out to the minimum.
+            final float zoom = mZoom * DOUBLE_TAP_ZOOM_FACTOR <= mMaxZoom
+                    ? mZoom * DOUBLE_TAP_ZOOM_FACTOR : mMinZoom;
+            smoothZoomTo(zoom, e.getX(), e.getY());
+            return true;
+        }
+    };
+
+    /**
+     * Feeds the zoom gestures every event, including those going to the child.
+     */
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        if (mZoomEnabled) {
+            mScaleDetector.onTouchEvent(ev);
+            mDoubleTapDetector.onTouchEvent(ev);
+        }
+        return super.dispatchTouchEvent(ev);
+    }
+
+    /**
+     * @return The metrics being recorded, or null.
+     */
+    public ScrollMetrics getScrollMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Start recording frame timings and dropped frames into the given metrics, or
+     * stop when null. Recording costs a few clock reads per frame.
+     */
+    public void setScrollMetrics(ScrollMetrics metrics) {
+        if (mMetrics != null) {
+            mMetrics.stop();
+        }
+        mMetrics = metrics;
+        if (metrics != null) {
+            updateMetricsRefreshRate();
+        }
+    }
+
+    private void updateMetricsRefreshRate() {
+        mMetrics.setRefreshRate(getDisplayRefreshRate());
+    }
+
+    private float getDisplayRefreshRate() {
+        final WindowManager windowManager =
+                (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+        return windowManager.getDefaultDisplay().getRefreshRate();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mMetrics != null) {
+            updateMetricsRefreshRate();
+        }
+        mPrefetchScheduler.setRefreshRate(getDisplayRefreshRate());
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mMetrics != null) {
+            mMetrics.stop();
+        }
+        mPrefetchScheduler.cancel();
+        mScrollAnimator.cancel();
+        cancelKeyRepeat();
+        cancelWheelScroll();
+        if (mOriginRebasePosted) {
+            removeCallbacks(mRebaseOrigin);
+            mOriginRebasePosted = false;
+        }
+        demoteLayer();
+        if (mSnapshotCache != null) {
+            removeCallbacks(mPrepareSnapshot);
+            mSnapshotPreparePosted = false;
+            mSnapshotCache.release();
+        }
+        if (mScrollChangeDispatchPosted) {
+            removeCallbacks(mDispatchScrollChange);
+            mScrollChangeDispatchPosted = false;
+        }
+    }
+
+    /**
+     * @return Whether the content is drawn from bitmap snapshots while scrolling.
+     */
+    public boolean isSnapshotCacheEnabled() {
+        return mSnapshotCache != null;
+    }
+
+    /**
+     * Draw the content from bitmap snapshots while it is dragged or animated,
+     * instead of drawing the whole hierarchy every frame. The snapshots are
+     * rendered in square tiles while the view is idle, or on demand, and a tile
+     * is rendered again when the content under it invalidates. Live drawing
+     * resumes once the scroll settles.
+     *
+     * <p>This helps content that is expensive to draw but rarely changes. The
+     * snapshots hold about two viewports worth of ARGB_8888 bitmaps. Content
+     * drawn outside of the software canvas, such as a SurfaceView or a
+     * TextureView, doesn't show up in the snapshots.</p>
+     */
+    public void setSnapshotCacheEnabled(boolean enabled) {
+        if (enabled == (mSnapshotCache != null)) {
+            return;
+        }
+        if (enabled) {
+            mSnapshotCache = new SnapshotCache(SnapshotCache.DEFAULT_TILE_SIZE, mSnapshotRenderer);
+            mSnapshotCache.setViewportSize(getWidth(), getHeight());
+            mSnapshotScrollState = mEngine.getState();
+            scheduleSnapshotPrepare();
+        } else {
+            removeCallbacks(mPrepareSnapshot);
+            mSnapshotPreparePosted = false;
+            mSnapshotCache.release();
+            mSnapshotCache = null;
+            invalidate();
+        }
     }
 
-    @Override
-    public void addView(View child) {
-        if (getChildCount() > 0) {
-            throw new IllegalStateException("ScrollView can host only one direct child");
+    private void scheduleSnapshotPrepare() {
+        if (mSnapshotPreparePosted) {
+            return;
         }
-
-        super.addView(child);
+        mSnapshotPreparePosted = true;
+        post(mPrepareSnapshot);
     }
 
-    @Override
-    public void addView(View child, int index) {
-        if (getChildCount() > 0) {
-            throw new IllegalStateException("ScrollView can host only one direct child");
+    /**
+     * Renders the snapshot tiles around the viewport once the view is idle, so
+     * that the next drag starts with them at hand.
+     */
+    private final Runnable mPrepareSnapshot = new Runnable() {
+        @Override
+        public void run() {
+            mSnapshotPreparePosted = false;
+            if (mSnapshotCache == null || getChildCount() == 0 || getWidth() == 0
+                    || mEngine.getState() != SCROLL_STATE_IDLE) {
+                return;
+            }
+            updateSnapshotContentBounds();
+            final int margin = mSnapshotCache.getTileSize();
+            mSnapshotCache.prepare(getScrollX() - margin, getScrollY() - margin,
+                    getScrollX() + getWidth() + margin, getScrollY() + getHeight() + margin);
         }
+    };
 
-        super.addView(child, index);
-    }
-
-    @Override
-    public void addView(View child, ViewGroup.LayoutParams params) {
-        if (getChildCount() > 0) {
-            throw new IllegalStateException("ScrollView can host only one direct child");
+    private final SnapshotCache.Renderer mSnapshotRenderer = new SnapshotCache.Renderer() {
+        @Override
+        public void renderSnapshot(Canvas canvas) {
+            if (getChildCount() == 0) {
+                return;
+            }
+            final View child = getChildAt(0);
+            canvas.translate(child.getLeft(), child.getTop());
+            if (mZoom != 1f) {
+                canvas.scale(mZoom, mZoom);
+            }
+            canvas.translate(-child.getScrollX(), -child.getScrollY());
+            child.draw(canvas);
         }
+    };
 
-        super.addView(child, params);
+    private void updateSnapshotContentBounds() {
+        mSnapshotCache.setContentBounds(mViewport.getContentLeft(), mViewport.getContentTop(),
+                mViewport.getContentWidth(), mViewport.getContentHeight());
     }
 
+    /**
+     * Drops the snapshot tiles under the invalidated part of a descendant.
+     */
     @Override
-    public void addView(View child, int index, ViewGroup.LayoutParams params) {
-        if (getChildCount() > 0) {
-            throw new IllegalStateException("ScrollView can host only one direct child");
+    public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+        if (mSnapshotCache != null) {
+            // The dirty rect is in the child's coordinates, the location is the child's position.
+            mSnapshotCache.invalidate(dirty.left + location[0], dirty.top + location[1],
+                    dirty.right + location[0], dirty.bottom + location[1]);
         }
-
-        super.addView(child, index, params);
+        return super.invalidateChildInParent(location, dirty);
     }
 
     /**
-     * @return Returns true this ScrollView can be scrolled
+     * Drops the snapshot tiles under an invalidated descendant. Hardware accelerated
+     * windows report invalidations here from Oreo on and no longer call
+     * {@link #invalidateChildInParent(int[], Rect)}.
+     *
+     * <p>Overrides ViewGroup#onDescendantInvalidated, which the SDK this builds
+     * against doesn't have yet, so the super implementation can't be called.
+     * Invalidating this view does what it would: it carries the invalidation up
+     * the hierarchy, and redrawing this view redraws the invalidated child.</p>
      */
-    private boolean canScroll() {
-        View child = getChildAt(0);
-        if (child != null) {
-            int childHeight = child.getHeight();
-            int childWidth = child.getWidth();
-            return (getHeight() < childHeight + getPaddingTop() + getPaddingBottom()) ||
-                    (getWidth() < childWidth + getPaddingLeft() + getPaddingRight());
+    @SuppressWarnings("unused")
+    public void onDescendantInvalidated(View child, View target) {
+        if (mSnapshotCache != null && getChildCount() > 0) {
+            target.getDrawingRect(mInvalidatedRect);
+            offsetDescendantRectToZoomedCoords(target, mInvalidatedRect);
+            mSnapshotCache.invalidate(mInvalidatedRect.left, mInvalidatedRect.top,
+                    mInvalidatedRect.right, mInvalidatedRect.bottom);
         }
-        return false;
+        invalidate();
     }
 
     /**
-     * Indicates whether this DroidUIScrollView's content is stretched to fill the viewport.
-     *
-     * @return True if the content fills the viewport, false otherwise.
-     *
-     * @attr ref android.R.styleable#DroidUIScrollView_fillViewport
+     * @return The prefetcher run ahead of flings, or null.
      */
-    public boolean isFillViewport() {
-        return mFillViewport;
+    public Prefetcher getPrefetcher() {
+        return mPrefetcher;
     }
 
     /**
-     * Indicates this DroidUIScrollView whether it should stretch its content to fill
-     * the viewport or not.
-     *
-     * @param fillViewport True to stretch the content to the viewport's
-     *        boundaries, false otherwise.
-     *
-     * @attr ref R.styleable#DroidUIScrollView_fillViewport
+     * Set a prefetcher to prepare the content a fling is going to land on, in the
+     * idle time between the frames of the fling. In tiled mode the tiles of the
+     * landing viewport are prefetched regardless.
      */
-    public void setFillViewport(boolean fillViewport) {
-        if (fillViewport != mFillViewport) {
-            mFillViewport = fillViewport;
-            requestLayout();
+    public void setPrefetcher(Prefetcher prefetcher) {
+        mPrefetcher = prefetcher;
+    }
+
+    /**
+     * Predicts where the running fling lands and points the prefetch scheduler
+     * at the viewport there.
+     */
+    private void updatePrefetchTarget() {
+        if (mTileContainer == null && mPrefetcher == null) {
+            return;
+        }
+        if (!mEngine.isAnimating() || mEngine.isDragging()) {
+            mPrefetchScheduler.clearTarget();
+            return;
         }
+        final ScrollPhysics physics = mEngine.getPhysics();
+        // Overflinging springs back, the content comes to rest within the scroll range.
+        final int x = mViewport.clampScrollX(physics.getFinalX());
+        final int y = mViewport.clampScrollY(physics.getFinalY());
+        mPrefetchScheduler.setTarget(x, y, x + getWidth(), y + getHeight());
     }
 
+    /**
+     * Prefetches the tiles of the landing viewport, then hands it to the app's prefetcher.
+     */
+    private final Prefetcher mPrefetchDispatcher = new Prefetcher() {
+        @Override
+        public boolean prefetch(int left, int top, int right, int bottom, long deadlineNanos) {
+            boolean done = true;
+            if (mTileContainer != null) {
+                final int tileLeft = (int) ((left - mTileContainer.getLeft()) / mZoom) - mTileMargin;
+                final int tileTop = (int) ((top - mTileContainer.getTop()) / mZoom) - mTileMargin;
+                done = mTileContainer.prefetchTiles(tileLeft, tileTop,
+                        tileLeft + (int) Math.ceil((right - left) / mZoom) + 2 * mTileMargin,
+                        tileTop + (int) Math.ceil((bottom - top) / mZoom) + 2 * mTileMargin, deadlineNanos);
+            }
+            if (done && mPrefetcher != null) {
+                done = mPrefetcher.prefetch(left, top, right, bottom, deadlineNanos);
+            }
+            return done;
+        }
+    };
+
     /**
      * @return Whether arrow scrolling will animate its transition.
      */
@@ -246,8 +1601,8 @@ public class DroidUIScrollView extends FrameLayout {
         }
 
         final int length = getVerticalFadingEdgeLength();
-        final int bottomEdge = getHeight() - getPaddingBottom();
-        final int span = getChildAt(0).getBottom() - getScrollY() - bottomEdge;
+        final int bottomEdge = mViewport.getTop() + mViewport.getHeight();
+        final int span = mViewport.getContentBottom() - getScrollY() - bottomEdge;
         if (span < length) {
             return span / (float) length;
         }
@@ -262,8 +1617,8 @@ public class DroidUIScrollView extends FrameLayout {
         }
 
         final int length = getHorizontalFadingEdgeLength();
-        if (getScaleX() < length) {
-            return getScaleX() / (float) length;
+        if (getScrollX() < length) {
+            return getScrollX() / (float) length;
         }
 
         return 1.0f;
@@ -276,8 +1631,8 @@ public class DroidUIScrollView extends FrameLayout {
         }
 
         final int length = getHorizontalFadingEdgeLength();
-        final int rightEdge = getWidth() - getPaddingRight();
-        final int span = getChildAt(0).getRight() - getScrollX() - rightEdge;
+        final int rightEdge = mViewport.getLeft() + mViewport.getWidth();
+        final int span = mViewport.getContentRight() - getScrollX() - rightEdge;
         if (span < length) {
             return span / (float) length;
         }
@@ -303,51 +1658,70 @@ public class DroidUIScrollView extends FrameLayout {
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-
-        if (!mFillViewport) {
-            return;
-        }
-
         final int widthMode = MeasureSpec.getMode(widthMeasureSpec);
         final int heightMode = MeasureSpec.getMode(heightMeasureSpec);
-        if (widthMode == MeasureSpec.UNSPECIFIED || heightMode == MeasureSpec.UNSPECIFIED) {
+        if (!mFillViewport || getChildCount() == 0
+                || widthMode == MeasureSpec.UNSPECIFIED || heightMode == MeasureSpec.UNSPECIFIED) {
+            mFillMeasureValid = false;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
             return;
         }
 
-        if(getChildCount() > 0){
-            final View child = getChildAt(0);
-            int height = getMeasuredHeight();
-            int width = getMeasuredWidth();
-
-            if (child.getMeasuredHeight() < height) {
-                final LayoutParams lp = (LayoutParams) child.getLayoutParams();
-
-                int childWidthMeasureSpec = getChildMeasureSpec(widthMeasureSpec,
-                        getPaddingLeft() + getPaddingRight(), lp.width);
-                height -= getPaddingTop();
-                height -= getPaddingBottom();
-                int childHeightMeasureSpec =
-                        MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY);
-
-                child.measure(childWidthMeasureSpec, childHeightMeasureSpec);
-            }
-
-
-
-            if (child.getMeasuredWidth() < width) {
-                final LayoutParams lp = (LayoutParams) child.getLayoutParams();
-
-                int childHeightMeasureSpec = getChildMeasureSpec(heightMeasureSpec,
-                        getPaddingTop() + getPaddingBottom(), lp.height);
-                width -= getPaddingLeft();
-                width -= getPaddingRight();
-                int childWidthMeasureSpec = MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY);
-
-                child.measure(childWidthMeasureSpec, childHeightMeasureSpec);
-            }
+        final View child = getChildAt(0);
+        if (mFillMeasureValid
+                && widthMeasureSpec == mFillWidthMeasureSpec
+                && heightMeasureSpec == mFillHeightMeasureSpec
+                && getPaddingLeft() + getPaddingRight() == mFillPaddingWidth
+                && getPaddingTop() + getPaddingBottom() == mFillPaddingHeight) {
+            // Neither the constraints nor the child changed, its final size still holds.
+            setMeasuredDimension(mFillMeasuredWidthAndState, mFillMeasuredHeightAndState);
+            return;
         }
 
+        // Measure the child once for its natural size, the way FrameLayout would.
+        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        final int paddingWidth = getPaddingLeft() + getPaddingRight();
+        final int paddingHeight = getPaddingTop() + getPaddingBottom();
+        measureChildWithMargins(child, widthMeasureSpec, 0, heightMeasureSpec, 0);
+        int maxWidth = child.getMeasuredWidth() + lp.leftMargin + lp.rightMargin + paddingWidth;
+        int maxHeight = child.getMeasuredHeight() + lp.topMargin + lp.bottomMargin + paddingHeight;
+        maxWidth = Math.max(maxWidth, getSuggestedMinimumWidth());
+        maxHeight = Math.max(maxHeight, getSuggestedMinimumHeight());
+        final Drawable foreground = getForeground();
+        if (foreground != null) {
+            maxWidth = Math.max(maxWidth, foreground.getMinimumWidth());
+            maxHeight = Math.max(maxHeight, foreground.getMinimumHeight());
+        }
+        final int childState = child.getMeasuredState();
+        setMeasuredDimension(resolveSizeAndState(maxWidth, widthMeasureSpec, childState),
+                resolveSizeAndState(maxHeight, heightMeasureSpec,
+                        childState << MEASURED_HEIGHT_STATE_SHIFT));
+
+        // Work out the final constraints of both axes together, so that stretching
+        // the child takes at most one more pass.
+        final int width = getMeasuredWidth();
+        final int height = getMeasuredHeight();
+        final boolean fillWidth = child.getMeasuredWidth() < width
+                || (lp.width == LayoutParams.MATCH_PARENT && widthMode != MeasureSpec.EXACTLY);
+        final boolean fillHeight = child.getMeasuredHeight() < height
+                || (lp.height == LayoutParams.MATCH_PARENT && heightMode != MeasureSpec.EXACTLY);
+        if (fillWidth || fillHeight) {
+            final int childWidthMeasureSpec = fillWidth
+                    ? MeasureSpec.makeMeasureSpec(Math.max(0, width - paddingWidth), MeasureSpec.EXACTLY)
+                    : getChildMeasureSpec(widthMeasureSpec, paddingWidth, lp.width);
+            final int childHeightMeasureSpec = fillHeight
+                    ? MeasureSpec.makeMeasureSpec(Math.max(0, height - paddingHeight), MeasureSpec.EXACTLY)
+                    : getChildMeasureSpec(heightMeasureSpec, paddingHeight, lp.height);
+            child.measure(childWidthMeasureSpec, childHeightMeasureSpec);
+        }
+
+        mFillWidthMeasureSpec = widthMeasureSpec;
+        mFillHeightMeasureSpec = heightMeasureSpec;
+        mFillPaddingWidth = paddingWidth;
+        mFillPaddingHeight = paddingHeight;
+        mFillMeasuredWidthAndState = getMeasuredWidthAndState();
+        mFillMeasuredHeightAndState = getMeasuredHeightAndState();
+        mFillMeasureValid = true;
     }
 
     /**
@@ -382,28 +1756,28 @@ public class DroidUIScrollView extends FrameLayout {
             switch (event.getKeyCode()) {
                 case KeyEvent.KEYCODE_DPAD_UP:
                     if (!event.isAltPressed()) {
-                        handled = arrowScroll(View.FOCUS_UP);
+                        handled = arrowKeyScroll(event, View.FOCUS_UP);
                     } else {
                         handled = fullScroll(View.FOCUS_UP);
                     }
                     break;
                 case KeyEvent.KEYCODE_DPAD_DOWN:
                     if (!event.isAltPressed()) {
-                        handled = arrowScroll(View.FOCUS_DOWN);
+                        handled = arrowKeyScroll(event, View.FOCUS_DOWN);
                     } else {
                         handled = fullScroll(View.FOCUS_DOWN);
                     }
                     break;
                 case KeyEvent.KEYCODE_DPAD_LEFT:
                     if (!event.isAltPressed()) {
-                        handled = arrowScroll(View.FOCUS_LEFT);
+                        handled = arrowKeyScroll(event, View.FOCUS_LEFT);
                     } else {
                         handled = fullScroll(View.FOCUS_LEFT);
                     }
                     break;
                 case KeyEvent.KEYCODE_DPAD_RIGHT:
                     if (!event.isAltPressed()) {
-                        handled = arrowScroll(View.FOCUS_RIGHT);
+                        handled = arrowKeyScroll(event, View.FOCUS_RIGHT);
                     } else {
                         handled = fullScroll(View.FOCUS_RIGHT);
                     }
@@ -419,48 +1793,314 @@ public class DroidUIScrollView extends FrameLayout {
         return handled;
     }
 
+    /**
+     * Scrolls for an arrow key press. The repeats of a held key are merged and
+     * handled once a frame, so that holding the key runs one focus search a frame
+     * and keeps extending the same scroll animation, faster the longer the key is
+     * held.
+     */
+    private boolean arrowKeyScroll(KeyEvent event, int direction) {
+        if (event.getRepeatCount() == 0 || direction != mKeyRepeatDirection) {
+            cancelKeyRepeat();
+            mKeyRepeatDirection = direction;
+            return arrowScroll(direction);
+        }
+        if (!mKeyRepeatPosted && !canScrollTowards(direction)) {
+            // At the edge, the repeat may still move focus, or out of this view.
+            return arrowScroll(direction);
+        }
+        mPendingKeyRepeats++;
+        mKeyRepeatHeldMillis = event.getEventTime() - event.getDownTime();
+        if (!mKeyRepeatPosted) {
+            mKeyRepeatPosted = true;
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+                postOnAnimation(mKeyRepeatScroll);
+            }else{
+                ViewCompat.postOnAnimation(this, mKeyRepeatScroll);
+            }
+        }
+        return true;
+    }
+
+    private void cancelKeyRepeat() {
+        if (mKeyRepeatPosted) {
+            removeCallbacks(mKeyRepeatScroll);
+            mKeyRepeatPosted = false;
+        }
+        mPendingKeyRepeats = 0;
+        mKeyRepeatDirection = 0;
+    }
+
+    /**
+     * Handles the key repeats received since the previous frame as one arrow jump,
+     * scaled by their count and by how long the key has been held.
+     */
+    private final Runnable mKeyRepeatScroll = new Runnable() {
+        @Override
+        public void run() {
+            mKeyRepeatPosted = false;
+            if (mPendingKeyRepeats == 0 || getChildCount() == 0) {
+                mPendingKeyRepeats = 0;
+                return;
+            }
+            final float acceleration = Math.min(MAX_KEY_REPEAT_ACCELERATION,
+                    1f + (float) mKeyRepeatHeldMillis / KEY_REPEAT_ACCELERATION_MILLIS);
+            final float jumpScale = mPendingKeyRepeats * acceleration;
+            mPendingKeyRepeats = 0;
+            arrowScroll(mKeyRepeatDirection, jumpScale);
+        }
+    };
+
+    /**
+     * @return Whether the content can move further in the given direction, past
+     * the end of the running scroll animation.
+     */
+    private boolean canScrollTowards(int direction) {
+        switch (direction) {
+            case View.FOCUS_UP:
+                return mScrollAnimator.getFinalY() > 0;
+            case View.FOCUS_DOWN:
+                return mScrollAnimator.getFinalY() < mViewport.getScrollRangeVertical();
+            case View.FOCUS_LEFT:
+                return mScrollAnimator.getFinalX() > 0;
+            default:
+                return mScrollAnimator.getFinalX() < mViewport.getScrollRangeHorizontal();
+        }
+    }
+
     private boolean inChild(int x, int y) {
         if (getChildCount() > 0) {
             final int scrollY = getScrollY();
             final int scrollX = getScrollX();
-            final View child = getChildAt(0);
-            return (!(y < child.getTop() - scrollY
-                    || y >= child.getBottom() - scrollY
-                    || x < child.getLeft()
-                    || x >= child.getRight())) ||
-                    (!(y < child.getTop()
-                            || y >= child.getBottom()
-                            || x < child.getLeft() - scrollX
-                            || x >= child.getRight() - scrollX));
+            final int left = mViewport.getContentLeft();
+            final int top = mViewport.getContentTop();
+            final int bottom = mViewport.getContentBottom();
+            final int right = mViewport.getContentRight();
+            return (!(y < top - scrollY
+                    || y >= bottom - scrollY
+                    || x < left
+                    || x >= right)) ||
+                    (!(y < top
+                            || y >= bottom
+                            || x < left - scrollX
+                            || x >= right - scrollX));
         }
         return false;
     }
 
-    private void initOrResetVelocityTracker() {
-        if (mVelocityTracker == null) {
-            mVelocityTracker = VelocityTracker.obtain();
-        } else {
-            mVelocityTracker.clear();
+    private void initOrResetVelocityEstimator() {
+        mVelocityEstimator.clear();
+        mTrackingVelocity = true;
+    }
+
+    private void initVelocityEstimatorIfNotTracking() {
+        if (!mTrackingVelocity) {
+            initOrResetVelocityEstimator();
+        }
+    }
+
+    private void stopVelocityTracking() {
+        mTrackingVelocity = false;
+    }
+
+    /**
+     * Feeds every pointer of the event, historical samples included, to the
+     * velocity estimator. Offset by the nested scroll so far, so that the
+     * velocity is relative to the content. The active pointer's samples of a
+     * move also go to the touch resampler and predictor, in the same pass.
+     */
+    private void addVelocitySamples(MotionEvent ev) {
+        final int pointerCount = ev.getPointerCount();
+        final int historySize = ev.getHistorySize();
+        final int activeIndex = (mTouchResamplingEnabled || mTouchPredictionEnabled)
+                && ev.getActionMasked() == MotionEvent.ACTION_MOVE
+                ? ev.findPointerIndex(mActivePointerId) : -1;
+        for (int h = 0; h < historySize; h++) {
+            final long time = ev.getHistoricalEventTime(h);
+            for (int p = 0; p < pointerCount; p++) {
+                final float x = ev.getHistoricalX(p, h);
+                final float y = ev.getHistoricalY(p, h);
+                mVelocityEstimator.addSample(ev.getPointerId(p), time, x + mNestedXOffset, y + mNestedYOffset);
+                if (p == activeIndex) {
+                    addActiveTouchSample(time, x, y);
+                }
+            }
+        }
+        final long time = ev.getEventTime();
+        for (int p = 0; p < pointerCount; p++) {
+            final float x = ev.getX(p);
+            final float y = ev.getY(p);
+            mVelocityEstimator.addSample(ev.getPointerId(p), time, x + mNestedXOffset, y + mNestedYOffset);
+            if (p == activeIndex) {
+                addActiveTouchSample(time, x, y);
+            }
+        }
+        if (ev.getActionMasked() == MotionEvent.ACTION_POINTER_UP) {
+            // The pointer is gone, its id may come back for another finger.
+            mVelocityEstimator.clearPointer(ev.getPointerId(ev.getActionIndex()));
+        }
+    }
+
+    private void addActiveTouchSample(long time, float x, float y) {
+        if (mTouchResamplingEnabled) {
+            mTouchResampler.addSample(time, x, y);
+        }
+        if (mTouchPredictionEnabled) {
+            mTouchPredictor.addSample(time, x, y);
+        }
+    }
+
+    /**
+     * The active pointer changed, or a drag starts.
+     */
+    private void resetTouchFilters() {
+        mTouchResampler.reset();
+        mResampledDragPending = false;
+        mTouchPredictor.reset();
+        setPredictedOffset(0, 0);
+    }
+
+    /**
+     * Draws the content ahead, to where the pointer is predicted to be once the
+     * frame is shown. Only the drawing moves: the drag, the touch slop and the
+     * fling all work from the real pointer, so nothing predicted outlives the
+     * drag.
+     */
+    private void updatePredictedOffset() {
+        if (!mTouchPredictionEnabled || !mEngine.isDragging() || !mTouchPredictor.predict()) {
+            setPredictedOffset(0, 0);
+            return;
+        }
+        // The content moves against the pointer, and not past the edges.
+        final int scrollX = getScrollX();
+        final int scrollY = getScrollY();
+        int offsetX = 0;
+        int offsetY = 0;
+        if (mViewport.clampScrollX(scrollX) == scrollX) {
+            offsetX = mViewport.clampScrollX(scrollX - Math.round(mTouchPredictor.getOffsetX())) - scrollX;
+        }
+        if (mViewport.clampScrollY(scrollY) == scrollY) {
+            offsetY = mViewport.clampScrollY(scrollY - Math.round(mTouchPredictor.getOffsetY())) - scrollY;
+        }
+        setPredictedOffset(offsetX, offsetY);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postResampledDrag() {
+        mResampledDragPending = true;
+        if (mResampledDragPosted) {
+            return;
+        }
+        mResampledDragPosted = true;
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+            if (mResampledDragCallback == null) {
+                mResampledDragCallback = new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        applyResampledDrag(frameTimeNanos / 1000000L);
+                    }
+                };
+            }
+            Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mResampledDragCallback);
+        }else{
+            ViewCompat.postOnAnimation(this, mResampledDragRunnable);
         }
     }
 
-    private void initVelocityTrackerIfNotExists() {
-        if (mVelocityTracker == null) {
-            mVelocityTracker = VelocityTracker.obtain();
+    /**
+     * Moves the drag to where the pointer was at the given frame time. Runs
+     * before the frame is drawn, on the same uptime clock as the touch samples.
+     */
+    private void applyResampledDrag(long frameTimeMillis) {
+        mResampledDragPosted = false;
+        if (!mResampledDragPending || !mEngine.isDragging()) {
+            return;
+        }
+        mResampledDragPending = false;
+        mTouchResampler.resample(frameTimeMillis);
+        if (mEngine.onTouchMove(mTouchResampler.getX(), mTouchResampler.getY())) {
+            // Break our velocity if we hit a scroll barrier.
+            mVelocityEstimator.clear();
         }
+        updatePredictedOffset();
     }
 
-    private void recycleVelocityTracker() {
-        if (mVelocityTracker != null) {
-            mVelocityTracker.recycle();
-            mVelocityTracker = null;
+    private void setPredictedOffset(int offsetX, int offsetY) {
+        if (offsetX != mPredictedOffsetX || offsetY != mPredictedOffsetY) {
+            mPredictedOffsetX = offsetX;
+            mPredictedOffsetY = offsetY;
+            invalidate();
         }
     }
 
+    /**
+     * @return Whether drags are extrapolated to the time they are shown at.
+     */
+    public boolean isTouchPredictionEnabled() {
+        return mTouchPredictionEnabled;
+    }
+
+    /**
+     * Have drags draw the content where the pointer is predicted to be by the
+     * time the frame is shown, from its recent velocity and acceleration, cutting
+     * the lag between the finger and the content. The scroll position and flings
+     * still follow the real pointer. Tune the prediction for the device through
+     * {@link #getTouchPredictor()}.
+     */
+    public void setTouchPredictionEnabled(boolean enabled) {
+        mTouchPredictionEnabled = enabled;
+        mTouchPredictor.reset();
+        setPredictedOffset(0, 0);
+    }
+
+    /**
+     * @return The predictor used when touch prediction is enabled. Its prediction
+     * time defaults to a frame at 60Hz and its distance cap to 32dp.
+     */
+    public TouchPredictor getTouchPredictor() {
+        return mTouchPredictor;
+    }
+
+    /**
+     * @return Whether drags follow the pointer's position at the frame times.
+     */
+    public boolean isTouchResamplingEnabled() {
+        return mTouchResamplingEnabled;
+    }
+
+    /**
+     * Have drags follow the pointer's position at each frame's sample time,
+     * computed from all the samples batched into a move event, rather than its
+     * latest raw position. Once a drag has started, moves are applied at the start
+     * of the next frame, at the Choreographer's frame time. The content then moves
+     * by even steps on displays refreshing faster or slower than the touch panel
+     * reports, at the cost of following a few milliseconds behind.
+     */
+    public void setTouchResamplingEnabled(boolean enabled) {
+        mTouchResamplingEnabled = enabled;
+        mTouchResampler.reset();
+    }
+
+    /**
+     * @return One of the VelocityEstimator.STRATEGY_* constants.
+     */
+    public int getVelocityStrategy() {
+        return mVelocityEstimator.getStrategy();
+    }
+
+    /**
+     * Set how the fling velocity is estimated from the pointer's recent positions.
+     *
+     * @param strategy One of the VelocityEstimator.STRATEGY_* constants.
+     */
+    public void setVelocityStrategy(int strategy) {
+        mVelocityEstimator.setStrategy(strategy);
+    }
+
     @Override
     public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
         if (disallowIntercept) {
-            recycleVelocityTracker();
+            stopVelocityTracking();
         }
         super.requestDisallowInterceptTouchEvent(disallowIntercept);
     }
@@ -479,27 +2119,22 @@ public class DroidUIScrollView extends FrameLayout {
         * motion.
         */
         final int action = ev.getAction();
-        if ((action == MotionEvent.ACTION_MOVE) && (mIsBeingDragged)) {
+        if ((action == MotionEvent.ACTION_MOVE) && (mEngine.isDragging())) {
             return true;
         }
         /*
          * Don't try to intercept touch if we can't scroll anyway.
          */
-        if (getScrollY() == 0 && (!canScrollVertically(1) || !canScrollHorizontally(1))) {
+        if (!mZoomEnabled && getScrollY() == 0 && (!canScrollVertically(1) || !canScrollHorizontally(1))) {
             return false;
         }
 
         switch (action & MotionEvent.ACTION_MASK) {
             case MotionEvent.ACTION_MOVE: {
                 /*
-                 * mIsBeingDragged == false, otherwise the shortcut would have caught it. Check
+                 * The engine isn't dragging, otherwise the shortcut would have caught it. Check
                  * whether the user has moved far enough from his original down touch.
                  */
-
-                /*
-                * Locally do absolute value. mLastMotionY is set to the y value
-                * of the down event.
-                */
                 final int activePointerId = mActivePointerId;
                 if (activePointerId == INVALID_POINTER) {
                     // If we don't have a valid id, the touch down wasn't on content.
@@ -513,16 +2148,9 @@ public class DroidUIScrollView extends FrameLayout {
                     break;
                 }
 
-                final int y = (int) ev.getY(pointerIndex);
-                final int x = (int) ev.getX(pointerIndex);
-                final int yDiff = Math.abs(y - mLastMotionY);
-                final int xDiff = Math.abs(x - mLastMotionX);
-                if (yDiff > mTouchSlop || (xDiff > mTouchSlop )) {
-                    mIsBeingDragged = true;
-                    mLastMotionY = y;
-                    mLastMotionX = x;
-                    initVelocityTrackerIfNotExists();
-                    mVelocityTracker.addMovement(ev);
+                if (mEngine.checkTouchSlop(ev.getX(pointerIndex), ev.getY(pointerIndex))) {
+                    initVelocityEstimatorIfNotTracking();
+                    addVelocitySamples(ev);
 
                     final ViewParent parent = getParent();
                     if (parent != null) {
@@ -536,27 +2164,23 @@ public class DroidUIScrollView extends FrameLayout {
                 final int y = (int) ev.getY();
                 final int x = (int) ev.getX();
                 if (!inChild(x, y)) {
-                    mIsBeingDragged = false;
-                    recycleVelocityTracker();
+                    // Not a touch on the content, a fling carries on.
+                    mEngine.cancelDrag();
+                    stopVelocityTracking();
                     break;
                 }
 
                 /*
                  * Remember location of down touch.
                  * ACTION_DOWN always refers to pointer index 0.
+                 * If being flinged and user touches the screen, the engine
+                 * initiates a drag; otherwise it doesn't.
                  */
-                mLastMotionY = y;
-                mLastMotionX = x;
+                mEngine.onTouchDown(ev.getX(), ev.getY());
                 mActivePointerId = ev.getPointerId(0);
 
-                initOrResetVelocityTracker();
-                mVelocityTracker.addMovement(ev);
-                /*
-                * If being flinged and user touches the screen, initiate drag;
-                * otherwise don't.  mScroller.isFinished should be false when
-                * being flinged.
-                */
-                mIsBeingDragged = !mScroller.isFinished();
+                initOrResetVelocityEstimator();
+                addVelocitySamples(ev);
 //                startNestedScroll(SCROLL_AXIS_VERTICAL);
 //                startNestedScroll(SCROLL_AXIS_HORIZONTAL);
                 break;
@@ -565,25 +2189,28 @@ public class DroidUIScrollView extends FrameLayout {
             case MotionEvent.ACTION_CANCEL:
             case MotionEvent.ACTION_UP:
                 /* Release the drag */
-                mIsBeingDragged = false;
                 mActivePointerId = INVALID_POINTER;
-                recycleVelocityTracker();
-                if (mScroller.springBack(getScrollX(), getScrollY(), 0, getScrollRangeHorizontal(), 0, getScrollRangeVertical())) {
-//                    postInvalidateOnAnimation();
+                stopVelocityTracking();
+                mEngine.onTouchCancel(AnimationUtils.currentAnimationTimeMillis());
+                if (mEngine.isAnimating()) {
+                    if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+                        postInvalidateOnAnimation();
+                    }else{
+                        ViewCompat.postInvalidateOnAnimation(this);
+                    }
                 }
 //                stopNestedScroll();
                 break;
             case MotionEvent.ACTION_POINTER_DOWN: {
                 final int index = ev.getActionIndex();
-                mLastMotionX = (int) ev.getX(index);
-                mLastMotionY = (int) ev.getY(index);
+                mEngine.onPointerChanged(ev.getX(index), ev.getY(index));
                 mActivePointerId = ev.getPointerId(index);
                 break;
             }
             case MotionEvent.ACTION_POINTER_UP:
                 onSecondaryPointerUp(ev);
-                mLastMotionX = (int) ev.getX(ev.findPointerIndex(mActivePointerId));
-                mLastMotionY = (int) ev.getY(ev.findPointerIndex(mActivePointerId));
+                final int index = ev.findPointerIndex(mActivePointerId);
+                mEngine.onPointerChanged(ev.getX(index), ev.getY(index));
                 break;
         }
 
@@ -591,29 +2218,46 @@ public class DroidUIScrollView extends FrameLayout {
         * The only time we want to intercept motion events is if we are in the
         * drag mode.
         */
-        return mIsBeingDragged;
+        // A second pointer starts a pinch, which is ours even over a child that takes touches.
+        return mEngine.isDragging() || (mZoomEnabled && ev.getPointerCount() > 1);
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent ev) {
-        initVelocityTrackerIfNotExists();
+        if (mMetrics == null) {
+            final boolean handled = handleTouchEvent(ev);
+            onScrollStateMaybeChanged();
+            return handled;
+        }
+        final long start = System.nanoTime();
+        final boolean handled = handleTouchEvent(ev);
+        mMetrics.record(ScrollMetrics.METRIC_TOUCH_EVENT, System.nanoTime() - start);
+        onScrollStateMaybeChanged();
+        return handled;
+    }
 
-        MotionEvent vtev = MotionEvent.obtain(ev);
+    private boolean handleTouchEvent(MotionEvent ev) {
+        initVelocityEstimatorIfNotTracking();
 
         final int actionMasked = ev.getActionMasked();
         if (actionMasked == MotionEvent.ACTION_DOWN) {
             mNestedYOffset = 0;
             mNestedXOffset = 0;
+            resetTouchFilters();
+        }
+        if (actionMasked != MotionEvent.ACTION_UP && actionMasked != MotionEvent.ACTION_CANCEL) {
+            // Sampled up front, so that a move can be resampled. The up event
+            // doesn't count towards the fling velocity.
+            addVelocitySamples(ev);
         }
-
-        vtev.offsetLocation(mNestedXOffset, mNestedYOffset);
 
         switch (actionMasked) {
             case MotionEvent.ACTION_DOWN: {
                 if (getChildCount() == 0) {
                     return false;
                 }
-                if ((mIsBeingDragged = !mScroller.isFinished())) {
+                // Remember where the motion event started
+                if (mEngine.onTouchDown(ev.getX(), ev.getY())) {
                     final ViewParent parent = getParent();
                     if (parent != null) {
                         parent.requestDisallowInterceptTouchEvent(true);
@@ -621,16 +2265,10 @@ public class DroidUIScrollView extends FrameLayout {
                 }
 
                 /*
-                 * If being flinged and user touches, stop the fling. isFinished
-                 * will be false if being flinged.
+                 * If being flinged and user touches, stop the fling.
                  */
-                if (!mScroller.isFinished()) {
-                    mScroller.abortAnimation();
-                }
-
-                // Remember where the motion event started
-                mLastMotionY = (int) ev.getY();
-                mLastMotionX = (int) ev.getX();
+                mEngine.abortAnimation();
+                mScrollAnimator.cancel();
                 mActivePointerId = ev.getPointerId(0);
                 break;
             }
@@ -641,119 +2279,47 @@ public class DroidUIScrollView extends FrameLayout {
                     break;
                 }
 
-                final int y = (int) ev.getY(activePointerIndex);
-                final int x = (int) ev.getX(activePointerIndex);
-                int deltaY = mLastMotionY - y;
-                int deltaX = mLastMotionX - x;
-//                if (dispatchNestedPreScroll(deltaX, deltaY, mScrollConsumed, mScrollOffset)) {
-//                    deltaX -= mScrollConsumed[0];
-//                    deltaY -= mScrollConsumed[1];
-//                    vtev.offsetLocation(mScrollOffset[0], mScrollOffset[1]);
-//                    mNestedYOffset += mScrollOffset[1];
-//                    mNestedXOffset += mScrollOffset[0];
-//                }
-                if (!mIsBeingDragged && Math.abs(deltaY) > mTouchSlop) {
-                    final ViewParent parent = getParent();
-                    if (parent != null) {
-                        parent.requestDisallowInterceptTouchEvent(true);
-                    }
-                    mIsBeingDragged = true;
-                    if (deltaY > 0) {
-                        deltaY -= mTouchSlop;
-                    } else {
-                        deltaY += mTouchSlop;
-                    }
+                if (mScaleDetector != null && mScaleDetector.isInProgress()) {
+                    // The pinch pans the content, keep the drag anchored to the pointer.
+                    mEngine.onPointerChanged(ev.getX(activePointerIndex), ev.getY(activePointerIndex));
+                    resetTouchFilters();
+                    break;
+                }
+
+                final boolean wasDragging = mEngine.isDragging();
+                if (wasDragging && mTouchResamplingEnabled) {
+                    // Applied at the next frame, where the pointer was at that frame's time.
+                    postResampledDrag();
+                    break;
                 }
-                if (!mIsBeingDragged && Math.abs(deltaX) > mTouchSlop) {
+                // The engine calls back into scrollTo, which calls onScrollChanged if applicable.
+                if (mEngine.onTouchMove(ev.getX(activePointerIndex), ev.getY(activePointerIndex))) {
+                    // Break our velocity if we hit a scroll barrier.
+                    mVelocityEstimator.clear();
+                }
+                updatePredictedOffset();
+                if (!wasDragging && mEngine.isDragging()) {
                     final ViewParent parent = getParent();
                     if (parent != null) {
                         parent.requestDisallowInterceptTouchEvent(true);
                     }
-                    mIsBeingDragged = true;
-                    if (deltaX > 0) {
-                        deltaX -= mTouchSlop;
-                    } else {
-                        deltaX += mTouchSlop;
-                    }
-                }
-                if (mIsBeingDragged) {
-                    // Scroll to follow the motion event
-                    mLastMotionY = y - mScrollOffset[1];
-                    mLastMotionX = x;
-
-                    final int oldY = getScrollY();
-                    final int oldX = getScrollX();
-                    final int verticalRange = getScrollRangeVertical();
-                    final int horizontalRange = getScrollRangeHorizontal();
-                    final int overScrollMode = getOverScrollMode();
-                    boolean canOverScroll = overScrollMode == OVER_SCROLL_ALWAYS ||
-                            (overScrollMode == OVER_SCROLL_IF_CONTENT_SCROLLS && (verticalRange > 0 || horizontalRange > 0));
-
-                    // Calling overScrollBy will call onOverScrolled, which
-                    // calls onScrollChanged if applicable.
-                    if (overScrollBy(deltaX, deltaY, getScrollX(), getScrollY(), horizontalRange, verticalRange, mOverscrollDistance, mOverscrollDistance, true)) {
-                        // Break our velocity if we hit a scroll barrier.
-                        mVelocityTracker.clear();
-                    }
-
-                    final int scrolledDeltaY = getScrollY() - oldY;
-                    final int unconsumedY = deltaY - scrolledDeltaY;
-                    final int scrolledDeltaX = getScrollX() - oldX;
-                    final int unconsumedX = deltaX - scrolledDeltaX;
-//                    if (dispatchNestedScroll(scrolledDeltaX, scrolledDeltaY, unconsumedX, unconsumedY, mScrollOffset)) {
-//                        mLastMotionY -= mScrollOffset[1];
-//                        mLastMotionX -= mScrollOffset[0];
-//                        vtev.offsetLocation(mScrollOffset[0], mScrollOffset[1]);
-//                        mNestedYOffset += mScrollOffset[1];
-//                        mNestedXOffset += mScrollOffset[0];
-//                    if (canOverScroll) {
-//                        final int pulledToY = oldY + deltaY;
-//                        final int pulledToX = oldX + deltaX;
-//                        if (pulledToY < 0) {
-//                            mEdgeGlowTop.onPull((float) deltaY / getHeight(),
-//                                    ev.getX(activePointerIndex) / getWidth());
-//                            if (!mEdgeGlowBottom.isFinished()) {
-//                                mEdgeGlowBottom.onRelease();
-//                            }
-//                        } else if (pulledToY > verticalRange) {
-//                            mEdgeGlowBottom.onPull((float) deltaY / getHeight(),
-//                                    1.f - ev.getX(activePointerIndex) / getWidth());
-//                            if (!mEdgeGlowTop.isFinished()) {
-//                                mEdgeGlowTop.onRelease();
-//                            }
-//                        }if (pulledToX < 0) {
-//                            mEdgeGlowLeft.onPull((float) deltaX / getWidth(),
-//                                    1.f - ev.getY(activePointerIndex) / getHeight());
-//                            if (!mEdgeGlowRight.isFinished()) {
-//                                mEdgeGlowRight.onRelease();
-//                            }
-//                        } else if (pulledToX > horizontalRange) {
-//                            mEdgeGlowRight.onPull((float) deltaX / getWidth(),
-//                                    ev.getY(activePointerIndex) / getHeight());
-//                            if (!mEdgeGlowLeft.isFinished()) {
-//                                mEdgeGlowLeft.onRelease();
-//                            }
-//                        }
-//                        if (mEdgeGlowTop != null
-//                                && (!mEdgeGlowTop.isFinished() || !mEdgeGlowBottom.isFinished()) ||
-//                                !mEdgeGlowLeft.isFinished() || !mEdgeGlowRight.isFinished()) {
-//                            postInvalidateOnAnimation();
-//                        }
-//                    }
                 }
+//                if (dispatchNestedScroll(scrolledDeltaX, scrolledDeltaY, unconsumedX, unconsumedY, mScrollOffset)) {
+//                    mNestedYOffset += mScrollOffset[1];
+//                    mNestedXOffset += mScrollOffset[0];
+//                }
                 break;
             }
             case MotionEvent.ACTION_UP:
-                if (mIsBeingDragged) {
-                    final VelocityTracker velocityTracker = mVelocityTracker;
-                    velocityTracker.computeCurrentVelocity(1000, mMaximumVelocity);
-                    int initialVelocityY = (int) velocityTracker.getYVelocity(mActivePointerId);
-                    int initialVelocityX = (int) velocityTracker.getXVelocity(mActivePointerId);
-
-                    if ((Math.abs(initialVelocityY) > mMinimumVelocity) || (Math.abs(initialVelocityX) > mMinimumVelocity)) {
-                        flingWithNestedDispatch(-initialVelocityX, -initialVelocityY);
-                    } else if (mScroller.springBack(getScrollX(), getScrollY(), 0, getScrollRangeHorizontal(), 0,
-                            getScrollRangeVertical())) {
+                if (mEngine.isDragging()) {
+                    // The engine clamps to the fling velocity range.
+                    final VelocityEstimator velocityEstimator = mVelocityEstimator;
+                    velocityEstimator.computeVelocity(mActivePointerId, Float.MAX_VALUE);
+                    mEngine.onTouchUp(velocityEstimator.getXVelocity(),
+                            velocityEstimator.getYVelocity(),
+                            AnimationUtils.currentAnimationTimeMillis());
+                    updatePrefetchTarget();
+                    if (mEngine.isAnimating()) {
                         if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
                             postInvalidateOnAnimation();
                         }else{
@@ -766,8 +2332,9 @@ public class DroidUIScrollView extends FrameLayout {
                 }
                 break;
             case MotionEvent.ACTION_CANCEL:
-                if (mIsBeingDragged && getChildCount() > 0) {
-                    if (mScroller.springBack(getScrollX(), getScrollY(), 0, getScrollRangeHorizontal(), 0, getScrollRangeVertical())) {
+                if (mEngine.isDragging() && getChildCount() > 0) {
+                    mEngine.onTouchCancel(AnimationUtils.currentAnimationTimeMillis());
+                    if (mEngine.isAnimating()) {
                         if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
                             postInvalidateOnAnimation();
                         }else{
@@ -780,21 +2347,18 @@ public class DroidUIScrollView extends FrameLayout {
                 break;
             case MotionEvent.ACTION_POINTER_DOWN: {
                 final int index = ev.getActionIndex();
-                mLastMotionY = (int) ev.getY(index);
-                mLastMotionX = (int) ev.getX(index);
+                mEngine.onPointerChanged(ev.getX(index), ev.getY(index));
                 mActivePointerId = ev.getPointerId(index);
+                resetTouchFilters();
                 break;
             }
             case MotionEvent.ACTION_POINTER_UP:
                 onSecondaryPointerUp(ev);
-                mLastMotionY = (int) ev.getY(ev.findPointerIndex(mActivePointerId));
-                mLastMotionX = (int) ev.getX(ev.findPointerIndex(mActivePointerId));
+                final int index = ev.findPointerIndex(mActivePointerId);
+                mEngine.onPointerChanged(ev.getX(index), ev.getY(index));
+                resetTouchFilters();
                 break;
         }
-        if (mVelocityTracker != null) {
-            mVelocityTracker.addMovement(vtev);
-        }
-        vtev.recycle();
         return true;
     }
 
@@ -810,27 +2374,9 @@ public class DroidUIScrollView extends FrameLayout {
      */
     public void fling(int velocityX, int velocityY) {
         if (getChildCount() > 0) {
-            int width = getWidth() - getPaddingRight() - getPaddingLeft();
-            int height = getHeight() - getPaddingBottom() - getPaddingTop();
-            int right = getChildAt(0).getWidth();
-            int bottom = getChildAt(0).getHeight();
-
-            mScroller.fling(getScrollX(), getScrollY(), velocityX, velocityY, 0,
-                    Math.max(0, right - width), 0, Math.max(0, bottom - height), width/2, height/2);
-
-//            final boolean movingRight = velocityX > 0;
-//
-//            View currentFocused = findFocus();
-//            View newFocused = findFocusableViewInMyBounds(movingRight,
-//                    mScroller.getFinalX(), currentFocused);
-//
-//            if (newFocused == null) {
-//                newFocused = this;
-//            }
-//
-//            if (newFocused != currentFocused) {
-//                newFocused.requestFocus(movingRight ? View.FOCUS_RIGHT : View.FOCUS_LEFT);
-//            }
+            mScrollAnimator.cancel();
+            mEngine.fling(velocityX, velocityY, AnimationUtils.currentAnimationTimeMillis());
+            updatePrefetchTarget();
 
             if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
                 postInvalidateOnAnimation();
@@ -840,20 +2386,9 @@ public class DroidUIScrollView extends FrameLayout {
         }
     }
 
-    private void flingWithNestedDispatch(int velocityX, int velocityY) {
-        final boolean canFlingVertical = (getScrollY() > 0 || velocityY > 0) &&
-                (getScrollY() < getScrollRangeVertical() || velocityY < 0);
-        final boolean canFlingHorizontal = (getScrollX() > 0 || velocityX > 0) &&
-                (getScrollX() < getScrollRangeHorizontal() || velocityX < 0);
-        if (canFlingVertical || canFlingHorizontal) {
-            fling(velocityX, velocityY);
-        }
-    }
-
     private void endDrag() {
-        mIsBeingDragged = false;
-
-        recycleVelocityTracker();
+        stopVelocityTracking();
+        setPredictedOffset(0, 0);
 
         if (mEdgeGlowTop != null) {
             mEdgeGlowTop.onRelease();
@@ -878,12 +2413,8 @@ public class DroidUIScrollView extends FrameLayout {
             // active pointer and adjust accordingly.
             // TODO: Make this decision more intelligent.
             final int newPointerIndex = pointerIndex == 0 ? 1 : 0;
-            mLastMotionX = (int) ev.getX(newPointerIndex);
-            mLastMotionY = (int) ev.getY(newPointerIndex);
             mActivePointerId = ev.getPointerId(newPointerIndex);
-            if (mVelocityTracker != null) {
-                mVelocityTracker.clear();
-            }
+            // The new pointer has a velocity history of its own, nothing to reset.
         }
     }
 
@@ -892,73 +2423,107 @@ public class DroidUIScrollView extends FrameLayout {
         if ((event.getSource() & InputDevice.SOURCE_CLASS_POINTER) != 0) {
             switch (event.getAction()) {
                 case MotionEvent.ACTION_SCROLL: {
-                    if (!mIsBeingDragged) {
+                    if (!mEngine.isDragging()) {
                         final float vScroll = event.getAxisValue(MotionEvent.AXIS_VSCROLL);
                         final float hScroll = event.getAxisValue(MotionEvent.AXIS_HSCROLL);
-                        int newScrollY = Integer.MAX_VALUE;
-                        int newScrollX = Integer.MAX_VALUE;
-                        boolean newVertical = false;
-                        boolean newHorizontal = false;
-
-                        if (vScroll != 0) {
-                            final int delta = (int) (vScroll * getVerticalScrollFactor());
-                            final int range = getScrollRangeVertical();
-                            int oldScrollY = getScrollY();
-                            newScrollY = oldScrollY - delta;
-                            if (newScrollY < 0) {
-                                newScrollY = 0;
-                            } else if (newScrollY > range) {
-                                newScrollY = range;
-                            }
-                            if (newScrollY != oldScrollY) {
-                                newVertical = true;
-                            }
+                        boolean handled = false;
+
+                        // Accumulated as is, applied at the next frame.
+                        if (vScroll != 0 && canScrollTowards(vScroll > 0 ? View.FOCUS_UP : View.FOCUS_DOWN)) {
+                            mPendingWheelY -= vScroll * getVerticalScrollFactor();
+                            handled = true;
                         }
-                        if (hScroll != 0) {
-                            final int delta = (int) (hScroll * getHorizontalScrollFactor());
-                            final int range = getScrollRangeHorizontal();
-                            int oldScrollX = getScrollX();
-                            newScrollX = oldScrollX + delta;
-                            if (newScrollX < 0) {
-                                newScrollX = 0;
-                            } else if (newScrollX > range) {
-                                newScrollX = range;
-                            }
-                            if (newScrollX != oldScrollX) {
-                                newHorizontal = true;
-                            }
+                        if (hScroll != 0 && canScrollTowards(hScroll > 0 ? View.FOCUS_RIGHT : View.FOCUS_LEFT)) {
+                            mPendingWheelX += hScroll * getHorizontalScrollFactor();
+                            handled = true;
                         }
-                        if (newVertical && newHorizontal) {
-                            super.scrollTo(newScrollX, newScrollY);
-                            return true;
-                        }else if(newVertical){
-                            super.scrollTo(getScrollX(), newScrollY);
-                            return true;
-                        }else if(newHorizontal){
-                            super.scrollTo(newScrollX, getScrollY());
+                        if (handled) {
+                            scheduleWheelScroll();
                             return true;
                         }
                     }
                 }
             }
         }
-        return super.onGenericMotionEvent(event);
-    }
+        return super.onGenericMotionEvent(event);
+    }
+
+    private void scheduleWheelScroll() {
+        if (mWheelScrollPosted) {
+            return;
+        }
+        mWheelScrollPosted = true;
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+            postOnAnimation(mWheelScroll);
+        }else{
+            ViewCompat.postOnAnimation(this, mWheelScroll);
+        }
+    }
+
+    private void cancelWheelScroll() {
+        if (mWheelScrollPosted) {
+            removeCallbacks(mWheelScroll);
+            mWheelScrollPosted = false;
+        }
+        mPendingWheelX = 0;
+        mPendingWheelY = 0;
+    }
+
+    /**
+     * Applies the wheel scrolling of the past frame at once, extending the running
+     * scroll animation. The fractions of a pixel carry over to the next frame so that
+     * small trackpad movements add up instead of getting lost.
+     */
+    private final Runnable mWheelScroll = new Runnable() {
+        @Override
+        public void run() {
+            mWheelScrollPosted = false;
+            if (getChildCount() == 0) {
+                mPendingWheelX = 0;
+                mPendingWheelY = 0;
+                return;
+            }
+            final int dx = (int) mPendingWheelX;
+            final int dy = (int) mPendingWheelY;
+            mPendingWheelX -= dx;
+            mPendingWheelY -= dy;
+            if (dx == 0 && dy == 0) {
+                return;
+            }
+
+            final int rangeX = mViewport.getScrollRangeHorizontal();
+            final int rangeY = mViewport.getScrollRangeVertical();
+            int x = mScrollAnimator.getFinalX() + dx;
+            int y = mScrollAnimator.getFinalY() + dy;
+            if (x <= 0 || x >= rangeX) {
+                // Against the edge, nothing left to carry over.
+                x = Math.max(0, Math.min(x, rangeX));
+                mPendingWheelX = 0;
+            }
+            if (y <= 0 || y >= rangeY) {
+                y = Math.max(0, Math.min(y, rangeY));
+                mPendingWheelY = 0;
+            }
+            if (mSmoothScrollingEnabled) {
+                mScrollAnimator.animateTo(x, y);
+            } else {
+                scrollTo(x, y);
+                awakenScrollBars();
+            }
+        }
+    };
 
     @Override
     protected void onOverScrolled(int scrollX, int scrollY,
                                   boolean clampedX, boolean clampedY) {
         // Treat animating scrolls differently; see #computeScroll() for why.
-        if (!mScroller.isFinished()) {
+        if (mEngine.isAnimating() && !mEngine.isDragging()) {
             final int oldX = getScrollX();
             final int oldY = getScrollY();
             setScrollX(scrollX);
             setScrollY(scrollY);
             invalidateParentIfNeeded();
             onScrollChanged(getScrollX(), getScrollY(), oldX, oldY);
-            if (clampedY) {
-                mScroller.springBack(getScrollX(), getScrollY(), 0, getScrollRangeHorizontal(), 0, getScrollRangeVertical());
-            }
         } else {
             super.scrollTo(scrollX, scrollY);
         }
@@ -976,42 +2541,34 @@ public class DroidUIScrollView extends FrameLayout {
         if (!isEnabled()) {
             return false;
         }
+        // Page along the vertical axis first, then along the horizontal one, from
+        // where a running animation ends so that consecutive pages add up.
+        final int viewportWidth = mViewport.getWidth();
+        final int viewportHeight = mViewport.getHeight();
+        final int scrollX = mScrollAnimator.getFinalX();
+        final int scrollY = mScrollAnimator.getFinalY();
         switch (action) {
             case AccessibilityNodeInfo.ACTION_SCROLL_FORWARD: {
-                final int viewportHeight = getHeight() - getPaddingBottom() - getPaddingTop();
-                final int targetScrollY = (int) Math.min(getScaleY() + viewportHeight, getScrollRangeVertical());
-
-                final int viewportWidth = getWidth() - getPaddingLeft() - getPaddingRight();
-                final int targetScrollX = (int) Math.min(getScaleX() + viewportWidth, getScrollRangeHorizontal());
-                if(targetScrollY != getScrollY() && targetScrollX != getScrollX()){
-                    smoothScrollTo(targetScrollX, targetScrollY);
+                final int targetScrollY = Math.min(scrollY + viewportHeight, mViewport.getScrollRangeVertical());
+                if (targetScrollY > scrollY) {
+                    smoothScrollTo(scrollX, targetScrollY);
                     return true;
                 }
-                if (targetScrollY != getScrollY()) {
-                    smoothScrollTo(0, targetScrollY);
-                    return true;
-                }
-                if (targetScrollX != getScrollX()) {
-                    smoothScrollTo(targetScrollX, 0);
+                final int targetScrollX = Math.min(scrollX + viewportWidth, mViewport.getScrollRangeHorizontal());
+                if (targetScrollX > scrollX) {
+                    smoothScrollTo(targetScrollX, scrollY);
                     return true;
                 }
             } return false;
             case AccessibilityNodeInfo.ACTION_SCROLL_BACKWARD: {
-                final int viewportHeight = getHeight() - getPaddingBottom() - getPaddingTop();
-                final int targetScrollY = (int) Math.max(getScaleY() - viewportHeight, 0);
-
-                final int viewportWidth = getWidth() - getPaddingLeft() - getPaddingRight();
-                final int targetScrollX = Math.max(0, getScrollX() - viewportWidth);
-                if(targetScrollY != getScrollY() && targetScrollX != getScrollX()){
-                    smoothScrollTo(targetScrollX, targetScrollY);
-                    return true;
-                }
-                if (targetScrollY != getScrollY()) {
-                    smoothScrollTo(0, targetScrollY);
+                final int targetScrollY = Math.max(scrollY - viewportHeight, 0);
+                if (targetScrollY < scrollY) {
+                    smoothScrollTo(scrollX, targetScrollY);
                     return true;
                 }
-                if (targetScrollX != getScrollX()) {
-                    smoothScrollTo(targetScrollX, 0);
+                final int targetScrollX = Math.max(scrollX - viewportWidth, 0);
+                if (targetScrollX < scrollX) {
+                    smoothScrollTo(targetScrollX, scrollY);
                     return true;
                 }
             } return false;
@@ -1024,8 +2581,8 @@ public class DroidUIScrollView extends FrameLayout {
         super.onInitializeAccessibilityNodeInfo(info);
         info.setClassName(DroidUIScrollView.class.getName());
         if (isEnabled()) {
-            final int verticalScrollRange = getScrollRangeVertical();
-            final int horizontalScrollRange = getScrollRangeHorizontal();
+            final int verticalScrollRange = mViewport.getScrollRangeVertical();
+            final int horizontalScrollRange = mViewport.getScrollRangeHorizontal();
             if (verticalScrollRange > 0 || horizontalScrollRange > 0) {
                 info.setScrollable(true);
                 if (getScrollY() > 0 || getScrollX() > 0) {
@@ -1042,37 +2599,80 @@ public class DroidUIScrollView extends FrameLayout {
     public void onInitializeAccessibilityEvent(AccessibilityEvent event) {
         super.onInitializeAccessibilityEvent(event);
         event.setClassName(DroidUIScrollView.class.getName());
-        final boolean scrollable = getScrollRangeVertical() > 0 || getScrollRangeVertical() > 0;
-        event.setScrollable(scrollable);
+        event.setScrollable(mViewport.canScroll());
         event.setScrollX(getScrollX());
         event.setScrollY(getScrollY());
         if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1){
-            event.setMaxScrollX(getScrollRangeHorizontal());
-            event.setMaxScrollY(getScrollRangeVertical());
+            event.setMaxScrollX(mViewport.getScrollRangeHorizontal());
+            event.setMaxScrollY(mViewport.getScrollRangeVertical());
         }
     }
 
-    private int getScrollRangeVertical() {
-        int scrollRange = 0;
-        if (getChildCount() > 0) {
-            View child = getChildAt(0);
-            scrollRange = Math.max(0,
-                    child.getHeight() - (getHeight() - getPaddingBottom() - getPaddingTop()));
+    /**
+     * Recomputes {@link #mViewport} from the padding, the child's layout and the
+     * zoom, and hands the sizes to the engine. Called when any of them changed.
+     */
+    private void updateViewport() {
+        final int width = Math.max(0, getWidth() - getPaddingLeft() - getPaddingRight());
+        final int height = Math.max(0, getHeight() - getPaddingTop() - getPaddingBottom());
+        if (getChildCount() == 0) {
+            mViewport = new Viewport(getPaddingLeft(), getPaddingTop(), width, height, 0, 0, 0, 0);
+        } else {
+            final View child = getChildAt(0);
+            mViewport = new Viewport(getPaddingLeft(), getPaddingTop(), width, height,
+                    child.getLeft(), child.getTop(), getContentWidth(child), getContentHeight(child));
         }
-        return scrollRange;
+        mEngine.setViewport(width, height, mViewport.getContentWidth(), mViewport.getContentHeight());
     }
 
-    private int getScrollRangeHorizontal() {
-        int scrollRange = 0;
-        if (getChildCount() > 0) {
-            View child = getChildAt(0);
-            scrollRange = Math.max(0,
-                    child.getWidth() - (getWidth() - getPaddingLeft() - getPaddingRight()));
+    Viewport getViewport() {
+        return mViewport;
+    }
+
+    /**
+     * Like {@link #offsetDescendantRectToMyCoords(View, Rect)}, but through the
+     * child's zoom, which that leaves out.
+     */
+    private void offsetDescendantRectToZoomedCoords(View descendant, Rect rect) {
+        if (mZoom == 1f || getChildCount() == 0) {
+            offsetDescendantRectToMyCoords(descendant, rect);
+            return;
         }
-        return scrollRange;
+        final View child = getChildAt(0);
+        if (descendant != child) {
+            ((ViewGroup) child).offsetDescendantRectToMyCoords(descendant, rect);
+        }
+        mapChildRectToZoomedCoords(child, rect);
     }
 
+    /**
+     * Maps a rect in the child's coordinates to ours, the child being scaled by
+     * the zoom from its top left corner.
+     */
+    private void mapChildRectToZoomedCoords(View child, Rect rect) {
+        final int left = child.getLeft();
+        final int top = child.getTop();
+        final int scrollX = child.getScrollX();
+        final int scrollY = child.getScrollY();
+        rect.set(left + Math.round((rect.left - scrollX) * mZoom),
+                top + Math.round((rect.top - scrollY) * mZoom),
+                left + Math.round((rect.right - scrollX) * mZoom),
+                top + Math.round((rect.bottom - scrollY) * mZoom));
+    }
+
+    /**
+     * @return The height the child takes on screen at the current zoom.
+     */
+    private int getContentHeight(View child) {
+        return mZoom == 1f ? child.getHeight() : Math.round(child.getHeight() * mZoom);
+    }
 
+    /**
+     * @return The width the child takes on screen at the current zoom.
+     */
+    private int getContentWidth(View child) {
+        return mZoom == 1f ? child.getWidth() : Math.round(child.getWidth() * mZoom);
+    }
 
     /**
      * Handle scrolling in response to an arrow click.
@@ -1082,6 +2682,13 @@ public class DroidUIScrollView extends FrameLayout {
      * @return True if we consumed the event, false otherwise
      */
     public boolean arrowScroll(int direction) {
+        return arrowScroll(direction, 1f);
+    }
+
+    /**
+     * @param jumpScale How many arrow jumps to scroll by when no focusable is in reach.
+     */
+    private boolean arrowScroll(int direction, float jumpScale) {
 
         View currentFocused = findFocus();
         if (currentFocused == this) currentFocused = null;
@@ -1092,30 +2699,31 @@ public class DroidUIScrollView extends FrameLayout {
         switch (direction){
             case View.FOCUS_DOWN:
             case View.FOCUS_UP:
-                maxJump = getMaxVerticalScrollAmount();
+                maxJump = (int) (getMaxVerticalScrollAmount() * jumpScale);
 
                 if (nextFocused != null && isWithinDeltaOfScreenVertically(nextFocused, maxJump, getHeight())) {
                     nextFocused.getDrawingRect(mTempRect);
-                    offsetDescendantRectToMyCoords(nextFocused, mTempRect);
+                    offsetDescendantRectToZoomedCoords(nextFocused, mTempRect);
                     int scrollDelta = computeScrollDeltaToGetChildRectOnScreenVertically(mTempRect);
                     doScrollY(scrollDelta);
                     nextFocused.requestFocus(direction);
                 } else {
-                    // no new focus
+                    // no new focus, jump on from where a running animation ends
                     int scrollDelta = maxJump;
+                    final int scrollY = mScrollAnimator.getFinalY();
 
-                    if (direction == View.FOCUS_UP && getScrollY() < scrollDelta) {
-                        scrollDelta = getScrollY();
+                    if (direction == View.FOCUS_UP && scrollY < scrollDelta) {
+                        scrollDelta = scrollY;
                     } else if (direction == View.FOCUS_DOWN) {
                         if (getChildCount() > 0) {
-                            int daBottom = getChildAt(0).getBottom();
-                            int screenBottom = getScrollY() + getHeight() - getPaddingBottom();
+                            int daBottom = mViewport.getContentBottom();
+                            int screenBottom = scrollY + getHeight() - getPaddingBottom();
                             if (daBottom - screenBottom < maxJump) {
                                 scrollDelta = daBottom - screenBottom;
                             }
                         }
                     }
-                    if (scrollDelta == 0) {
+                    if (scrollDelta <= 0) {
                         return false;
                     }
                     doScrollY(direction == View.FOCUS_DOWN ? scrollDelta : -scrollDelta);
@@ -1136,31 +2744,32 @@ public class DroidUIScrollView extends FrameLayout {
                 break;
             case View.FOCUS_LEFT:
             case View.FOCUS_RIGHT:
-                maxJump = getMaxHorizontalScrollAmount();
+                maxJump = (int) (getMaxHorizontalScrollAmount() * jumpScale);
 
                 if (nextFocused != null && isWithinDeltaOfScreenHorizontally(nextFocused, maxJump)) {
                     nextFocused.getDrawingRect(mTempRect);
-                    offsetDescendantRectToMyCoords(nextFocused, mTempRect);
+                    offsetDescendantRectToZoomedCoords(nextFocused, mTempRect);
                     int scrollDelta = computeScrollDeltaToGetChildRectOnScreenHorizontally(mTempRect);
                     doScrollX(scrollDelta);
                     nextFocused.requestFocus(direction);
                 } else {
-                    // no new focus
+                    // no new focus, jump on from where a running animation ends
                     int scrollDelta = maxJump;
+                    final int scrollX = mScrollAnimator.getFinalX();
 
-                    if (direction == View.FOCUS_LEFT && getScrollX() < scrollDelta) {
-                        scrollDelta = getScrollX();
+                    if (direction == View.FOCUS_LEFT && scrollX < scrollDelta) {
+                        scrollDelta = scrollX;
                     } else if (direction == View.FOCUS_RIGHT && getChildCount() > 0) {
 
-                        int daRight = getChildAt(0).getRight();
+                        int daRight = mViewport.getContentRight();
 
-                        int screenRight = getScrollX() + getWidth();
+                        int screenRight = scrollX + getWidth();
 
                         if (daRight - screenRight < maxJump) {
                             scrollDelta = daRight - screenRight;
                         }
                     }
-                    if (scrollDelta == 0) {
+                    if (scrollDelta <= 0) {
                         return false;
                     }
                     doScrollX(direction == View.FOCUS_RIGHT ? scrollDelta : -scrollDelta);
@@ -1201,56 +2810,73 @@ public class DroidUIScrollView extends FrameLayout {
 
     /**
      * @return whether the descendant of this scroll view is within delta
-     *  pixels of being on the screen.
+     *  pixels of being on the screen, once a running smooth scroll ends.
      */
     private boolean isWithinDeltaOfScreenVertically(View descendant, int delta, int height) {
         descendant.getDrawingRect(mTempRect);
-        offsetDescendantRectToMyCoords(descendant, mTempRect);
+        offsetDescendantRectToZoomedCoords(descendant, mTempRect);
 
-        return (mTempRect.bottom + delta) >= getScrollY()
-                && (mTempRect.top - delta) <= (getScrollY() + height);
+        // Held arrow keys scroll again before the animation gets there.
+        final int scrollY = mScrollAnimator.getFinalY();
+        return (mTempRect.bottom + delta) >= scrollY
+                && (mTempRect.top - delta) <= (scrollY + height);
     }
 
     /**
      * @return whether the descendant of this scroll view is within delta
-     *  pixels of being on the screen Horizontally.
+     *  pixels of being on the screen Horizontally, once a running smooth scroll
+     *  ends.
      */
     private boolean isWithinDeltaOfScreenHorizontally(View descendant, int delta) {
         descendant.getDrawingRect(mTempRect);
-        offsetDescendantRectToMyCoords(descendant, mTempRect);
+        offsetDescendantRectToZoomedCoords(descendant, mTempRect);
 
-        return (mTempRect.right + delta) >= getScrollX()
-                && (mTempRect.left - delta) <= (getScrollX() + getWidth());
+        final int scrollX = mScrollAnimator.getFinalX();
+        return (mTempRect.right + delta) >= scrollX
+                && (mTempRect.left - delta) <= (scrollX + getWidth());
     }
 
     /**
      * Smooth scroll by a Y delta
      *
-     * @param delta the number of pixels to scroll by on the Y axis
+     * @param delta the number of pixels to scroll by on the Y axis, from where a
+     *              running smooth scroll ends
      */
     private void doScrollY(int delta) {
         if (delta != 0) {
-            if (mSmoothScrollingEnabled) {
-                smoothScrollBy(0, delta);
-            } else {
-                scrollBy(0, delta);
-            }
+            scrollFromFinalBy(0, delta, mSmoothScrollingEnabled);
         }
     }
 
     /**
      * Smooth scroll by a X delta
      *
-     * @param delta the number of pixels to scroll by on the X axis
+     * @param delta the number of pixels to scroll by on the X axis, from where a
+     *              running smooth scroll ends
      */
     private void doScrollX(int delta) {
         if (delta != 0) {
-            if (mSmoothScrollingEnabled) {
-                smoothScrollBy(delta, 0);
-            } else {
-                scrollBy(delta, 0);
-            }
+            scrollFromFinalBy(delta, 0, mSmoothScrollingEnabled);
+        }
+    }
+
+    /**
+     * Scroll by deltas counted from where a running smooth scroll ends, which is
+     * what the focus and key handling compute them against, so that a scroll
+     * issued mid-animation doesn't overshoot.
+     *
+     * @param smooth Whether to animate, otherwise the content jumps there and any
+     *               running animation stops.
+     */
+    private void scrollFromFinalBy(int dx, int dy, boolean smooth) {
+        if (smooth) {
+            smoothScrollBy(dx, dy);
+            return;
         }
+        final int x = mScrollAnimator.getFinalX() + dx;
+        final int y = mScrollAnimator.getFinalY() + dy;
+        mScrollAnimator.cancel();
+        scrollTo(mViewport.clampScrollX(x), mViewport.clampScrollY(y));
     }
 
 
@@ -1265,28 +2891,8 @@ public class DroidUIScrollView extends FrameLayout {
             // Nothing to do.
             return;
         }
-        long duration = AnimationUtils.currentAnimationTimeMillis() - mLastScroll;
-        if (duration > ANIMATED_SCROLL_GAP) {
-            final int height = getHeight() - getPaddingBottom() - getPaddingTop();
-            final int width = getWidth() - getPaddingRight() - getPaddingLeft();
-            final int bottom = getChildAt(0).getHeight();
-            final int right = getChildAt(0).getWidth();
-            final int maxY = Math.max(0, bottom - height);
-            final int maxX = Math.max(0, right - width);
-            final int scrollY = getScrollY();
-            final int scrollX = getScrollX();
-            dy = Math.max(0, Math.min(scrollY + dy, maxY)) - scrollY;
-            dx = Math.max(0, Math.min(scrollX + dx, maxX)) - scrollX;
-
-            mScroller.startScroll(scrollX, scrollY, dx, dy);
-//            postInvalidateOnAnimation();
-        } else {
-            if (!mScroller.isFinished()) {
-                mScroller.abortAnimation();
-            }
-            scrollBy(dx, dy);
-        }
-        mLastScroll = AnimationUtils.currentAnimationTimeMillis();
+        // Calls in quick succession retarget the running animation.
+        mScrollAnimator.animateBy(dx, dy);
     }
 
     /**
@@ -1296,7 +2902,40 @@ public class DroidUIScrollView extends FrameLayout {
      * @param y the position where to scroll on the Y axis
      */
     public final void smoothScrollTo(int x, int y) {
-        smoothScrollBy(x - getScrollX(), y - getScrollY());
+        if (getChildCount() == 0) {
+            // Nothing to do.
+            return;
+        }
+        mScrollAnimator.animateTo(x, y);
+    }
+
+    /**
+     * @return The animator behind smoothScrollBy/smoothScrollTo, to set their
+     * duration and easing or to follow their progress.
+     */
+    public ScrollAnimator getScrollAnimator() {
+        return mScrollAnimator;
+    }
+
+    void onScrollAnimationStarted() {
+        mEngine.setHostAnimating(true);
+        onScrollStateMaybeChanged();
+    }
+
+    void onScrollAnimationEnded() {
+        mEngine.setHostAnimating(false);
+        onScrollStateMaybeChanged();
+    }
+
+    /**
+     * Moves the content for a frame of the {@link ScrollAnimator}.
+     */
+    void applyAnimatedScroll(int x, int y) {
+        if (getChildCount() == 0) {
+            return;
+        }
+        scrollTo(mViewport.clampScrollX(x), mViewport.clampScrollY(y));
+        awakenScrollBars();
     }
 
     /**
@@ -1306,12 +2945,12 @@ public class DroidUIScrollView extends FrameLayout {
     @Override
     protected int computeVerticalScrollRange() {
         final int count = getChildCount();
-        final int contentHeight = getHeight() - getPaddingBottom() - getPaddingTop();
+        final int contentHeight = mViewport.getHeight();
         if (count == 0) {
             return contentHeight;
         }
 
-        int scrollRange = getChildAt(0).getBottom();
+        int scrollRange = mViewport.getContentBottom();
         final int scrollY = getScrollY();
         final int overScrollBottom = Math.max(0, scrollRange - contentHeight);
         if (scrollY < 0) {
@@ -1330,12 +2969,12 @@ public class DroidUIScrollView extends FrameLayout {
     @Override
     protected int computeHorizontalScrollRange() {
         final int count = getChildCount();
-        final int contentWidth = getWidth() - getPaddingLeft() - getPaddingRight();
+        final int contentWidth = mViewport.getWidth();
         if (count == 0) {
             return contentWidth;
         }
 
-        int scrollRange = getChildAt(0).getRight();
+        int scrollRange = mViewport.getContentRight();
         final int scrollX = getScrollX();
         final int overScrollRight = Math.max(0, scrollRange - contentWidth);
         if (scrollX < 0) {
@@ -1393,53 +3032,31 @@ public class DroidUIScrollView extends FrameLayout {
 
     @Override
     public void computeScroll() {
-        if (mScroller.computeScrollOffset()) {
-            // This is called at drawing time by ViewGroup.  We don't want to
-            // re-show the scrollbars at this point, which scrollTo will do,
-            // so we replicate most of scrollTo here.
-            //
-            //         It's a little odd to call onScrollChanged from inside the drawing.
-            //
-            //         It is, except when you remember that computeScroll() is used to
-            //         animate scrolling. So unless we want to defer the onScrollChanged()
-            //         until the end of the animated scrolling, we don't really have a
-            //         choice here.
-            //
-            //         I agree.  The alternative, which I think would be worse, is to post
-            //         something and tell the subclasses later.  This is bad because there
-            //         will be a window where mScrollX/Y is different from what the app
-            //         thinks it is.
-            //
-            int oldX = getScrollX();
-            int oldY = getScrollY();
-            int x = mScroller.getCurrX();
-            int y = mScroller.getCurrY();
-
-            if (oldX != x || oldY != y) {
-                final int verticalRange = getScrollRangeVertical();
-                final int horizontalRange = getScrollRangeHorizontal();
-                final int overscrollMode = getOverScrollMode();
-                final boolean canOverscroll = overscrollMode == OVER_SCROLL_ALWAYS ||
-                        (overscrollMode == OVER_SCROLL_IF_CONTENT_SCROLLS && (verticalRange > 0 || horizontalRange > 0));
-
-                overScrollBy(x - oldX, y - oldY, oldX, oldY, horizontalRange, verticalRange,
-                        mOverflingDistance, mOverflingDistance, false);
-                onScrollChanged(getScrollX(), getScrollY(), oldX, oldY);
-
-                if (canOverscroll) {
-                    if (y < 0 && oldY >= 0) {
-                        mEdgeGlowTop.onAbsorb((int) mScroller.getCurrVelocity());
-                    } else if (y > verticalRange && oldY <= verticalRange) {
-                        mEdgeGlowBottom.onAbsorb((int) mScroller.getCurrVelocity());
-                    }
-                    if (x < 0 && oldX >= 0) {
-                        mEdgeGlowLeft.onAbsorb((int) mScroller.getCurrVelocity());
-                    } else if (x > horizontalRange && oldX <= horizontalRange) {
-                        mEdgeGlowRight.onAbsorb((int) mScroller.getCurrVelocity());
-                    }
-                }
-            }
-
+        if (mMetrics == null) {
+            computeScrollInternal();
+            onScrollStateMaybeChanged();
+            return;
+        }
+        final long start = System.nanoTime();
+        computeScrollInternal();
+        mMetrics.record(ScrollMetrics.METRIC_COMPUTE_SCROLL, System.nanoTime() - start);
+        onScrollStateMaybeChanged();
+    }
+
+    private void computeScrollInternal() {
+        // This is called at drawing time by ViewGroup. The engine moves the content
+        // through onOverScrolled, which doesn't re-show the scrollbars, and
+        // reports edge impacts back through mEngineCallback.
+        // Locked to the Choreographer's frame start on Jelly Bean and up, rather than
+        // whenever drawing got here. Both clocks are uptime based.
+        final long frameTimeMillis = AnimationUtils.currentAnimationTimeMillis();
+        if (mZoomAnimating) {
+            stepZoomAnimation();
+        }
+        final boolean animating = mEngine.computeScrollOffset(frameTimeMillis);
+        updatePrefetchTarget();
+        mPrefetchScheduler.onFrame(frameTimeMillis * 1000000L);
+        if (animating) {
             if (!awakenScrollBars()) {
                 // Keep on drawing until the animation has finished.
                 if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
@@ -1460,21 +3077,13 @@ public class DroidUIScrollView extends FrameLayout {
         child.getDrawingRect(mTempRect);
 
         /* Offset from child's local coordinates to ScrollView coordinates */
-        offsetDescendantRectToMyCoords(child, mTempRect);
+        offsetDescendantRectToZoomedCoords(child, mTempRect);
 
         int scrollDeltaVertical = computeScrollDeltaToGetChildRectOnScreenVertically(mTempRect);
         int scrollDeltaHorizontal = computeScrollDeltaToGetChildRectOnScreenHorizontally(mTempRect);
 
-        if (scrollDeltaVertical != 0 && scrollDeltaHorizontal != 0) {
-            scrollBy(scrollDeltaHorizontal, scrollDeltaVertical);
-            return;
-        }
-        if(scrollDeltaVertical != 0){
-            scrollBy(0, scrollDeltaVertical);
-            return;
-        }
-        if(scrollDeltaHorizontal != 0){
-            scrollBy(scrollDeltaHorizontal, 0);
+        if (scrollDeltaVertical != 0 || scrollDeltaHorizontal != 0) {
+            scrollFromFinalBy(scrollDeltaHorizontal, scrollDeltaVertical, false);
         }
     }
 
@@ -1491,33 +3100,7 @@ public class DroidUIScrollView extends FrameLayout {
         final int deltaVertical = computeScrollDeltaToGetChildRectOnScreenVertically(rect);
         final boolean scroll = deltaHorizontal != 0 || deltaVertical != 0;
         if (scroll) {
-            if (immediate) {
-                if(deltaHorizontal != 0 && deltaVertical != 0){
-                    scrollBy(deltaHorizontal, deltaVertical);
-                    return scroll;
-                }
-                if(deltaHorizontal != 0){
-                    scrollBy(deltaHorizontal, 0);
-                    return scroll;
-                }
-                if(deltaVertical != 0){
-                    scrollBy(0, deltaVertical);
-                    return scroll;
-                }
-            } else {
-                if(deltaHorizontal != 0 && deltaVertical != 0){
-                    smoothScrollBy(deltaHorizontal, deltaVertical);
-                    return scroll;
-                }
-                if(deltaHorizontal != 0){
-                    smoothScrollBy(deltaHorizontal, 0);
-                    return scroll;
-                }
-                if(deltaVertical != 0){
-                    smoothScrollBy(0, deltaVertical);
-                    return scroll;
-                }
-            }
+            scrollFromFinalBy(deltaHorizontal, deltaVertical, !immediate);
         }
         return scroll;
     }
@@ -1528,64 +3111,14 @@ public class DroidUIScrollView extends FrameLayout {
      * at least the first screen size chunk of it).
      *
      * @param rect The rect.
-     * @return The scroll delta.
+     * @return The scroll delta, from where a running smooth scroll ends.
      */
     protected int computeScrollDeltaToGetChildRectOnScreenVertically(Rect rect) {
         if (getChildCount() == 0) return 0;
 
-        int height = getHeight();
-        int screenTop = getScrollY();
-        int screenBottom = screenTop + height;
-
-        int fadingEdge = getVerticalFadingEdgeLength();
-
-        // leave room for top fading edge as long as rect isn't at very top
-        if (rect.top > 0) {
-            screenTop += fadingEdge;
-        }
-
-        // leave room for bottom fading edge as long as rect isn't at very bottom
-        if (rect.bottom < getChildAt(0).getHeight()) {
-            screenBottom -= fadingEdge;
-        }
-
-        int scrollYDelta = 0;
-
-        if (rect.bottom > screenBottom && rect.top > screenTop) {
-            // need to move down to get it in view: move down just enough so
-            // that the entire rectangle is in view (or at least the first
-            // screen size chunk).
-
-            if (rect.height() > height) {
-                // just enough to get screen size chunk on
-                scrollYDelta += (rect.top - screenTop);
-            } else {
-                // get entire rect at bottom of screen
-                scrollYDelta += (rect.bottom - screenBottom);
-            }
-
-            // make sure we aren't scrolling beyond the end of our content
-            int bottom = getChildAt(0).getBottom();
-            int distanceToBottom = bottom - screenBottom;
-            scrollYDelta = Math.min(scrollYDelta, distanceToBottom);
-
-        } else if (rect.top < screenTop && rect.bottom < screenBottom) {
-            // need to move up to get it in view: move up just enough so that
-            // entire rectangle is in view (or at least the first screen
-            // size chunk of it).
-
-            if (rect.height() > height) {
-                // screen size chunk
-                scrollYDelta -= (screenBottom - rect.bottom);
-            } else {
-                // entire rect at top
-                scrollYDelta -= (screenTop - rect.top);
-            }
-
-            // make sure we aren't scrolling any further than the top our content
-            scrollYDelta = Math.max(scrollYDelta, -getScrollY());
-        }
-        return scrollYDelta;
+        return ScrollMath.computeScrollDeltaToGetRectOnScreen(rect.top, rect.bottom, mScrollAnimator.getFinalY(),
+                getHeight(), getVerticalFadingEdgeLength(), mViewport.getContentHeight(),
+                mViewport.getContentBottom());
     }
 
     /**
@@ -1594,64 +3127,14 @@ public class DroidUIScrollView extends FrameLayout {
      * at least the first screen size chunk of it).
      *
      * @param rect The rect.
-     * @return The scroll delta.
+     * @return The scroll delta, from where a running smooth scroll ends.
      */
     protected int computeScrollDeltaToGetChildRectOnScreenHorizontally(Rect rect) {
         if (getChildCount() == 0) return 0;
 
-        int width = getWidth();
-        int screenLeft = getScrollX();
-        int screenRight = screenLeft + width;
-
-        int fadingEdge = getHorizontalFadingEdgeLength();
-
-        // leave room for left fading edge as long as rect isn't at very left
-        if (rect.left > 0) {
-            screenLeft += fadingEdge;
-        }
-
-        // leave room for right fading edge as long as rect isn't at very right
-        if (rect.right < getChildAt(0).getWidth()) {
-            screenRight -= fadingEdge;
-        }
-
-        int scrollXDelta = 0;
-
-        if (rect.right > screenRight && rect.left > screenLeft) {
-            // need to move right to get it in view: move right just enough so
-            // that the entire rectangle is in view (or at least the first
-            // screen size chunk).
-
-            if (rect.width() > width) {
-                // just enough to get screen size chunk on
-                scrollXDelta += (rect.left - screenLeft);
-            } else {
-                // get entire rect at right of screen
-                scrollXDelta += (rect.right - screenRight);
-            }
-
-            // make sure we aren't scrolling beyond the end of our content
-            int right = getChildAt(0).getRight();
-            int distanceToRight = right - screenRight;
-            scrollXDelta = Math.min(scrollXDelta, distanceToRight);
-
-        } else if (rect.left < screenLeft && rect.right < screenRight) {
-            // need to move right to get it in view: move right just enough so that
-            // entire rectangle is in view (or at least the first screen
-            // size chunk of it).
-
-            if (rect.width() > width) {
-                // screen size chunk
-                scrollXDelta -= (screenRight - rect.right);
-            } else {
-                // entire rect at left
-                scrollXDelta -= (screenLeft - rect.left);
-            }
-
-            // make sure we aren't scrolling any further than the left our content
-            scrollXDelta = Math.max(scrollXDelta, -getScrollX());
-        }
-        return scrollXDelta;
+        return ScrollMath.computeScrollDeltaToGetRectOnScreen(rect.left, rect.right, mScrollAnimator.getFinalX(),
+                getWidth(), getHorizontalFadingEdgeLength(), mViewport.getContentWidth(),
+                mViewport.getContentRight());
     }
 
     @Override
@@ -1704,8 +3187,12 @@ public class DroidUIScrollView extends FrameLayout {
     public boolean requestChildRectangleOnScreen(View child, Rect rectangle,
                                                  boolean immediate) {
         // offset into coordinate space of this scroll view
-        rectangle.offset(child.getLeft() - child.getScrollX(),
-                child.getTop() - child.getScrollY());
+        if (mZoom == 1f) {
+            rectangle.offset(child.getLeft() - child.getScrollX(),
+                    child.getTop() - child.getScrollY());
+        } else {
+            mapChildRectToZoomedCoords(child, rectangle);
+        }
 
         return scrollToChildRect(rectangle, immediate);
     }
@@ -1713,13 +3200,22 @@ public class DroidUIScrollView extends FrameLayout {
     @Override
     public void requestLayout() {
         mIsLayoutDirty = true;
+        // This view or one of its descendants changed, measure it again.
+        mFillMeasureValid = false;
         super.requestLayout();
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
         super.onLayout(changed, l, t, r, b);
+        // Everything below scrolls and clamps against the new content size.
+        updateViewport();
         mIsLayoutDirty = false;
+        mFocusIndexDirty = true;
+        if (mSnapshotCache != null) {
+            mSnapshotCache.invalidateAll();
+            scheduleSnapshotPrepare();
+        }
         // Give a child focus if it needs it
         if (mChildToScrollTo != null && isViewDescendantOf(mChildToScrollTo, this)) {
             scrollToChild(mChildToScrollTo);
@@ -1727,35 +3223,31 @@ public class DroidUIScrollView extends FrameLayout {
         mChildToScrollTo = null;
 
         if (mSavedState != null) {
-            setScrollX(mSavedState.scrollPosition[0]);
-            setScrollY(mSavedState.scrollPosition[1]);
+            restoreScrollAnchor(mSavedState);
             mSavedState = null;
         }
-        final int childHeight = (getChildCount() > 0) ? getChildAt(0).getMeasuredHeight() : 0;
-        final int childWidth = (getChildCount() > 0) ? getChildAt(0).getMeasuredWidth() : 0;
-        final int verticalScrollRange = Math.max(0,
-                childHeight - (b - t - getPaddingBottom() - getPaddingTop()));
-        final int horizontalScrollRange = Math.max(0,
-                childWidth - (r - l - getPaddingLeft() - getPaddingRight()));
         // Don't forget to clamp
-        if (getScrollY() > verticalScrollRange) {
-            setScrollY(verticalScrollRange);
-        } else if (getScrollY() < 0) {
-            setScrollY(0);
+        final int scrollY = mViewport.clampScrollY(getScrollY());
+        if (scrollY != getScrollY()) {
+            setScrollY(scrollY);
         }
-        if (getScrollX() > horizontalScrollRange) {
-            setScrollX(horizontalScrollRange);
-        } else if (getScrollX() < 0) {
-            setScrollX(0);
+        final int scrollX = mViewport.clampScrollX(getScrollX());
+        if (scrollX != getScrollX()) {
+            setScrollX(scrollX);
         }
 
         // Calling this with the present values causes it to re-claim them
         scrollTo(getScrollX(), getScrollY());
+        updateVisibleTiles();
+        dispatchViewportChanged();
     }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
+        if (mSnapshotCache != null) {
+            mSnapshotCache.setViewportSize(w, h);
+        }
 
         View currentFocused = findFocus();
         if (null == currentFocused || this == currentFocused)
@@ -1766,7 +3258,7 @@ public class DroidUIScrollView extends FrameLayout {
         // view visible with the new screen height.
         if (isWithinDeltaOfScreenVertically(currentFocused, 0, oldh)) {
             currentFocused.getDrawingRect(mTempRect);
-            offsetDescendantRectToMyCoords(currentFocused, mTempRect);
+            offsetDescendantRectToZoomedCoords(currentFocused, mTempRect);
             int scrollDelta = computeScrollDeltaToGetChildRectOnScreenVertically(mTempRect);
             doScrollY(scrollDelta);
         }
@@ -1776,7 +3268,7 @@ public class DroidUIScrollView extends FrameLayout {
 
         if (isWithinDeltaOfScreenHorizontally(currentFocused, maxJump)) {
             currentFocused.getDrawingRect(mTempRect);
-            offsetDescendantRectToMyCoords(currentFocused, mTempRect);
+            offsetDescendantRectToZoomedCoords(currentFocused, mTempRect);
             int scrollDelta = computeScrollDeltaToGetChildRectOnScreenHorizontally(mTempRect);
             doScrollX(scrollDelta);
         }
@@ -1813,18 +3305,61 @@ public class DroidUIScrollView extends FrameLayout {
             mEdgeGlowLeft = null;
             mEdgeGlowRight = null;
         }
+        // Called by the View constructor, before the engine exists.
+        if (mEngine != null) {
+            mEngine.setOverScrollMode(mode);
+        }
         super.setOverScrollMode(mode);
     }
 
 
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        final boolean snapshot = mSnapshotCache != null && getChildCount() > 0 && !mZoomAnimating
+                && mEngine.getState() != SCROLL_STATE_IDLE;
+        final int offsetX = mPredictedOffsetX;
+        final int offsetY = mPredictedOffsetY;
+        if (!snapshot && offsetX == 0 && offsetY == 0) {
+            super.dispatchDraw(canvas);
+            return;
+        }
+        final int scrollX = getScrollX();
+        final int scrollY = getScrollY();
+        final int restoreCount = canvas.save();
+        canvas.clipRect(scrollX + getPaddingLeft(), scrollY + getPaddingTop(),
+                scrollX + getWidth() - getPaddingRight(), scrollY + getHeight() - getPaddingBottom());
+        // Ahead of the scroll position by the touch prediction, if any.
+        canvas.translate(-offsetX, -offsetY);
+        if (snapshot) {
+            // Scrolling, blit the snapshot instead of drawing the child.
+            updateSnapshotContentBounds();
+            final int left = scrollX + offsetX;
+            final int top = scrollY + offsetY;
+            mSnapshotCache.draw(canvas, left, top, left + getWidth(), top + getHeight());
+        } else {
+            super.dispatchDraw(canvas);
+        }
+        canvas.restoreToCount(restoreCount);
+    }
+
     @Override
     public void draw(Canvas canvas) {
+        if (mMetrics == null) {
+            drawInternal(canvas);
+            return;
+        }
+        final long start = System.nanoTime();
+        drawInternal(canvas);
+        mMetrics.record(ScrollMetrics.METRIC_DRAW, System.nanoTime() - start);
+    }
+
+    private void drawInternal(Canvas canvas) {
         super.draw(canvas);
         if (mEdgeGlowTop != null) {
             final int scrollY = getScrollY();
             if (!mEdgeGlowTop.isFinished()) {
                 final int restoreCount = canvas.save();
-                final int width = getWidth() - getPaddingLeft() - getPaddingRight();
+                final int width = mViewport.getWidth();
 
                 canvas.translate(getPaddingLeft(), Math.min(0, scrollY));
                 mEdgeGlowTop.setSize(width, getHeight());
@@ -1839,11 +3374,11 @@ public class DroidUIScrollView extends FrameLayout {
             }
             if (!mEdgeGlowBottom.isFinished()) {
                 final int restoreCount = canvas.save();
-                final int width = getWidth() - getPaddingLeft() - getPaddingRight();
+                final int width = mViewport.getWidth();
                 final int height = getHeight();
 
                 canvas.translate(-width + getPaddingLeft(),
-                        Math.max(getScrollRangeVertical(), scrollY) + height);
+                        Math.max(mViewport.getScrollRangeVertical(), scrollY) + height);
                 canvas.rotate(180, width, 0);
                 mEdgeGlowBottom.setSize(width, height);
                 if (mEdgeGlowBottom.draw(canvas)) {
@@ -1861,7 +3396,7 @@ public class DroidUIScrollView extends FrameLayout {
             final int scrollX = getScrollX();
             if (!mEdgeGlowLeft.isFinished()) {
                 final int restoreCount = canvas.save();
-                final int height = getHeight() - getPaddingTop() - getPaddingBottom();
+                final int height = mViewport.getHeight();
 
                 canvas.rotate(270);
                 canvas.translate(-height + getPaddingTop(), Math.min(0, scrollX));
@@ -1878,11 +3413,11 @@ public class DroidUIScrollView extends FrameLayout {
             if (!mEdgeGlowRight.isFinished()) {
                 final int restoreCount = canvas.save();
                 final int width = getWidth();
-                final int height = getHeight() - getPaddingTop() - getPaddingBottom();
+                final int height = mViewport.getHeight();
 
                 canvas.rotate(90);
                 canvas.translate(-getPaddingTop(),
-                        -(Math.max(getScrollRangeHorizontal(), scrollX) + width));
+                        -(Math.max(mViewport.getScrollRangeHorizontal(), scrollX) + width));
                 mEdgeGlowRight.setSize(height, width);
                 if (mEdgeGlowRight.draw(canvas)) {
                     if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
@@ -1897,33 +3432,7 @@ public class DroidUIScrollView extends FrameLayout {
     }
 
     private static int clamp(int n, int my, int child) {
-        if (my >= child || n < 0) {
-            /* my >= child is this case:
-             *                    |--------------- me ---------------|
-             *     |------ child ------|
-             * or
-             *     |--------------- me ---------------|
-             *            |------ child ------|
-             * or
-             *     |--------------- me ---------------|
-             *                                  |------ child ------|
-             *
-             * n < 0 is this case:
-             *     |------ me ------|
-             *                    |-------- child --------|
-             *     |-- mScrollX --|
-             */
-            return 0;
-        }
-        if ((my+n) > child) {
-            /* this case:
-             *                    |------ me ------|
-             *     |------ child ------|
-             *     |-- mScrollX --|
-             */
-            return child-my;
-        }
-        return n;
+        return ScrollMath.clamp(n, my, child);
     }
 
     /**
@@ -1951,8 +3460,8 @@ public class DroidUIScrollView extends FrameLayout {
                 if (down) {
                     int count = getChildCount();
                     if (count > 0) {
-                        View view = getChildAt(count - 1);
-                        mTempRect.bottom = view.getBottom() + getPaddingBottom();
+                        // The zoomed bottom of the content.
+                        mTempRect.bottom = mViewport.getContentBottom() + getPaddingBottom();
                         mTempRect.top = mTempRect.bottom - height;
                     }
                 }
@@ -1969,8 +3478,7 @@ public class DroidUIScrollView extends FrameLayout {
                 if (right) {
                     int count = getChildCount();
                     if (count > 0) {
-                        View view = getChildAt(0);
-                        mTempRect.right = view.getRight();
+                        mTempRect.right = mViewport.getContentRight();
                         mTempRect.left = mTempRect.right - width;
                     }
                 }
@@ -1996,7 +3504,8 @@ public class DroidUIScrollView extends FrameLayout {
         boolean handled = true;
 
         int height = getHeight();
-        int containerTop = getScrollY();
+        // Relative to where a running smooth scroll ends, that's what doScrollY adds to.
+        int containerTop = mScrollAnimator.getFinalY();
         int containerBottom = containerTop + height;
         boolean up = direction == View.FOCUS_UP;
 
@@ -2033,7 +3542,7 @@ public class DroidUIScrollView extends FrameLayout {
         boolean handled = true;
 
         int width = getWidth();
-        int containerLeft = getScrollX();
+        int containerLeft = mScrollAnimator.getFinalX();
         int containerRight = containerLeft + width;
         boolean goLeft = direction == View.FOCUS_LEFT;
 
@@ -2070,71 +3579,9 @@ public class DroidUIScrollView extends FrameLayout {
      *         be found
      */
     private View findFocusableViewInBoundsVertically(boolean topFocus, int top, int bottom) {
-
-        List<View> focusables = getFocusables(View.FOCUS_FORWARD);
-        View focusCandidate = null;
-
-        /*
-         * A fully contained focusable is one where its top is below the bound's
-         * top, and its bottom is above the bound's bottom. A partially
-         * contained focusable is one where some part of it is within the
-         * bounds, but it also has some part that is not within bounds.  A fully contained
-         * focusable is preferred to a partially contained focusable.
-         */
-        boolean foundFullyContainedFocusable = false;
-
-        int count = focusables.size();
-        for (int i = 0; i < count; i++) {
-            View view = focusables.get(i);
-            int viewTop = view.getTop();
-            int viewBottom = view.getBottom();
-
-            if (top < viewBottom && viewTop < bottom) {
-                /*
-                 * the focusable is in the target area, it is a candidate for
-                 * focusing
-                 */
-
-                final boolean viewIsFullyContained = (top < viewTop) &&
-                        (viewBottom < bottom);
-
-                if (focusCandidate == null) {
-                    /* No candidate, take this one */
-                    focusCandidate = view;
-                    foundFullyContainedFocusable = viewIsFullyContained;
-                } else {
-                    final boolean viewIsCloserToBoundary =
-                            (topFocus && viewTop < focusCandidate.getTop()) ||
-                                    (!topFocus && viewBottom > focusCandidate
-                                            .getBottom());
-
-                    if (foundFullyContainedFocusable) {
-                        if (viewIsFullyContained && viewIsCloserToBoundary) {
-                            /*
-                             * We're dealing with only fully contained views, so
-                             * it has to be closer to the boundary to beat our
-                             * candidate
-                             */
-                            focusCandidate = view;
-                        }
-                    } else {
-                        if (viewIsFullyContained) {
-                            /* Any fully contained view beats a partially contained view */
-                            focusCandidate = view;
-                            foundFullyContainedFocusable = true;
-                        } else if (viewIsCloserToBoundary) {
-                            /*
-                             * Partially contained view beats another partially
-                             * contained view if it's closer
-                             */
-                            focusCandidate = view;
-                        }
-                    }
-                }
-            }
-        }
-
-        return focusCandidate;
+        final int focusCandidate = ScrollMath.findFocusCandidateVertically(getFocusIndex(),
+                mFocusFilter, topFocus, top, bottom);
+        return focusCandidate == -1 ? null : mFocusables.get(focusCandidate);
     }
 
     /**
@@ -2153,70 +3600,48 @@ public class DroidUIScrollView extends FrameLayout {
      *         be found
      */
     private View findFocusableViewInBoundsHorizontally(boolean leftFocus, int left, int right) {
+        final int focusCandidate = ScrollMath.findFocusCandidateHorizontally(getFocusIndex(),
+                mFocusFilter, leftFocus, left, right);
+        return focusCandidate == -1 ? null : mFocusables.get(focusCandidate);
+    }
 
-        List<View> focusables = getFocusables(View.FOCUS_FORWARD);
-        View focusCandidate = null;
-
-        /*
-         * A fully contained focusable is one where its left is below the bound's
-         * left, and its right is above the bound's right. A partially
-         * contained focusable is one where some part of it is within the
-         * bounds, but it also has some part that is not within bounds.  A fully contained
-         * focusable is preferred to a partially contained focusable.
-         */
-        boolean foundFullyContainedFocusable = false;
-
-        int count = focusables.size();
-        for (int i = 0; i < count; i++) {
-            View view = focusables.get(i);
-            int viewLeft = view.getLeft();
-            int viewRight = view.getRight();
-
-            if (left < viewRight && viewLeft < right) {
-                /*
-                 * the focusable is in the target area, it is a candidate for
-                 * focusing
-                 */
-
-                final boolean viewIsFullyContained = (left < viewLeft) &&
-                        (viewRight < right);
-
-                if (focusCandidate == null) {
-                    /* No candidate, take this one */
-                    focusCandidate = view;
-                    foundFullyContainedFocusable = viewIsFullyContained;
-                } else {
-                    final boolean viewIsCloserToBoundary =
-                            (leftFocus && viewLeft < focusCandidate.getLeft()) ||
-                                    (!leftFocus && viewRight > focusCandidate.getRight());
-
-                    if (foundFullyContainedFocusable) {
-                        if (viewIsFullyContained && viewIsCloserToBoundary) {
-                            /*
-                             * We're dealing with only fully contained views, so
-                             * it has to be closer to the boundary to beat our
-                             * candidate
-                             */
-                            focusCandidate = view;
-                        }
-                    } else {
-                        if (viewIsFullyContained) {
-                            /* Any fully contained view beats a partially contained view */
-                            focusCandidate = view;
-                            foundFullyContainedFocusable = true;
-                        } else if (viewIsCloserToBoundary) {
-                            /*
-                             * Partially contained view beats another partially
-                             * contained view if it's closer
-                             */
-                            focusCandidate = view;
-                        }
-                    }
-                }
+    /**
+     * @return The index of the focusable descendants, rebuilding it if the layout or
+     *   the set of focusables changed since it was last built.
+     */
+    private SpatialIndex getFocusIndex() {
+        if (mFocusIndexDirty) {
+            mFocusables.clear();
+            addFocusables(mFocusables, View.FOCUS_FORWARD);
+            // We fall back to taking focus ourselves, we're never a candidate.
+            mFocusables.remove(this);
+
+            mFocusIndex.clear();
+            final int count = mFocusables.size();
+            for (int i = 0; i < count; i++) {
+                final View view = mFocusables.get(i);
+                view.getDrawingRect(mTempRect);
+                offsetDescendantRectToZoomedCoords(view, mTempRect);
+                mFocusIndex.add(mTempRect.left, mTempRect.top, mTempRect.right, mTempRect.bottom);
             }
+            mFocusIndex.build();
+            mFocusIndexDirty = false;
         }
+        return mFocusIndex;
+    }
+
+    /**
+     * Focusability changes that don't go through a layout pass may leave stale
+     * entries in the focus index, recheck them before handing out focus.
+     */
+    private static boolean isFocusCandidate(View view) {
+        return view.isFocusable() && view.getVisibility() == View.VISIBLE;
+    }
 
-        return focusCandidate;
+    @Override
+    public void focusableViewAvailable(View v) {
+        mFocusIndexDirty = true;
+        super.focusableViewAvailable(v);
     }
 
     /**
@@ -2241,16 +3666,16 @@ public class DroidUIScrollView extends FrameLayout {
                 int height = getHeight();
 
                 if (down) {
-                    mTempRect.top = getScrollY() + height;
+                    mTempRect.top = mScrollAnimator.getFinalY() + height;
                     int count = getChildCount();
                     if (count > 0) {
-                        View view = getChildAt(count - 1);
-                        if (mTempRect.top + height > view.getBottom()) {
-                            mTempRect.top = view.getBottom() - height;
+                        final int contentBottom = mViewport.getContentBottom();
+                        if (mTempRect.top + height > contentBottom) {
+                            mTempRect.top = contentBottom - height;
                         }
                     }
                 } else {
-                    mTempRect.top = getScrollY() - height;
+                    mTempRect.top = mScrollAnimator.getFinalY() - height;
                     if (mTempRect.top < 0) {
                         mTempRect.top = 0;
                     }
@@ -2264,16 +3689,16 @@ public class DroidUIScrollView extends FrameLayout {
                 int width = getWidth();
 
                 if (right) {
-                    mTempRect.left = getScrollX() + width;
+                    mTempRect.left = mScrollAnimator.getFinalX() + width;
                     int count = getChildCount();
                     if (count > 0) {
-                        View view = getChildAt(0);
-                        if (mTempRect.left + width > view.getRight()) {
-                            mTempRect.left = view.getRight() - width;
+                        final int contentRight = mViewport.getContentRight();
+                        if (mTempRect.left + width > contentRight) {
+                            mTempRect.left = contentRight - width;
                         }
                     }
                 } else {
-                    mTempRect.left = getScrollX() - width;
+                    mTempRect.left = mScrollAnimator.getFinalX() - width;
                     if (mTempRect.left < 0) {
                         mTempRect.left = 0;
                     }
@@ -2296,8 +3721,14 @@ public class DroidUIScrollView extends FrameLayout {
         }
         SavedState ss = (SavedState) state;
         super.onRestoreInstanceState(ss.getSuperState());
-        mSavedState = ss;
-        requestLayout();
+        if (getChildCount() > 0 && getWidth() > 0 && !isLayoutRequested()) {
+            // Already laid out and no layout coming, restore right away.
+            restoreScrollAnchor(ss);
+            scrollTo(mViewport.clampScrollX(getScrollX()), mViewport.clampScrollY(getScrollY()));
+        } else {
+            // Applied by the layout pass that is coming anyway.
+            mSavedState = ss;
+        }
     }
 
     @Override
@@ -2309,11 +3740,105 @@ public class DroidUIScrollView extends FrameLayout {
         }
         Parcelable superState = super.onSaveInstanceState();
         SavedState ss = new SavedState(superState);
-        ss.scrollPosition[0] = getScrollX();
-        ss.scrollPosition[1] = getScrollY();
+        saveScrollAnchor(ss);
         return ss;
     }
 
+    /**
+     * Records the scroll position as the descendant with an id under the top left
+     * corner of the viewport and the offset into it, which survives the content
+     * reflowing. The position as a fraction of the scroll range is kept as a fallback.
+     */
+    private void saveScrollAnchor(SavedState ss) {
+        final int rangeX = mViewport.getScrollRangeHorizontal();
+        final int rangeY = mViewport.getScrollRangeVertical();
+        ss.scrollFraction[0] = rangeX > 0 ? getScrollX() / (float) rangeX : 0f;
+        ss.scrollFraction[1] = rangeY > 0 ? getScrollY() / (float) rangeY : 0f;
+        ss.virtualScroll[0] = getVirtualScrollX();
+        ss.virtualScroll[1] = getVirtualScrollY();
+        ss.anchorId = NO_ID;
+        if (getChildCount() == 0 || mTileContainer != null) {
+            // Tiles are recycled and bound again, their ids don't identify content.
+            return;
+        }
+        final View child = getChildAt(0);
+        final float x = (getScrollX() + getPaddingLeft() - child.getLeft()) / mZoom;
+        final float y = (getScrollY() + getPaddingTop() - child.getTop()) / mZoom;
+        if (x < 0 || y < 0 || x >= child.getWidth() || y >= child.getHeight()) {
+            return;
+        }
+        final View anchor = findScrollAnchor(child, x, y);
+        if (anchor != null) {
+            ss.anchorId = anchor.getId();
+            ss.anchorOffset[0] = mAnchorPoint[0];
+            ss.anchorOffset[1] = mAnchorPoint[1];
+        }
+    }
+
+    /**
+     * @return The deepest visible view with an id containing the given point, in
+     * the coordinates of view, or null. The point, in the coordinates of the view
+     * found, is left in mAnchorPoint.
+     */
+    private View findScrollAnchor(View view, float x, float y) {
+        if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            final float groupX = x + group.getScrollX();
+            final float groupY = y + group.getScrollY();
+            for (int i = group.getChildCount() - 1; i >= 0; i--) {
+                final View child = group.getChildAt(i);
+                if (child.getVisibility() != VISIBLE) {
+                    continue;
+                }
+                final float childX = groupX - child.getLeft();
+                final float childY = groupY - child.getTop();
+                if (childX >= 0 && childY >= 0 && childX < child.getWidth() && childY < child.getHeight()) {
+                    final View anchor = findScrollAnchor(child, childX, childY);
+                    if (anchor != null) {
+                        return anchor;
+                    }
+                }
+            }
+        }
+        if (view.getId() != NO_ID) {
+            mAnchorPoint[0] = x;
+            mAnchorPoint[1] = y;
+            return view;
+        }
+        return null;
+    }
+
+    /**
+     * Scrolls back to the saved anchor, or to the saved fraction of the scroll
+     * range when the anchor is gone. Needs the child to be laid out, doesn't clamp.
+     */
+    private void restoreScrollAnchor(SavedState ss) {
+        if (getChildCount() == 0) {
+            return;
+        }
+        if (isVirtualCoordinatesActive()) {
+            scrollToVirtual(ss.virtualScroll[0], ss.virtualScroll[1]);
+            return;
+        }
+        final View child = getChildAt(0);
+        final View anchor = ss.anchorId != NO_ID ? child.findViewById(ss.anchorId) : null;
+        if (anchor != null && anchor.getVisibility() != GONE) {
+            mTempRect.set(0, 0, 0, 0);
+            if (anchor != child) {
+                ((ViewGroup) child).offsetDescendantRectToMyCoords(anchor, mTempRect);
+                // That takes the anchor's own scroll off, the offset is from its edge.
+                mTempRect.offset(anchor.getScrollX(), anchor.getScrollY());
+            }
+            setScrollX(Math.round(child.getLeft() - getPaddingLeft()
+                    + (mTempRect.left + ss.anchorOffset[0]) * mZoom));
+            setScrollY(Math.round(child.getTop() - getPaddingTop()
+                    + (mTempRect.top + ss.anchorOffset[1]) * mZoom));
+        } else {
+            setScrollX(Math.round(ss.scrollFraction[0] * mViewport.getScrollRangeHorizontal()));
+            setScrollY(Math.round(ss.scrollFraction[1] * mViewport.getScrollRangeVertical()));
+        }
+    }
+
     /**
      * Warning, Below are all protected View methods
      */
@@ -2325,16 +3850,6 @@ public class DroidUIScrollView extends FrameLayout {
      * @hide
      */
     protected float getVerticalScrollFactor() {
-        if (mVerticalScrollFactor == 0) {
-            TypedValue outValue = new TypedValue();
-//            if (!getContext().getTheme().resolveAttribute(
-//                    com.android.internal.R.attr.listPreferredItemHeight, outValue, true)) {
-//                throw new IllegalStateException(
-//                        "Expected theme to define listPreferredItemHeight.");
-//            }
-            mVerticalScrollFactor = outValue.getDimension(
-                    getContext().getResources().getDisplayMetrics());
-        }
         return mVerticalScrollFactor;
     }
 
@@ -2345,8 +3860,27 @@ public class DroidUIScrollView extends FrameLayout {
      * @hide
      */
     protected float getHorizontalScrollFactor() {
+        return mHorizontalScrollFactor;
+    }
+
+    /**
+     * Resolves the scroll factors from the theme's list item height, once, so that
+     * scroll events don't look the theme up.
+     */
+    private void resolveScrollFactors() {
+        final DisplayMetrics metrics = getResources().getDisplayMetrics();
+        final TypedValue outValue = new TypedValue();
+        float factor = 0;
+        if (getContext().getTheme().resolveAttribute(
+                android.R.attr.listPreferredItemHeight, outValue, true)) {
+            factor = outValue.getDimension(metrics);
+        }
+        if (factor <= 0) {
+            factor = DEFAULT_SCROLL_FACTOR_DP * metrics.density;
+        }
+        mVerticalScrollFactor = factor;
         // TODO: Should use something else.
-        return getVerticalScrollFactor();
+        mHorizontalScrollFactor = factor;
     }
 
     /**
@@ -2364,10 +3898,59 @@ public class DroidUIScrollView extends FrameLayout {
         }
     }
 
+    /**
+     * Interface definition for a callback to be invoked when the scroll position or
+     * the scroll state of a DroidUIScrollView changes.
+     */
+    public interface OnScrollChangeListener {
+        /**
+         * Called at most once per frame, with every change since the previous call.
+         *
+         * @param v           The view whose scroll position changed.
+         * @param scrollX     Current horizontal scroll origin.
+         * @param scrollY     Current vertical scroll origin.
+         * @param oldScrollX  Horizontal scroll origin at the previous call.
+         * @param oldScrollY  Vertical scroll origin at the previous call.
+         * @param scrollState One of the SCROLL_STATE_* constants, listeners may want
+         *                    to skip expensive work while it isn't idle.
+         */
+        void onScrollChange(DroidUIScrollView v, int scrollX, int scrollY,
+                            int oldScrollX, int oldScrollY, int scrollState);
+    }
 
+    /**
+     * Prepares content ahead of a fling, see {@link #setPrefetcher(Prefetcher)}.
+     */
+    public interface Prefetcher {
+        /**
+         * Prepare the content of the given viewport, in content coordinates, where
+         * the running fling is predicted to land. Called after each frame of the
+         * fling until it returns true, with a new viewport if the prediction changes.
+         *
+         * @param deadlineNanos System.nanoTime() by which to return, so that the next
+         *                      frame isn't delayed.
+         * @return Whether the viewport is fully prepared.
+         */
+        boolean prefetch(int left, int top, int right, int bottom, long deadlineNanos);
+    }
 
     static class SavedState extends BaseSavedState {
-        public int[] scrollPosition = new int[2];
+        /**
+         * Id of the descendant under the top left corner of the viewport, or NO_ID.
+         */
+        public int anchorId = NO_ID;
+        /**
+         * Position of the top left corner of the viewport inside the anchor.
+         */
+        public float[] anchorOffset = new float[2];
+        /**
+         * Scroll position as a fraction of the scroll range, used when there's no anchor.
+         */
+        public float[] scrollFraction = new float[2];
+        /**
+         * Scroll position over the whole content, used in virtual coordinates.
+         */
+        public long[] virtualScroll = new long[2];
 
         SavedState(Parcelable superState) {
             super(superState);
@@ -2375,20 +3958,29 @@ public class DroidUIScrollView extends FrameLayout {
 
         public SavedState(Parcel source) {
             super(source);
-            source.readIntArray(scrollPosition);
+            anchorId = source.readInt();
+            source.readFloatArray(anchorOffset);
+            source.readFloatArray(scrollFraction);
+            source.readLongArray(virtualScroll);
         }
 
         @Override
         public void writeToParcel(Parcel dest, int flags) {
             super.writeToParcel(dest, flags);
-            dest.writeIntArray(scrollPosition);
+            dest.writeInt(anchorId);
+            dest.writeFloatArray(anchorOffset);
+            dest.writeFloatArray(scrollFraction);
+            dest.writeLongArray(virtualScroll);
         }
 
         @Override
         public String toString() {
             return DroidUIScrollView.class.getCanonicalName()
                     + Integer.toHexString(System.identityHashCode(this))
-                    + " scrollPosition=[" + scrollPosition[0] + ", " + scrollPosition[1] +"]}";
+                    + " anchorId=" + anchorId
+                    + " anchorOffset=[" + anchorOffset[0] + ", " + anchorOffset[1] + "]"
+                    + " scrollFraction=[" + scrollFraction[0] + ", " + scrollFraction[1] + "]"
+                    + " virtualScroll=[" + virtualScroll[0] + ", " + virtualScroll[1] + "]}";
         }
 
         public static final Creator<SavedState> CREATOR
@@ -0,0 +1,13 @@
+package com.greycellofp.droiduiscrollview;
+
+/**
+ * Implemented by the content of a {@link DroidUIScrollView} that draws with less
+ * detail when zoomed out, see {@link DroidUIScrollView#setZoomEnabled(boolean)}.
+ */
+public interface LevelOfDetailAware {
+    /**
+     * The zoom crossed into another level of detail: level 0 covers zooms from 1
+     * up to 2, level 1 from 2 up to 4, level -1 from 0.5 up to 1 and so on.
+     */
+    void onLevelOfDetailChanged(int level);
+}
@@ -0,0 +1,75 @@
+package com.greycellofp.droiduiscrollview;
+
+import android.content.Context;
+import android.widget.OverScroller;
+
+/**
+ * {@link ScrollPhysics} backed by the platform {@link OverScroller}, for surfaces
+ * that want the stock Android fling feel. OverScroller keeps its own animation
+ * clock, so the times passed in are ignored.
+ */
+public class OverScrollerPhysics implements ScrollPhysics {
+    private final OverScroller mScroller;
+
+    public OverScrollerPhysics(Context context) {
+        mScroller = new OverScroller(context);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return mScroller.isFinished();
+    }
+
+    @Override
+    public void abortAnimation() {
+        mScroller.abortAnimation();
+    }
+
+    @Override
+    public boolean computeScrollOffset(long timeMillis) {
+        return mScroller.computeScrollOffset();
+    }
+
+    @Override
+    public int getCurrX() {
+        return mScroller.getCurrX();
+    }
+
+    @Override
+    public int getCurrY() {
+        return mScroller.getCurrY();
+    }
+
+    @Override
+    public int getFinalX() {
+        return mScroller.getFinalX();
+    }
+
+    @Override
+    public int getFinalY() {
+        return mScroller.getFinalY();
+    }
+
+    @Override
+    public float getCurrVelocity() {
+        return mScroller.getCurrVelocity();
+    }
+
+    @Override
+    public void startScroll(int startX, int startY, int dx, int dy, int duration, long timeMillis) {
+        mScroller.startScroll(startX, startY, dx, dy, duration);
+    }
+
+    @Override
+    public void fling(int startX, int startY, int velocityX, int velocityY,
+                      int minX, int maxX, int minY, int maxY, int overX, int overY,
+                      long timeMillis) {
+        mScroller.fling(startX, startY, velocityX, velocityY, minX, maxX, minY, maxY, overX, overY);
+    }
+
+    @Override
+    public boolean springBack(int startX, int startY, int minX, int maxX, int minY, int maxY,
+                              long timeMillis) {
+        return mScroller.springBack(startX, startY, minX, maxX, minY, maxY);
+    }
+}
@@ -0,0 +1,101 @@
+package com.greycellofp.droiduiscrollview;
+
+import android.view.View;
+
+/**
+ * Runs a {@link DroidUIScrollView.Prefetcher} for the region a fling is going to
+ * land on, in the time left over after each frame has been drawn.
+ *
+ * <p>The host reports the start of every frame with {@link #onFrame(long)}. The
+ * prefetch work is then posted behind the frame's traversal and given whatever is
+ * left of the frame, capped to a fixed budget so that input handling of the next
+ * frame isn't delayed.</p>
+ */
+class PrefetchScheduler implements Runnable {
+    /**
+     * Upper bound on the prefetch work done per frame.
+     */
+    private static final long MAX_BUDGET_NANOS = 4000000L;
+
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    private final View mHost;
+    private final DroidUIScrollView.Prefetcher mPrefetcher;
+    private long mFrameIntervalNanos = (long) (1000000000 / DEFAULT_REFRESH_RATE);
+
+    private boolean mHasTarget;
+    private int mTargetLeft;
+    private int mTargetTop;
+    private int mTargetRight;
+    private int mTargetBottom;
+
+    private long mFrameStartNanos;
+    private boolean mPosted;
+
+    PrefetchScheduler(View host, DroidUIScrollView.Prefetcher prefetcher) {
+        mHost = host;
+        mPrefetcher = prefetcher;
+    }
+
+    void setRefreshRate(float refreshRate) {
+        if (refreshRate < 1f) {
+            refreshRate = DEFAULT_REFRESH_RATE;
+        }
+        mFrameIntervalNanos = (long) (1000000000 / refreshRate);
+    }
+
+    /**
+     * Set the region to prepare, in the host's content coordinates.
+     */
+    void setTarget(int left, int top, int right, int bottom) {
+        if (mHasTarget && left == mTargetLeft && top == mTargetTop
+                && right == mTargetRight && bottom == mTargetBottom) {
+            return;
+        }
+        mTargetLeft = left;
+        mTargetTop = top;
+        mTargetRight = right;
+        mTargetBottom = bottom;
+        mHasTarget = true;
+    }
+
+    void clearTarget() {
+        mHasTarget = false;
+    }
+
+    /**
+     * A frame started at the given time, on the System.nanoTime() clock. That's the
+     * frame time the animations run at, not when drawing got to the host, so that
+     * the deadline falls before the next frame.
+     */
+    void onFrame(long frameStartNanos) {
+        mFrameStartNanos = frameStartNanos;
+        if (mHasTarget && !mPosted) {
+            mPosted = true;
+            mHost.post(this);
+        }
+    }
+
+    void cancel() {
+        mHost.removeCallbacks(this);
+        mPosted = false;
+        mHasTarget = false;
+    }
+
+    @Override
+    public void run() {
+        mPosted = false;
+        if (!mHasTarget) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final long deadline = Math.min(mFrameStartNanos + mFrameIntervalNanos, now + MAX_BUDGET_NANOS);
+        if (now >= deadline) {
+            // This frame ran long, try again after the next one.
+            return;
+        }
+        if (mPrefetcher.prefetch(mTargetLeft, mTargetTop, mTargetRight, mTargetBottom, deadline)) {
+            mHasTarget = false;
+        }
+    }
+}
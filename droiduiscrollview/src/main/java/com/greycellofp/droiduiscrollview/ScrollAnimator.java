@@ -0,0 +1,225 @@
+package com.greycellofp.droiduiscrollview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.Choreographer;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+/**
+ * Animates a {@link DroidUIScrollView} to positions set by the app, see
+ * {@link DroidUIScrollView#getScrollAnimator()}.
+ *
+ * <p>A new target given while an animation runs retargets it from wherever the
+ * content is, instead of cutting it short, so that following a moving target
+ * such as a cursor stays smooth. Targets given within the same frame are merged,
+ * only the last one is animated to. The animation is timed by the Choreographer
+ * frame time on Jelly Bean and up.</p>
+ *
+ * <p>A touch on the content, a fling or {@link #cancel()} stop the animation where
+ * it is. Everything happens on the UI thread.</p>
+ */
+public class ScrollAnimator {
+    public static final int DEFAULT_DURATION = 250;
+
+    /**
+     * Told when an animation comes to an end.
+     */
+    public interface OnScrollAnimationListener {
+        /**
+         * @param finished true if the target was reached, false if the animation
+         *                 was cancelled.
+         */
+        void onScrollAnimationEnd(ScrollAnimator animator, boolean finished);
+    }
+
+    private final DroidUIScrollView mHost;
+
+    private int mDuration = DEFAULT_DURATION;
+    private Interpolator mInterpolator = new DecelerateInterpolator();
+    private OnScrollAnimationListener mListener;
+
+    private boolean mRunning;
+    private boolean mRetarget;
+    private int mStartX;
+    private int mStartY;
+    private int mTargetX;
+    private int mTargetY;
+    private long mStartTimeNanos;
+    private long mLastFrameTimeNanos;
+
+    private boolean mFrameCallbackPosted;
+    /*
+     * A Choreographer.FrameCallback on Jelly Bean and up, kept as an Object so that
+     * this class still loads on older releases.
+     */
+    private Object mFrameCallback;
+    private final Runnable mFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            onFrame(System.nanoTime());
+        }
+    };
+
+    ScrollAnimator(DroidUIScrollView host) {
+        mHost = host;
+    }
+
+    public int getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * Set how long, in milliseconds, an animation takes, counted from its last
+     * retarget.
+     */
+    public void setDuration(int duration) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("Can't have a negative duration");
+        }
+        mDuration = duration;
+    }
+
+    public Interpolator getInterpolator() {
+        return mInterpolator;
+    }
+
+    /**
+     * Set the easing of the animation, a {@link DecelerateInterpolator} by default.
+     */
+    public void setInterpolator(Interpolator interpolator) {
+        if (interpolator == null) {
+            throw new IllegalArgumentException("Interpolator may not be null");
+        }
+        mInterpolator = interpolator;
+    }
+
+    public void setOnScrollAnimationListener(OnScrollAnimationListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @return Whether an animation is running or about to start.
+     */
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * @return Where the running animation ends, or the current scroll position.
+     */
+    public int getFinalX() {
+        return mRunning ? mTargetX : mHost.getScrollX();
+    }
+
+    /**
+     * @return Where the running animation ends, or the current scroll position.
+     */
+    public int getFinalY() {
+        return mRunning ? mTargetY : mHost.getScrollY();
+    }
+
+    /**
+     * Animate to the given scroll position, clamped to the scroll range.
+     */
+    public void animateTo(int x, int y) {
+        final Viewport viewport = mHost.getViewport();
+        mTargetX = viewport.clampScrollX(x);
+        mTargetY = viewport.clampScrollY(y);
+        mRetarget = true;
+        if (!mRunning) {
+            mRunning = true;
+            mLastFrameTimeNanos = 0;
+            mHost.onScrollAnimationStarted();
+        }
+        postFrameCallback();
+    }
+
+    /**
+     * Animate by the given amount, counted from the end of the running animation
+     * if there is one so that consecutive calls add up.
+     */
+    public void animateBy(int dx, int dy) {
+        animateTo(getFinalX() + dx, getFinalY() + dy);
+    }
+
+    /**
+     * Stop the running animation where it is.
+     */
+    public void cancel() {
+        if (mRunning) {
+            end(false);
+        }
+    }
+
+    private void end(boolean finished) {
+        mRunning = false;
+        removeFrameCallback();
+        mHost.onScrollAnimationEnded();
+        if (mListener != null) {
+            mListener.onScrollAnimationEnd(this, finished);
+        }
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        mFrameCallbackPosted = false;
+        if (!mRunning) {
+            return;
+        }
+        if (mRetarget) {
+            // Carry on from where the content is, counting from the previous frame
+            // so that a retarget doesn't stall for a frame.
+            mRetarget = false;
+            mStartX = mHost.getScrollX();
+            mStartY = mHost.getScrollY();
+            mStartTimeNanos = mLastFrameTimeNanos != 0 ? mLastFrameTimeNanos : frameTimeNanos;
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+
+        final long elapsedNanos = frameTimeNanos - mStartTimeNanos;
+        final float t = mDuration == 0 ? 1f : Math.min(1f, elapsedNanos / (mDuration * 1000000f));
+        final float fraction = mInterpolator.getInterpolation(t);
+        mHost.applyAnimatedScroll(mStartX + Math.round((mTargetX - mStartX) * fraction),
+                mStartY + Math.round((mTargetY - mStartY) * fraction));
+        if (t >= 1f) {
+            end(true);
+        } else {
+            postFrameCallback();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (mFrameCallbackPosted) {
+            return;
+        }
+        mFrameCallbackPosted = true;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            ViewCompat.postOnAnimation(mHost, mFrameRunnable);
+            return;
+        }
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onFrame(frameTimeNanos);
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void removeFrameCallback() {
+        if (!mFrameCallbackPosted) {
+            return;
+        }
+        mFrameCallbackPosted = false;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            mHost.removeCallbacks(mFrameRunnable);
+        } else {
+            Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.greycellofp.droiduiscrollview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+/**
+ * Opt-in performance counters for a {@link DroidUIScrollView}, see
+ * {@link DroidUIScrollView#setScrollMetrics(ScrollMetrics)}.
+ *
+ * <p>Records how long onTouchEvent, computeScroll and draw take into fixed-size
+ * histograms, and counts the frames shown and dropped while the content is
+ * dragged or flung. Dropped frames are counted from the Choreographer frame
+ * times and so only on Jelly Bean and up. Nothing is allocated while
+ * recording.</p>
+ *
+ * <p>Each time a gesture comes to rest the counters are handed to the
+ * {@link Sink}, if any, and reset. Everything happens on the UI thread.</p>
+ */
+public class ScrollMetrics {
+    public static final int METRIC_TOUCH_EVENT = 0;
+    public static final int METRIC_COMPUTE_SCROLL = 1;
+    public static final int METRIC_DRAW = 2;
+    private static final int METRIC_COUNT = 3;
+
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    /**
+     * Receives the counters of every gesture.
+     */
+    public interface Sink {
+        /**
+         * The snapshot is reused for the next gesture, copy out what needs keeping.
+         */
+        void onSnapshot(Snapshot snapshot);
+    }
+
+    /**
+     * The counters of one or more gestures.
+     */
+    public static final class Snapshot {
+        private final DurationHistogram[] mHistograms = new DurationHistogram[METRIC_COUNT];
+        private int mDragFrames;
+        private int mDroppedDragFrames;
+        private int mFlingFrames;
+        private int mDroppedFlingFrames;
+
+        Snapshot() {
+            for (int i = 0; i < METRIC_COUNT; i++) {
+                mHistograms[i] = new DurationHistogram();
+            }
+        }
+
+        /**
+         * @param metric One of the METRIC_* constants.
+         */
+        public DurationHistogram getHistogram(int metric) {
+            return mHistograms[metric];
+        }
+
+        public int getDragFrames() {
+            return mDragFrames;
+        }
+
+        public int getDroppedDragFrames() {
+            return mDroppedDragFrames;
+        }
+
+        /**
+         * Counts every frame the physics moved the content: flings, smooth scrolls
+         * and spring-backs.
+         */
+        public int getFlingFrames() {
+            return mFlingFrames;
+        }
+
+        public int getDroppedFlingFrames() {
+            return mDroppedFlingFrames;
+        }
+
+        void copyTo(Snapshot other) {
+            for (int i = 0; i < METRIC_COUNT; i++) {
+                mHistograms[i].copyTo(other.mHistograms[i]);
+            }
+            other.mDragFrames = mDragFrames;
+            other.mDroppedDragFrames = mDroppedDragFrames;
+            other.mFlingFrames = mFlingFrames;
+            other.mDroppedFlingFrames = mDroppedFlingFrames;
+        }
+
+        void reset() {
+            for (int i = 0; i < METRIC_COUNT; i++) {
+                mHistograms[i].reset();
+            }
+            mDragFrames = 0;
+            mDroppedDragFrames = 0;
+            mFlingFrames = 0;
+            mDroppedFlingFrames = 0;
+        }
+    }
+
+    private final Snapshot mCurrent = new Snapshot();
+    private final Snapshot mPublished = new Snapshot();
+    private Sink mSink;
+
+    private int mScrollState = ScrollEngine.STATE_IDLE;
+    private long mFrameIntervalNanos = (long) (1000000000 / DEFAULT_REFRESH_RATE);
+    private long mLastFrameTimeNanos;
+    private boolean mFrameCallbackPosted;
+    private Object mFrameCallback;
+
+    public void setSink(Sink sink) {
+        mSink = sink;
+    }
+
+    public Sink getSink() {
+        return mSink;
+    }
+
+    /**
+     * Hand the counters gathered so far to the sink and start over.
+     */
+    public void publish() {
+        mCurrent.copyTo(mPublished);
+        mCurrent.reset();
+        if (mSink != null) {
+            mSink.onSnapshot(mPublished);
+        }
+    }
+
+    /**
+     * Drop the counters gathered so far.
+     */
+    public void reset() {
+        mCurrent.reset();
+    }
+
+    void setRefreshRate(float refreshRate) {
+        if (refreshRate < 1f) {
+            refreshRate = DEFAULT_REFRESH_RATE;
+        }
+        mFrameIntervalNanos = (long) (1000000000 / refreshRate);
+    }
+
+    void record(int metric, long durationNanos) {
+        mCurrent.mHistograms[metric].record(durationNanos);
+    }
+
+    /**
+     * @param state One of the ScrollEngine.STATE_* constants.
+     */
+    void onScrollStateChanged(int state) {
+        if (state == mScrollState) {
+            return;
+        }
+        final int oldState = mScrollState;
+        mScrollState = state;
+        if (state != ScrollEngine.STATE_IDLE) {
+            postFrameCallback();
+        } else if (oldState != ScrollEngine.STATE_IDLE) {
+            mLastFrameTimeNanos = 0;
+            publish();
+        }
+    }
+
+    /**
+     * The scroll view went away mid-gesture.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    void stop() {
+        onScrollStateChanged(ScrollEngine.STATE_IDLE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && mFrameCallbackPosted) {
+            Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+            mFrameCallbackPosted = false;
+        }
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        mFrameCallbackPosted = false;
+        if (mScrollState == ScrollEngine.STATE_IDLE) {
+            return;
+        }
+        int dropped = 0;
+        if (mLastFrameTimeNanos != 0) {
+            final long elapsed = frameTimeNanos - mLastFrameTimeNanos;
+            // Rounded so that vsync jitter doesn't count as a dropped frame.
+            dropped = (int) Math.max(0, (elapsed + mFrameIntervalNanos / 2) / mFrameIntervalNanos - 1);
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        if (mScrollState == ScrollEngine.STATE_DRAGGING) {
+            mCurrent.mDragFrames++;
+            mCurrent.mDroppedDragFrames += dropped;
+        } else {
+            mCurrent.mFlingFrames++;
+            mCurrent.mDroppedFlingFrames += dropped;
+        }
+        postFrameCallback();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN || mFrameCallbackPosted) {
+            return;
+        }
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onFrame(frameTimeNanos);
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+        mFrameCallbackPosted = true;
+    }
+}
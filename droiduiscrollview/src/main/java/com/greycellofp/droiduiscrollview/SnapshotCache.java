@@ -0,0 +1,284 @@
+package com.greycellofp.droiduiscrollview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import java.util.ArrayList;
+
+/**
+ * Bitmap snapshots of a {@link DroidUIScrollView}'s content, cut into square tiles,
+ * so that frames of a drag or fling can be drawn by blitting a few bitmaps instead
+ * of drawing the whole hierarchy.
+ *
+ * <p>Tiles are laid out on a grid anchored at the content's top left corner and
+ * are rendered on demand or ahead of time with {@link #prepare}. Tiles are dropped
+ * when the content they show is invalidated, and their bitmaps are reused for
+ * other tiles once the cache is full.</p>
+ */
+class SnapshotCache {
+    /**
+     * Draws the content being cached, in content coordinates.
+     */
+    interface Renderer {
+        void renderSnapshot(Canvas canvas);
+    }
+
+    static final int DEFAULT_TILE_SIZE = 256;
+
+    private final int mTileSize;
+    private final Renderer mRenderer;
+    private final Canvas mCanvas = new Canvas();
+
+    /*
+     * The cached tiles, unordered. Keys pack the row in the upper 32 bits and the
+     * column in the lower 32. There are only ever a few dozen tiles, a linear scan
+     * finds them faster than a map would and without boxing.
+     */
+    private long[] mTileKeys = new long[0];
+    private Bitmap[] mTileBitmaps = new Bitmap[0];
+    private int mTileCount;
+    private final ArrayList<Bitmap> mPool = new ArrayList<Bitmap>();
+    private int mMaxTiles;
+
+    private int mContentLeft;
+    private int mContentTop;
+    private int mContentWidth;
+    private int mContentHeight;
+
+    private int mRenderedTileCount;
+
+    SnapshotCache(int tileSize, Renderer renderer) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Can't have a tileSize < 1");
+        }
+        mTileSize = tileSize;
+        mRenderer = renderer;
+    }
+
+    int getTileSize() {
+        return mTileSize;
+    }
+
+    /**
+     * @return How many tiles have been rendered so far.
+     */
+    int getRenderedTileCount() {
+        return mRenderedTileCount;
+    }
+
+    /**
+     * Size the cache to hold the tiles covering a viewport of the given size,
+     * plus a ring of tiles around it on every side.
+     */
+    void setViewportSize(int width, int height) {
+        final int columns = (width + mTileSize - 1) / mTileSize + 2;
+        final int rows = (height + mTileSize - 1) / mTileSize + 2;
+        mMaxTiles = columns * rows;
+        while (mPool.size() > 0 && mTileCount + mPool.size() > mMaxTiles) {
+            mPool.remove(mPool.size() - 1).recycle();
+        }
+    }
+
+    /**
+     * Set where the content is, drops every tile when it moved or changed size.
+     */
+    void setContentBounds(int left, int top, int width, int height) {
+        if (left == mContentLeft && top == mContentTop
+                && width == mContentWidth && height == mContentHeight) {
+            return;
+        }
+        mContentLeft = left;
+        mContentTop = top;
+        mContentWidth = width;
+        mContentHeight = height;
+        invalidateAll();
+    }
+
+    /**
+     * Drop the tiles intersecting the given rectangle, in content coordinates.
+     */
+    void invalidate(int left, int top, int right, int bottom) {
+        for (int i = mTileCount - 1; i >= 0; i--) {
+            final long key = mTileKeys[i];
+            final long tileLeft = mContentLeft + (long) columnOf(key) * mTileSize;
+            final long tileTop = mContentTop + (long) rowOf(key) * mTileSize;
+            if (tileLeft < right && tileLeft + mTileSize > left
+                    && tileTop < bottom && tileTop + mTileSize > top) {
+                mPool.add(removeTileAt(i));
+            }
+        }
+    }
+
+    void invalidateAll() {
+        for (int i = 0; i < mTileCount; i++) {
+            mPool.add(mTileBitmaps[i]);
+            mTileBitmaps[i] = null;
+        }
+        mTileCount = 0;
+    }
+
+    /**
+     * Frees every bitmap.
+     */
+    void release() {
+        for (int i = 0; i < mTileCount; i++) {
+            mTileBitmaps[i].recycle();
+            mTileBitmaps[i] = null;
+        }
+        mTileCount = 0;
+        for (Bitmap bitmap : mPool) {
+            bitmap.recycle();
+        }
+        mPool.clear();
+    }
+
+    /**
+     * Blits the tiles covering the given viewport, rendering the missing ones.
+     * The canvas is in content coordinates.
+     */
+    void draw(Canvas canvas, int left, int top, int right, int bottom) {
+        final int firstColumn = firstIndex(left - mContentLeft);
+        final int lastColumn = lastIndex(Math.min(right, mContentLeft + mContentWidth) - mContentLeft);
+        final int firstRow = firstIndex(top - mContentTop);
+        final int lastRow = lastIndex(Math.min(bottom, mContentTop + mContentHeight) - mContentTop);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                final Bitmap tile = getTile(row, column, left, top, right, bottom);
+                canvas.drawBitmap(tile, mContentLeft + column * mTileSize,
+                        mContentTop + row * mTileSize, null);
+            }
+        }
+    }
+
+    /**
+     * Render the missing tiles intersecting the given rectangle, in content
+     * coordinates, as long as they fit in the cache.
+     */
+    void prepare(int left, int top, int right, int bottom) {
+        final int firstColumn = firstIndex(left - mContentLeft);
+        final int lastColumn = lastIndex(Math.min(right, mContentLeft + mContentWidth) - mContentLeft);
+        final int firstRow = firstIndex(top - mContentTop);
+        final int lastRow = lastIndex(Math.min(bottom, mContentTop + mContentHeight) - mContentTop);
+        if ((lastColumn - firstColumn + 1) * (lastRow - firstRow + 1) > mMaxTiles) {
+            return;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                getTile(row, column, left, top, right, bottom);
+            }
+        }
+    }
+
+    private int firstIndex(int offset) {
+        return Math.max(0, offset / mTileSize);
+    }
+
+    private int lastIndex(int end) {
+        if (end <= 0) {
+            return -1;
+        }
+        return (end - 1) / mTileSize;
+    }
+
+    private static long keyOf(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    private static int rowOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int columnOf(long key) {
+        return (int) key;
+    }
+
+    private int indexOfTile(long key) {
+        for (int i = 0; i < mTileCount; i++) {
+            if (mTileKeys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void putTile(long key, Bitmap tile) {
+        if (mTileCount == mTileKeys.length) {
+            final int capacity = Math.max(mMaxTiles, mTileCount + 1);
+            final long[] keys = new long[capacity];
+            final Bitmap[] bitmaps = new Bitmap[capacity];
+            System.arraycopy(mTileKeys, 0, keys, 0, mTileCount);
+            System.arraycopy(mTileBitmaps, 0, bitmaps, 0, mTileCount);
+            mTileKeys = keys;
+            mTileBitmaps = bitmaps;
+        }
+        mTileKeys[mTileCount] = key;
+        mTileBitmaps[mTileCount] = tile;
+        mTileCount++;
+    }
+
+    /**
+     * Removes the tile at the given index, moving the last tile in its place.
+     */
+    private Bitmap removeTileAt(int index) {
+        final Bitmap tile = mTileBitmaps[index];
+        mTileCount--;
+        mTileKeys[index] = mTileKeys[mTileCount];
+        mTileBitmaps[index] = mTileBitmaps[mTileCount];
+        mTileBitmaps[mTileCount] = null;
+        return tile;
+    }
+
+    private Bitmap getTile(int row, int column, int left, int top, int right, int bottom) {
+        final long key = keyOf(row, column);
+        final int index = indexOfTile(key);
+        if (index >= 0) {
+            return mTileBitmaps[index];
+        }
+
+        Bitmap tile;
+        if (mTileCount >= mMaxTiles) {
+            tile = evictFarthest(left, top, right, bottom);
+        } else if (mPool.size() > 0) {
+            tile = mPool.remove(mPool.size() - 1);
+        } else {
+            tile = Bitmap.createBitmap(mTileSize, mTileSize, Bitmap.Config.ARGB_8888);
+        }
+        tile.eraseColor(Color.TRANSPARENT);
+
+        final int tileLeft = mContentLeft + column * mTileSize;
+        final int tileTop = mContentTop + row * mTileSize;
+        mCanvas.setBitmap(tile);
+        final int restoreCount = mCanvas.save();
+        mCanvas.translate(-tileLeft, -tileTop);
+        mCanvas.clipRect(tileLeft, tileTop, tileLeft + mTileSize, tileTop + mTileSize);
+        mRenderer.renderSnapshot(mCanvas);
+        mCanvas.restoreToCount(restoreCount);
+        mCanvas.setBitmap(null);
+
+        putTile(key, tile);
+        mRenderedTileCount++;
+        return tile;
+    }
+
+    /**
+     * Removes the tile farthest from the given rectangle and returns its bitmap.
+     */
+    private Bitmap evictFarthest(int left, int top, int right, int bottom) {
+        final int centerX = (left + right) / 2;
+        final int centerY = (top + bottom) / 2;
+        int farthest = 0;
+        long farthestDistance = -1;
+        for (int i = 0; i < mTileCount; i++) {
+            final long key = mTileKeys[i];
+            final long dx = mContentLeft + (long) columnOf(key) * mTileSize + mTileSize / 2 - centerX;
+            final long dy = mContentTop + (long) rowOf(key) * mTileSize + mTileSize / 2 - centerY;
+            final long distance = dx * dx + dy * dy;
+            if (distance > farthestDistance) {
+                farthestDistance = distance;
+                farthest = i;
+            }
+        }
+        return removeTileAt(farthest);
+    }
+}
@@ -0,0 +1,256 @@
+package com.greycellofp.droiduiscrollview;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Bundle;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewParent;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityManager;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityNodeProvider;
+
+/**
+ * Exposes the tiles of a {@link DroidUIScrollView} in tiled mode to accessibility
+ * services as virtual nodes, see {@link DroidUIScrollView#setTileAccessibilityEnabled(boolean)}.
+ *
+ * <p>Nodes are built from the {@link TileAdapter}'s grid and
+ * {@link TileAdapter#getTileContentDescription(int, int)}, no tile view is needed
+ * for them. Only the tiles around the viewport are listed as children of the
+ * scroll view, the rest come into reach by scrolling.</p>
+ *
+ * <p>A tile's virtual view id packs its row and column, wrapped around every
+ * {@link #ID_ROWS} rows and {@link #ID_COLUMNS} columns so that ids fit in an int
+ * however large the grid is. An id stands for the tile nearest to the viewport
+ * that it wraps to, which only tiles half a wrap away from the viewport share.</p>
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class TileAccessibilityNodeProvider extends AccessibilityNodeProvider {
+    private static final int INVALID_ID = Integer.MIN_VALUE;
+
+    private static final int ID_COLUMN_BITS = 16;
+    static final int ID_COLUMNS = 1 << ID_COLUMN_BITS;
+    /**
+     * One bit fewer than the columns, ids stay positive.
+     */
+    static final int ID_ROWS = 1 << 15;
+
+    private static final String TILE_CLASS_NAME = View.class.getName();
+
+    private final DroidUIScrollView mHost;
+    private final AccessibilityManager mManager;
+
+    private final Rect mTileWindow = new Rect();
+    private final Rect mTempRect = new Rect();
+    private final Point mTile = new Point();
+    private final int[] mTempLocation = new int[2];
+
+    private int mAccessibilityFocusedId = INVALID_ID;
+    private int mHoveredId = INVALID_ID;
+
+    TileAccessibilityNodeProvider(DroidUIScrollView host) {
+        mHost = host;
+        mManager = (AccessibilityManager) host.getContext()
+                .getSystemService(Context.ACCESSIBILITY_SERVICE);
+    }
+
+    @Override
+    public AccessibilityNodeInfo createAccessibilityNodeInfo(int virtualViewId) {
+        if (virtualViewId == View.NO_ID) {
+            return createHostNode();
+        }
+        return createTileNode(virtualViewId);
+    }
+
+    private AccessibilityNodeInfo createHostNode() {
+        final AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain(mHost);
+        // Lists no real children, see DroidUIScrollView.addChildrenForAccessibility.
+        mHost.onInitializeAccessibilityNodeInfo(info);
+        final TileAdapter adapter = mHost.getTileAdapter();
+        if (adapter != null && mHost.getTileWindow(mTileWindow)) {
+            for (int row = mTileWindow.top; row <= mTileWindow.bottom; row++) {
+                for (int column = mTileWindow.left; column <= mTileWindow.right; column++) {
+                    info.addChild(mHost, idOf(row, column));
+                }
+            }
+        }
+        return info;
+    }
+
+    private AccessibilityNodeInfo createTileNode(int virtualViewId) {
+        final TileAdapter adapter = mHost.getTileAdapter();
+        if (!findTile(virtualViewId, mTile)) {
+            return null;
+        }
+        final int row = mTile.y;
+        final int column = mTile.x;
+        if (!mHost.getTileBounds(row, column, mTempRect)) {
+            return null;
+        }
+
+        final AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain(mHost, virtualViewId);
+        info.setPackageName(mHost.getContext().getPackageName());
+        info.setClassName(TILE_CLASS_NAME);
+        info.setContentDescription(adapter.getTileContentDescription(row, column));
+        info.setParent(mHost);
+        info.setEnabled(mHost.isEnabled());
+        info.setBoundsInParent(mTempRect);
+
+        final boolean visible = mTempRect.intersect(0, 0, mHost.getWidth(), mHost.getHeight());
+        info.setVisibleToUser(visible);
+        mHost.getLocationOnScreen(mTempLocation);
+        mTempRect.offset(mTempLocation[0], mTempLocation[1]);
+        info.setBoundsInScreen(mTempRect);
+
+        if (virtualViewId == mAccessibilityFocusedId) {
+            info.setAccessibilityFocused(true);
+            info.addAction(AccessibilityNodeInfo.ACTION_CLEAR_ACCESSIBILITY_FOCUS);
+        } else {
+            info.addAction(AccessibilityNodeInfo.ACTION_ACCESSIBILITY_FOCUS);
+        }
+        return info;
+    }
+
+    @Override
+    public boolean performAction(int virtualViewId, int action, Bundle arguments) {
+        if (virtualViewId == View.NO_ID) {
+            return mHost.performAccessibilityAction(action, arguments);
+        }
+        switch (action) {
+            case AccessibilityNodeInfo.ACTION_ACCESSIBILITY_FOCUS: {
+                if (virtualViewId == mAccessibilityFocusedId) {
+                    return false;
+                }
+                if (!findTile(virtualViewId, mTile)) {
+                    return false;
+                }
+                clearAccessibilityFocus();
+                mAccessibilityFocusedId = virtualViewId;
+                mHost.scrollTileOnScreen(mTile.y, mTile.x);
+                mHost.invalidate();
+                sendEventForTile(virtualViewId, AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUSED);
+            } return true;
+            case AccessibilityNodeInfo.ACTION_CLEAR_ACCESSIBILITY_FOCUS: {
+                if (virtualViewId != mAccessibilityFocusedId) {
+                    return false;
+                }
+                clearAccessibilityFocus();
+            } return true;
+        }
+        return false;
+    }
+
+    private void clearAccessibilityFocus() {
+        if (mAccessibilityFocusedId == INVALID_ID) {
+            return;
+        }
+        final int virtualViewId = mAccessibilityFocusedId;
+        mAccessibilityFocusedId = INVALID_ID;
+        mHost.invalidate();
+        sendEventForTile(virtualViewId, AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUS_CLEARED);
+    }
+
+    /**
+     * Forget the tiles' state, such as when the adapter or its data changed.
+     */
+    void reset() {
+        mAccessibilityFocusedId = INVALID_ID;
+        mHoveredId = INVALID_ID;
+    }
+
+    /**
+     * Turns hover events into hover events on the tile under the pointer, so that
+     * touch exploration lands on tiles.
+     *
+     * @return Whether the event was consumed.
+     */
+    boolean dispatchHoverEvent(MotionEvent event) {
+        if (!mManager.isEnabled() || !mManager.isTouchExplorationEnabled()) {
+            return false;
+        }
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_HOVER_ENTER:
+            case MotionEvent.ACTION_HOVER_MOVE: {
+                final int virtualViewId = mHost.findTileAt(event.getX(), event.getY(), mTile)
+                        ? idOf(mTile.y, mTile.x) : INVALID_ID;
+                updateHoveredTile(virtualViewId);
+                return virtualViewId != INVALID_ID;
+            }
+            case MotionEvent.ACTION_HOVER_EXIT: {
+                if (mHoveredId == INVALID_ID) {
+                    return false;
+                }
+                updateHoveredTile(INVALID_ID);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void updateHoveredTile(int virtualViewId) {
+        if (virtualViewId == mHoveredId) {
+            return;
+        }
+        final int previous = mHoveredId;
+        mHoveredId = virtualViewId;
+        // Enter first, as the framework does.
+        if (virtualViewId != INVALID_ID) {
+            sendEventForTile(virtualViewId, AccessibilityEvent.TYPE_VIEW_HOVER_ENTER);
+        }
+        if (previous != INVALID_ID) {
+            sendEventForTile(previous, AccessibilityEvent.TYPE_VIEW_HOVER_EXIT);
+        }
+    }
+
+    private boolean sendEventForTile(int virtualViewId, int eventType) {
+        final ViewParent parent = mHost.getParent();
+        final TileAdapter adapter = mHost.getTileAdapter();
+        if (!mManager.isEnabled() || parent == null || adapter == null
+                || !findTile(virtualViewId, mTile)) {
+            return false;
+        }
+        final AccessibilityEvent event = AccessibilityEvent.obtain(eventType);
+        event.setPackageName(mHost.getContext().getPackageName());
+        event.setClassName(TILE_CLASS_NAME);
+        event.setContentDescription(adapter.getTileContentDescription(mTile.y, mTile.x));
+        event.setEnabled(mHost.isEnabled());
+        event.setSource(mHost, virtualViewId);
+        return parent.requestSendAccessibilityEvent(mHost, event);
+    }
+
+    static int idOf(int row, int column) {
+        return ((row & (ID_ROWS - 1)) << ID_COLUMN_BITS) | (column & (ID_COLUMNS - 1));
+    }
+
+    /**
+     * Puts the column and row of the tile an id stands for into outTile's x and y.
+     *
+     * @return false if the id doesn't stand for a tile.
+     */
+    private boolean findTile(int virtualViewId, Point outTile) {
+        final TileAdapter adapter = mHost.getTileAdapter();
+        if (adapter == null || virtualViewId < 0 || !mHost.getTileWindow(mTileWindow)) {
+            return false;
+        }
+        final int row = unwrap(virtualViewId >>> ID_COLUMN_BITS, ID_ROWS, mTileWindow.centerY());
+        final int column = unwrap(virtualViewId & (ID_COLUMNS - 1), ID_COLUMNS, mTileWindow.centerX());
+        if (row < 0 || column < 0 || row >= adapter.getRowCount() || column >= adapter.getColumnCount()) {
+            return false;
+        }
+        outTile.set(column, row);
+        return true;
+    }
+
+    /**
+     * @return The index nearest to center that wraps to the given one.
+     */
+    static int unwrap(int wrapped, int period, int center) {
+        final int base = center - period / 2;
+        // The period is a power of two, the mask takes the difference modulo it.
+        return base + ((wrapped - base) & (period - 1));
+    }
+}
@@ -0,0 +1,105 @@
+package com.greycellofp.droiduiscrollview;
+
+import android.database.DataSetObservable;
+import android.database.DataSetObserver;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Supplies the content of a {@link DroidUIScrollView} running in tiled mode.
+ *
+ * <p>The content is a grid of {@link #getRowCount()} x {@link #getColumnCount()}
+ * equally sized tiles. Only the tiles that intersect the viewport (plus the
+ * margin set with {@link DroidUIScrollView#setTileMargin(int)}) are attached,
+ * every other tile view is handed back through <code>convertView</code> so that
+ * memory use does not depend on the size of the content.</p>
+ */
+public abstract class TileAdapter {
+    private final DataSetObservable mDataSetObservable = new DataSetObservable();
+    private int mLevelOfDetail;
+
+    /**
+     * @return The number of tile rows.
+     */
+    public abstract int getRowCount();
+
+    /**
+     * @return The number of tile columns.
+     */
+    public abstract int getColumnCount();
+
+    /**
+     * @return The width of a single tile in pixels.
+     */
+    public abstract int getTileWidth();
+
+    /**
+     * @return The height of a single tile in pixels.
+     */
+    public abstract int getTileHeight();
+
+    /**
+     * Get a View that displays the tile at the given position.
+     *
+     * @param row         The row of the tile.
+     * @param column      The column of the tile.
+     * @param convertView A recycled view of the type returned by
+     *                    {@link #getTileViewType(int, int)} for this tile, or null.
+     * @param parent      The parent the view will be attached to.
+     * @return A View for the tile.
+     */
+    public abstract View getTileView(int row, int column, View convertView, ViewGroup parent);
+
+    /**
+     * @return The type of the view that {@link #getTileView} will create for the tile,
+     *   in the range [0, {@link #getViewTypeCount()}).
+     */
+    public int getTileViewType(int row, int column) {
+        return 0;
+    }
+
+    /**
+     * @return The number of distinct view types handed out by {@link #getTileView}.
+     */
+    public int getViewTypeCount() {
+        return 1;
+    }
+
+    /**
+     * @return The level of detail tiles should be drawn at, see
+     *   {@link LevelOfDetailAware#onLevelOfDetailChanged(int)}. Every tile is rebound
+     *   when it changes.
+     */
+    public int getLevelOfDetail() {
+        return mLevelOfDetail;
+    }
+
+    void setLevelOfDetail(int levelOfDetail) {
+        mLevelOfDetail = levelOfDetail;
+    }
+
+    /**
+     * @return What accessibility services announce for the tile, see
+     *   {@link DroidUIScrollView#setTileAccessibilityEnabled(boolean)}. Called for
+     *   tiles that have no view, so this shouldn't need one.
+     */
+    public CharSequence getTileContentDescription(int row, int column) {
+        return null;
+    }
+
+    public void registerDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.registerObserver(observer);
+    }
+
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        mDataSetObservable.unregisterObserver(observer);
+    }
+
+    /**
+     * Notifies the attached scroll view that the tiles have changed and every
+     * attached tile should be rebound.
+     */
+    public void notifyDataSetChanged() {
+        mDataSetObservable.notifyChanged();
+    }
+}
@@ -0,0 +1,391 @@
+package com.greycellofp.droiduiscrollview;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+
+/**
+ * The single child a {@link DroidUIScrollView} hosts in tiled mode. It is as large
+ * as the whole tile grid but only keeps the tiles inside the visible window
+ * attached, the rest are parked in a {@link TileRecycler}.
+ */
+class TileContainer extends ViewGroup implements LevelOfDetailAware {
+    /**
+     * In virtual mode, the most the window of laid out tiles spans along an axis,
+     * in pixels. Well within what a float holds to the pixel.
+     */
+    static final int VIRTUAL_WINDOW_SIZE = 1 << 21;
+
+    private TileAdapter mAdapter;
+    private final TileRecycler mRecycler = new TileRecycler();
+    private int mLevelOfDetail;
+
+    /*
+     * Tiles bound and measured ahead of a fling's landing but not attached yet.
+     */
+    private final ArrayList<View> mPrefetched = new ArrayList<View>();
+
+    /*
+     * Inclusive range of the tiles currently attached, empty when mLastRow < mFirstRow.
+     */
+    private int mFirstRow;
+    private int mLastRow = -1;
+    private int mFirstColumn;
+    private int mLastColumn = -1;
+
+    /*
+     * In virtual mode this view only spans a window of the grid, starting at the
+     * origin tile, so that positions stay small whatever the size of the grid.
+     */
+    private boolean mVirtual;
+    private int mOriginRow;
+    private int mOriginColumn;
+
+    TileContainer(Context context) {
+        super(context);
+    }
+
+    void setAdapter(TileAdapter adapter) {
+        recycleAllTiles();
+        mRecycler.clear();
+        mAdapter = adapter;
+        mOriginRow = 0;
+        mOriginColumn = 0;
+        if (adapter != null) {
+            adapter.setLevelOfDetail(mLevelOfDetail);
+            mRecycler.setViewTypeCount(adapter.getViewTypeCount());
+        }
+        requestLayout();
+    }
+
+    /**
+     * Rebinds every tile, called when the adapter's data set changes.
+     */
+    void onDataSetChanged() {
+        recycleAllTiles();
+        if (mAdapter != null && mAdapter.getViewTypeCount() != mRecycler.getViewTypeCount()) {
+            mRecycler.setViewTypeCount(mAdapter.getViewTypeCount());
+        }
+        if (mAdapter != null) {
+            // The grid may have shrunk under the window.
+            mOriginRow = Math.max(0, Math.min(mOriginRow, mAdapter.getRowCount() - getWindowRowCount()));
+            mOriginColumn = Math.max(0, Math.min(mOriginColumn,
+                    mAdapter.getColumnCount() - getWindowColumnCount()));
+        }
+        requestLayout();
+    }
+
+    void setVirtual(boolean virtual) {
+        if (virtual == mVirtual) {
+            return;
+        }
+        mVirtual = virtual;
+        mOriginRow = 0;
+        mOriginColumn = 0;
+        recycleAllTiles();
+        requestLayout();
+    }
+
+    boolean isVirtual() {
+        return mVirtual;
+    }
+
+    /**
+     * @return The row of the tile at this view's top edge.
+     */
+    int getOriginRow() {
+        return mOriginRow;
+    }
+
+    /**
+     * @return The column of the tile at this view's left edge.
+     */
+    int getOriginColumn() {
+        return mOriginColumn;
+    }
+
+    /**
+     * @return How many rows this view spans, all of them unless in virtual mode.
+     */
+    int getWindowRowCount() {
+        if (mAdapter == null) {
+            return 0;
+        }
+        final int rowCount = mAdapter.getRowCount();
+        final int tileHeight = mAdapter.getTileHeight();
+        return mVirtual && tileHeight > 0
+                ? Math.min(rowCount, Math.max(1, VIRTUAL_WINDOW_SIZE / tileHeight)) : rowCount;
+    }
+
+    /**
+     * @return How many columns this view spans, all of them unless in virtual mode.
+     */
+    int getWindowColumnCount() {
+        if (mAdapter == null) {
+            return 0;
+        }
+        final int columnCount = mAdapter.getColumnCount();
+        final int tileWidth = mAdapter.getTileWidth();
+        return mVirtual && tileWidth > 0
+                ? Math.min(columnCount, Math.max(1, VIRTUAL_WINDOW_SIZE / tileWidth)) : columnCount;
+    }
+
+    /**
+     * Moves the window of a virtual container so that it starts at the given tile,
+     * and moves the attached tiles to match. The size of this view doesn't change,
+     * no layout pass is needed.
+     */
+    void setOrigin(int row, int column) {
+        if (row == mOriginRow && column == mOriginColumn) {
+            return;
+        }
+        mOriginRow = row;
+        mOriginColumn = column;
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            layoutTile(getChildAt(i));
+        }
+        invalidate();
+    }
+
+    @Override
+    public void onLevelOfDetailChanged(int level) {
+        mLevelOfDetail = level;
+        if (mAdapter != null) {
+            mAdapter.setLevelOfDetail(level);
+            onDataSetChanged();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mAdapter == null) {
+            setMeasuredDimension(0, 0);
+            return;
+        }
+        final int tileWidth = mAdapter.getTileWidth();
+        final int tileHeight = mAdapter.getTileHeight();
+        setMeasuredDimension(
+                (int) Math.min(Integer.MAX_VALUE, (long) tileWidth * getWindowColumnCount()),
+                (int) Math.min(Integer.MAX_VALUE, (long) tileHeight * getWindowRowCount()));
+
+        final int childWidthMeasureSpec = MeasureSpec.makeMeasureSpec(tileWidth, MeasureSpec.EXACTLY);
+        final int childHeightMeasureSpec = MeasureSpec.makeMeasureSpec(tileHeight, MeasureSpec.EXACTLY);
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            getChildAt(i).measure(childWidthMeasureSpec, childHeightMeasureSpec);
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            layoutTile(getChildAt(i));
+        }
+    }
+
+    /**
+     * Attaches the tiles intersecting the given window, in this view's coordinates,
+     * and recycles every other attached tile.
+     *
+     * @return Whether the set of attached tiles changed.
+     */
+    boolean updateVisibleTiles(int left, int top, int right, int bottom) {
+        if (mAdapter == null || isLayoutRequested()) {
+            return false;
+        }
+
+        final int tileWidth = mAdapter.getTileWidth();
+        final int tileHeight = mAdapter.getTileHeight();
+        final int rowCount = mAdapter.getRowCount();
+        final int columnCount = mAdapter.getColumnCount();
+        if (tileWidth <= 0 || tileHeight <= 0 || rowCount == 0 || columnCount == 0) {
+            final boolean changed = getChildCount() > 0;
+            recycleAllTiles();
+            return changed;
+        }
+
+        final int firstRow = mOriginRow + Math.max(0, top / tileHeight);
+        final int lastRow = mOriginRow + Math.min(getWindowRowCount() - 1, (bottom - 1) / tileHeight);
+        final int firstColumn = mOriginColumn + Math.max(0, left / tileWidth);
+        final int lastColumn = mOriginColumn + Math.min(getWindowColumnCount() - 1, (right - 1) / tileWidth);
+
+        if (firstRow == mFirstRow && lastRow == mLastRow
+                && firstColumn == mFirstColumn && lastColumn == mLastColumn) {
+            return false;
+        }
+
+        // Recycle first so that the tiles attached below can reuse the views.
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            final View child = getChildAt(i);
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            if (lp.row < firstRow || lp.row > lastRow
+                    || lp.column < firstColumn || lp.column > lastColumn) {
+                removeViewInLayout(child);
+                mRecycler.addScrapView(child, lp.viewType);
+            }
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                if (row >= mFirstRow && row <= mLastRow
+                        && column >= mFirstColumn && column <= mLastColumn) {
+                    // Still attached from the previous window.
+                    continue;
+                }
+                attachTile(row, column);
+            }
+        }
+
+        mFirstRow = firstRow;
+        mLastRow = lastRow;
+        mFirstColumn = firstColumn;
+        mLastColumn = lastColumn;
+        invalidate();
+        return true;
+    }
+
+    /**
+     * Binds and measures the tiles intersecting the given window, in this view's
+     * coordinates, so that attaching them later is cheap. Prefetched tiles outside
+     * the window are recycled.
+     *
+     * @param deadlineNanos System.nanoTime() by which to stop.
+     * @return Whether every tile of the window is ready.
+     */
+    boolean prefetchTiles(int left, int top, int right, int bottom, long deadlineNanos) {
+        if (mAdapter == null || isLayoutRequested()) {
+            return true;
+        }
+        final int tileWidth = mAdapter.getTileWidth();
+        final int tileHeight = mAdapter.getTileHeight();
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            return true;
+        }
+
+        final int firstRow = mOriginRow + Math.max(0, top / tileHeight);
+        final int lastRow = mOriginRow + Math.min(getWindowRowCount() - 1, (bottom - 1) / tileHeight);
+        final int firstColumn = mOriginColumn + Math.max(0, left / tileWidth);
+        final int lastColumn = mOriginColumn + Math.min(getWindowColumnCount() - 1, (right - 1) / tileWidth);
+
+        for (int i = mPrefetched.size() - 1; i >= 0; i--) {
+            final View child = mPrefetched.get(i);
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            if (lp.row < firstRow || lp.row > lastRow
+                    || lp.column < firstColumn || lp.column > lastColumn) {
+                mPrefetched.remove(i);
+                mRecycler.addScrapView(child, lp.viewType);
+            }
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                if ((row >= mFirstRow && row <= mLastRow
+                        && column >= mFirstColumn && column <= mLastColumn)
+                        || findPrefetched(row, column) != -1) {
+                    continue;
+                }
+                if (System.nanoTime() >= deadlineNanos) {
+                    return false;
+                }
+                mPrefetched.add(bindTile(row, column));
+            }
+        }
+        return true;
+    }
+
+    private int findPrefetched(int row, int column) {
+        for (int i = mPrefetched.size() - 1; i >= 0; i--) {
+            final LayoutParams lp = (LayoutParams) mPrefetched.get(i).getLayoutParams();
+            if (lp.row == row && lp.column == column) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void attachTile(int row, int column) {
+        final int prefetched = findPrefetched(row, column);
+        final View child = prefetched != -1 ? mPrefetched.remove(prefetched) : bindTile(row, column);
+        addViewInLayout(child, -1, child.getLayoutParams(), true);
+        layoutTile(child);
+    }
+
+    /**
+     * Gets the view of a tile from the adapter and measures it, without attaching it.
+     */
+    private View bindTile(int row, int column) {
+        final int viewType = mAdapter.getTileViewType(row, column);
+        final View scrap = mRecycler.getScrapView(viewType);
+        final View child = mAdapter.getTileView(row, column, scrap, this);
+        if (scrap != null && child != scrap) {
+            mRecycler.addScrapView(scrap, viewType);
+        }
+
+        ViewGroup.LayoutParams params = child.getLayoutParams();
+        LayoutParams lp;
+        if (params instanceof LayoutParams) {
+            lp = (LayoutParams) params;
+        } else {
+            lp = new LayoutParams();
+        }
+        lp.row = row;
+        lp.column = column;
+        lp.viewType = viewType;
+        child.setLayoutParams(lp);
+
+        child.measure(MeasureSpec.makeMeasureSpec(mAdapter.getTileWidth(), MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(mAdapter.getTileHeight(), MeasureSpec.EXACTLY));
+        return child;
+    }
+
+    private void layoutTile(View child) {
+        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        final int left = (lp.column - mOriginColumn) * mAdapter.getTileWidth();
+        final int top = (lp.row - mOriginRow) * mAdapter.getTileHeight();
+        child.layout(left, top, left + child.getMeasuredWidth(), top + child.getMeasuredHeight());
+    }
+
+    private void recycleAllTiles() {
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            final View child = getChildAt(i);
+            removeViewInLayout(child);
+            mRecycler.addScrapView(child, ((LayoutParams) child.getLayoutParams()).viewType);
+        }
+        for (int i = mPrefetched.size() - 1; i >= 0; i--) {
+            final View child = mPrefetched.get(i);
+            mRecycler.addScrapView(child, ((LayoutParams) child.getLayoutParams()).viewType);
+        }
+        mPrefetched.clear();
+        mFirstRow = 0;
+        mLastRow = -1;
+        mFirstColumn = 0;
+        mLastColumn = -1;
+        invalidate();
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof LayoutParams;
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams();
+    }
+
+    @Override
+    protected ViewGroup.LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+        return new LayoutParams();
+    }
+
+    static class LayoutParams extends ViewGroup.LayoutParams {
+        int row;
+        int column;
+        int viewType;
+
+        LayoutParams() {
+            super(MATCH_PARENT, MATCH_PARENT);
+        }
+    }
+}
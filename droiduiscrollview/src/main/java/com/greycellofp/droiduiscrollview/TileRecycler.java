@@ -0,0 +1,51 @@
+package com.greycellofp.droiduiscrollview;
+
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of detached tile views, kept per view type so that a recycled view is
+ * only ever handed back to the adapter for a tile of the same type.
+ */
+class TileRecycler {
+    private ArrayList<View>[] mScrapViews;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void setViewTypeCount(int viewTypeCount) {
+        if (viewTypeCount < 1) {
+            throw new IllegalArgumentException("Can't have a viewTypeCount < 1");
+        }
+        ArrayList<View>[] scrapViews = new ArrayList[viewTypeCount];
+        for (int i = 0; i < viewTypeCount; i++) {
+            scrapViews[i] = new ArrayList<View>();
+        }
+        mScrapViews = scrapViews;
+    }
+
+    int getViewTypeCount() {
+        return mScrapViews == null ? 0 : mScrapViews.length;
+    }
+
+    /**
+     * @return A recycled view of the given type, or null if the pool for that type is empty.
+     */
+    View getScrapView(int viewType) {
+        final ArrayList<View> scrap = mScrapViews[viewType];
+        final int size = scrap.size();
+        return size > 0 ? scrap.remove(size - 1) : null;
+    }
+
+    void addScrapView(View scrap, int viewType) {
+        mScrapViews[viewType].add(scrap);
+    }
+
+    void clear() {
+        if (mScrapViews == null) {
+            return;
+        }
+        for (ArrayList<View> scrap : mScrapViews) {
+            scrap.clear();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.greycellofp.droiduiscrollview;
+
+/**
+ * Implemented by the content of a {@link DroidUIScrollView} that wants to know
+ * which part of it is on screen, such as {@link CanvasLayout}.
+ */
+public interface ViewportAware {
+    /**
+     * The visible part of this view changed. Called on every scroll and layout
+     * with the viewport in this view's coordinates.
+     */
+    void onViewportChanged(int left, int top, int right, int bottom);
+}
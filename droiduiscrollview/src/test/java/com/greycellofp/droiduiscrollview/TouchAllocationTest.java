@@ -0,0 +1,254 @@
+package com.greycellofp.droiduiscrollview;
+
+import android.content.Context;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityManager;
+import android.widget.FrameLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowAccessibilityManager;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts what a drag allocates on the thread dispatching it. Once warmed up,
+ * a move must not allocate anything beyond what the framework calls of a drag
+ * cost, which is measured by dispatching the same events to a view that drags
+ * with nothing but those calls. Robolectric boxes the arguments of every call
+ * it shadows, so that isn't nothing, but it is the same for both views.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21,
+        shadows = TouchAllocationTest.ShadowSharedAccessibilityManager.class)
+public class TouchAllocationTest {
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+    private static final int CONTENT_SIZE = 4000;
+
+    private static final int MOVES_PER_DRAG = 200;
+    private static final int MOVE_DISTANCE = 4;
+    private static final int MOVE_MILLIS = 8;
+    private static final int WARMUP_DRAGS = 20;
+    private static final int MEASURED_DRAGS = 5;
+
+    /**
+     * Less than the smallest object, so that even one allocation per move fails.
+     */
+    private static final long MAX_BYTES_PER_MOVE = 8;
+
+    private com.sun.management.ThreadMXBean mThreadBean;
+    private MotionEvent[][] mDrags;
+
+    @Before
+    public void setUp() {
+        mThreadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue("Counting allocations isn't supported by this JVM",
+                mThreadBean.isThreadAllocatedMemorySupported());
+        mThreadBean.setThreadAllocatedMemoryEnabled(true);
+
+        // Every event is obtained up front, the drags themselves obtain nothing.
+        mDrags = new MotionEvent[WARMUP_DRAGS + MEASURED_DRAGS][];
+        long time = 0;
+        for (int d = 0; d < mDrags.length; d++) {
+            final MotionEvent[] drag = new MotionEvent[MOVES_PER_DRAG + 2];
+            final long downTime = time;
+            final float x = WIDTH / 2;
+            float y = HEIGHT - 50;
+            drag[0] = MotionEvent.obtain(downTime, time, MotionEvent.ACTION_DOWN, x, y, 0);
+            for (int i = 1; i <= MOVES_PER_DRAG; i++) {
+                time += MOVE_MILLIS;
+                y -= MOVE_DISTANCE;
+                drag[i] = MotionEvent.obtain(downTime, time, MotionEvent.ACTION_MOVE, x, y, 0);
+            }
+            // Released without moving on, so that no fling follows.
+            time += 100;
+            drag[MOVES_PER_DRAG + 1] = MotionEvent.obtain(downTime, time, MotionEvent.ACTION_CANCEL, x, y, 0);
+            mDrags[d] = drag;
+            time += 1000;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (MotionEvent[] drag : mDrags) {
+            for (MotionEvent event : drag) {
+                event.recycle();
+            }
+        }
+        ShadowSharedAccessibilityManager.sInstance = null;
+    }
+
+    @Test
+    public void dragDoesNotAllocate() {
+        final Context context = RuntimeEnvironment.application;
+        final DroidUIScrollView scrollView = new DroidUIScrollView(context);
+        scrollView.setTouchResamplingEnabled(true);
+        scrollView.setTouchPredictionEnabled(true);
+        scrollView.addView(new View(context), new FrameLayout.LayoutParams(CONTENT_SIZE, CONTENT_SIZE));
+        measureAndLayout(scrollView);
+
+        final long overhead = measureMoves(new DraggingView(context));
+        final long allocated = measureMoves(scrollView);
+        final long excess = allocated - overhead;
+        assertTrue("A drag of " + MOVES_PER_DRAG + " moves allocated " + allocated
+                        + " bytes, its framework calls alone " + overhead,
+                excess < MAX_BYTES_PER_MOVE * MOVES_PER_DRAG);
+    }
+
+    /**
+     * Runs every drag through the view and measures the moves of the last few.
+     * Frames run as soon as they are posted.
+     *
+     * @return The least number of bytes the moves of a measured drag allocated.
+     * Robolectric's own bookkeeping grows now and then, a drag that happens in
+     * doesn't count.
+     */
+    private long measureMoves(ViewGroup view) {
+        final long threadId = Thread.currentThread().getId();
+        long least = Long.MAX_VALUE;
+        for (int d = 0; d < mDrags.length; d++) {
+            final MotionEvent[] drag = mDrags[d];
+            view.scrollTo(0, 0);
+            view.dispatchTouchEvent(drag[0]);
+
+            final long before = mThreadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 1; i <= MOVES_PER_DRAG; i++) {
+                view.dispatchTouchEvent(drag[i]);
+            }
+            final long allocated = mThreadBean.getThreadAllocatedBytes(threadId) - before;
+            if (d >= WARMUP_DRAGS) {
+                least = Math.min(least, allocated);
+            }
+
+            // Make sure the moves were dragging rather than ignored.
+            assertTrue(view.getScrollY() > 0);
+            view.dispatchTouchEvent(drag[MOVES_PER_DRAG + 1]);
+        }
+        return least;
+    }
+
+    private static void measureAndLayout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+        assertEquals(HEIGHT, view.getHeight());
+    }
+
+    /**
+     * Makes the framework calls the scroll view makes for a move, and nothing
+     * else: reads the event the way it does, starts dragging past the touch slop
+     * and from then on scrolls after the pointer at the next frame.
+     */
+    private static class DraggingView extends FrameLayout implements Choreographer.FrameCallback {
+        private final int mTouchSlop;
+        float mSum;
+        int mPointerId;
+        float mLastX;
+        float mLastY;
+        float mY;
+        boolean mDragging;
+        boolean mFramePosted;
+
+        DraggingView(Context context) {
+            super(context);
+            mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+            addView(new View(context), new FrameLayout.LayoutParams(CONTENT_SIZE, CONTENT_SIZE));
+            measureAndLayout(this);
+        }
+
+        @Override
+        public boolean onTouchEvent(MotionEvent ev) {
+            final int pointerCount = ev.getPointerCount();
+            final int historySize = ev.getHistorySize();
+            final int activeIndex = ev.getActionMasked() == MotionEvent.ACTION_MOVE
+                    ? ev.findPointerIndex(mPointerId) : -1;
+            for (int h = 0; h < historySize; h++) {
+                final long time = ev.getHistoricalEventTime(h);
+                for (int p = 0; p < pointerCount; p++) {
+                    mSum += ev.getHistoricalX(p, h) + ev.getHistoricalY(p, h) + ev.getPointerId(p) + time;
+                }
+            }
+            final long time = ev.getEventTime();
+            for (int p = 0; p < pointerCount; p++) {
+                final float y = ev.getY(p);
+                mSum += ev.getX(p) + y + ev.getPointerId(p) + time;
+                if (p == activeIndex) {
+                    mY = y;
+                }
+            }
+            if (ev.getActionMasked() == MotionEvent.ACTION_POINTER_UP) {
+                mSum += ev.getPointerId(ev.getActionIndex());
+            }
+
+            switch (ev.getActionMasked()) {
+                case MotionEvent.ACTION_DOWN:
+                    mPointerId = ev.getPointerId(0);
+                    mLastX = ev.getX();
+                    mLastY = ev.getY();
+                    mDragging = false;
+                    break;
+                case MotionEvent.ACTION_MOVE:
+                    final int index = ev.findPointerIndex(mPointerId);
+                    if (index == -1) {
+                        break;
+                    }
+                    if (mDragging) {
+                        if (!mFramePosted) {
+                            mFramePosted = true;
+                            Choreographer.getInstance().postFrameCallback(this);
+                        }
+                        break;
+                    }
+                    final float x = ev.getX(index);
+                    final float y = ev.getY(index);
+                    if (Math.abs(mLastX - x) > mTouchSlop || Math.abs(mLastY - y) > mTouchSlop) {
+                        mDragging = true;
+                        scrollBy(0, Math.round(mLastY - y));
+                        mLastY = y;
+                    }
+                    break;
+            }
+            return true;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFramePosted = false;
+            scrollTo(getScrollX(), getScrollY() + Math.round(mLastY - mY));
+            mLastY = mY;
+        }
+    }
+
+    /**
+     * Robolectric builds a new accessibility manager, service and all, each time
+     * a view asks for it, which every scroll does. What that allocates grows with
+     * every call. A device keeps the one.
+     */
+    @Implements(AccessibilityManager.class)
+    public static class ShadowSharedAccessibilityManager extends ShadowAccessibilityManager {
+        private static AccessibilityManager sInstance;
+
+        @Implementation
+        public static AccessibilityManager getInstance(Context context) throws Exception {
+            if (sInstance == null) {
+                sInstance = ShadowAccessibilityManager.getInstance(context);
+            }
+            return sInstance;
+        }
+    }
+}